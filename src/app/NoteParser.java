@@ -1,60 +1,378 @@
 package app;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 
 import notes.BaseIntergalNumDecl;
 import notes.CommodityDecl;
 import notes.CompIntergalNumDecl;
 import notes.ParsedNote;
 import notes.Query;
+import notes.SymbolTable;
 import notes.UnknownNote;
-import utility.Translator;
 
 /**
  * Parse notes about the intergalactic commodity markets. 
  * 
+ * Notes parsed in bulk (by parseNotes(List), appendNotes, or learning 
+ * words) are identified but not built into their typed ParsedNote right
+ * away: each list of like notes keeps the tokenized note (its component
+ * offsets and packed metadata) until the note is first got from the 
+ * list, and only then builds the Query or Declaration. Counting notes of
+ * a type, or using only some types, never builds the others. Any number
+ * of threads may get notes from the lists at once, as long as none is 
+ * changing them: a note built by one thread is published safely to the
+ * others, and every thread gets the same instance of it.
+ * 
  * @author ryanwilliamconnor
  *
  */
 public class NoteParser {
 	
 	private List<String> notes;
-	private List<BaseIntergalNumDecl> baseIntergalNumDecs;
-	private List<CompIntergalNumDecl> compIntergalNumDecs;
-	private List<CommodityDecl> commodityDecs;
-	private List<Query> queries;
-	private List<UnknownNote> unknownNotes;
+	private LazyNoteList<BaseIntergalNumDecl> baseIntergalNumDecs;
+	private LazyNoteList<CompIntergalNumDecl> compIntergalNumDecs;
+	private LazyNoteList<CommodityDecl> commodityDecs;
+	private LazyNoteList<Query> queries;
+	private UnknownNoteList unknownNotes;
 	private Map<Class, List<? extends ParsedNote>> pNotes;
+	// the type of note each note shape parses as
+	private ShapeTable shapes;
+	
+	// types of notes in the shape table
+	private static final byte QUERY = 1;
+	private static final byte BASE_NUM_DECL = 2;
+	private static final byte COMP_NUM_DECL = 3;
+	private static final byte COMMODITY_DECL = 4;
+	private static final byte UNKNOWN = 5;
+	
+	// lists of at least this many notes are parsed in parallel
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+	// the fewest notes to parse in one chunk
+	private static final int MIN_CHUNK_SIZE = 1024;
+	// chunks per thread, so threads that finish early can take more
+	private static final int CHUNKS_PER_THREAD = 4;
+	
+	private int parallelThreshold;
+	private ForkJoinPool pool; // null for the common pool
+	// the parses of recent lines, or null to parse every line
+	private ParseCache cache;
+	// whether streamed notes are kept in the lists of like notes
+	private boolean keepStreamedNotes;
+	// whether notes is this parser's own list, so can be appended to
+	private boolean ownsNotes;
+	
+	// words learned to be intergal numerals, or null if none
+	private SymbolTable intergalWords;
+	// the slots in unknownNotes of the notes with each component a 
+	// learned word could reclassify, or null until a word is first learned
+	private Map<String, SlotList> unknownsByWord;
+	// how many slots of unknownNotes, from the start, are in the index
+	private int numIndexedSlots;
 	
 	/**
-	 * Construct a new NoteParser.
+	 * Construct a new NoteParser, remembering the types of up to 
+	 * ShapeTable.DEFAULT_MAX_SHAPES note shapes.
 	 */
 	public NoteParser() {
-		this.baseIntergalNumDecs = new ArrayList<BaseIntergalNumDecl>();
-		this.compIntergalNumDecs = new ArrayList<CompIntergalNumDecl>();
-		this.commodityDecs = new ArrayList<CommodityDecl>();
-		this.queries = new ArrayList<Query>();
-		this.unknownNotes = new ArrayList<UnknownNote>();
+		this(ShapeTable.DEFAULT_MAX_SHAPES);
+	}
+	
+	/**
+	 * Construct a new NoteParser.
+	 * 
+	 * @param maxShapes is an int: the most note shapes to remember the 
+	 * types of
+	 * @throws IllegalArgumentException if maxShapes is less than 1
+	 */
+	public NoteParser(int maxShapes) {
+		this(new ShapeTable(maxShapes));
+	}
+	
+	/**
+	 * Construct a new NoteParser with the given shape table.
+	 * 
+	 * @param shapes is a ShapeTable: the table to remember shapes in
+	 */
+	private NoteParser(ShapeTable shapes) {
+		this.shapes = shapes;
+		this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+		this.baseIntergalNumDecs = 
+				new LazyNoteList<BaseIntergalNumDecl>(BASE_NUM_DECL);
+		this.compIntergalNumDecs = 
+				new LazyNoteList<CompIntergalNumDecl>(COMP_NUM_DECL);
+		this.commodityDecs = new LazyNoteList<CommodityDecl>(COMMODITY_DECL);
+		this.queries = new LazyNoteList<Query>(QUERY);
+		this.unknownNotes = new UnknownNoteList();
 		this.pNotes = new HashMap<Class, List<? extends ParsedNote>>();
 	}
 	
 	/**
 	 * Parses and stores information about the intergalactic commodity markets.
 	 * 
+	 * Lists of at least the parallel threshold of notes are split into 
+	 * chunks parsed in parallel on a ForkJoinPool; the parsed notes are 
+	 * stored in the same order either way.
+	 * 
+	 * The given list replaces any notes stored before, and the lists of
+	 * like notes are cleared before it is parsed; the note shapes and 
+	 * words the parser has learned are kept. To add notes to those 
+	 * already parsed, use appendNotes.
+	 * 
 	 * @param notes is a list of strings where each string is a line
 	 * from intergalactic commodity notes
 	 */
 	public void parseNotes(List<String> notes) {
 		
 		this.notes = notes; // store the notes
+		this.ownsNotes = false;
+		clearNotes();
 		
 		// parse and sort the notes
-		for (String note : notes) sortNote(parse(note));
+		if (notes.size() < parallelThreshold) {
+			for (String note : notes) sortLine(note);
+		}
+		else {
+			parseInParallel(notes);
+		}
 		
-		// put read-only lists in map for easy bulk transfer
+		mapParsedNotes();
+	}
+	
+	/**
+	 * Drop every note stored in the lists of like notes, and the index of
+	 * unknown notes.
+	 */
+	private void clearNotes() {
+		
+		baseIntergalNumDecs.clear();
+		compIntergalNumDecs.clear();
+		commodityDecs.clear();
+		queries.clear();
+		unknownNotes.clear();
+		if (unknownsByWord != null) unknownsByWord.clear();
+		numIndexedSlots = 0;
+	}
+	
+	/**
+	 * Parse and store more notes, after those already parsed.
+	 * 
+	 * Only the new notes are parsed; each is added to the end of its list
+	 * of like notes, and the new notes to the end of getNotes. Any new 
+	 * unknown notes are indexed by their words, so that learning a word 
+	 * later only re-examines the unknown notes that have the word.
+	 * 
+	 * @param newNotes is a list of strings where each string is a line
+	 * from intergalactic commodity notes
+	 * @throws NullPointerException if newNotes is null
+	 */
+	public void appendNotes(List<String> newNotes) {
+		
+		if (newNotes == null)
+			throw new NullPointerException("New notes can't be null");
+		
+		// copy notes given to parseNotes once, rather than change them
+		if (!ownsNotes) {
+			notes = notes == null ? 
+					new ArrayList<String>() : new ArrayList<String>(notes);
+			ownsNotes = true;
+		}
+		notes.addAll(newNotes);
+		
+		if (newNotes.size() < parallelThreshold) {
+			for (String note : newNotes) sortLine(note);
+		}
+		else {
+			parseInParallel(newNotes);
+		}
+		
+		indexUnknowns();
+		mapParsedNotes();
+	}
+	
+	/**
+	 * Learn that a word is an intergal numeral. See learnIntergalWords.
+	 * 
+	 * @param word is a string: the word to learn
+	 * @throws NullPointerException if word is null
+	 * @throws IllegalArgumentException if the word can't be an intergal 
+	 * numeral
+	 * @return an int: the number of unknown notes now identified
+	 */
+	public int learnIntergalWord(String word) {
+		return learnIntergalWords(Collections.singleton(word));
+	}
+	
+	/**
+	 * Learn that some words are intergal numerals, even though they are 
+	 * not all lowercase letters (e.g., 'Tegj' in a dialect that 
+	 * capitalizes its numerals).
+	 * 
+	 * Notes parsed from now on take the words to be intergal numerals. 
+	 * Unknown notes already parsed that have one of the words are found 
+	 * through an index from word to unknown notes and parsed again; any 
+	 * that are now identified are moved to the end of the list of their
+	 * type. Unknown notes without any of the words are not looked at, 
+	 * and the ones identified are taken out of the list of unknown notes
+	 * without moving the others.
+	 * 
+	 * @param words is a collection of strings: the words to learn
+	 * @throws NullPointerException if words or any word is null
+	 * @throws IllegalArgumentException if any word can't be an intergal
+	 * numeral: it has a space, is empty, or is a keyword, roman numeral, 
+	 * or arabic numeral
+	 * @return an int: the number of unknown notes now identified
+	 */
+	public int learnIntergalWords(Collection<String> words) {
+		
+		if (words == null)
+			throw new NullPointerException("Words can't be null");
+		
+		List<String> newWords = new ArrayList<String>();
+		for (String word : words) {
+			
+			if (word == null)
+				throw new NullPointerException("Word can't be null");
+			
+			byte cls = NoteTokenizer.classify(word, 0, word.length());
+			if (word.isEmpty() || word.indexOf(' ') >= 0 || 
+				(cls != NoteTokenizer.OTHER && cls != NoteTokenizer.COMMODITY &&
+				 cls != NoteTokenizer.INTERGAL))
+				throw new IllegalArgumentException("'" + word + "' can't be "
+						+ "an intergal numeral");
+			
+			// lowercase words are intergal numerals already
+			if (cls == NoteTokenizer.INTERGAL) continue;
+			if (intergalWords == null || intergalWords.idOf(word) < 0) 
+				newWords.add(word);
+		}
+		
+		// cached lines with the new words no longer parse as cached
+		if (cache != null && !newWords.isEmpty()) cache.clear();
+		
+		// index the unknown notes under the new words before learning them
+		if (unknownsByWord == null) 
+			unknownsByWord = new HashMap<String, SlotList>();
+		indexUnknowns();
+		if (intergalWords == null) intergalWords = new SymbolTable();
+		for (String word : newWords) intergalWords.intern(word);
+		
+		int numIdentified = 0;
+		SlotList affected;
+		int slot;
+		UnknownNote uNote, reparsed;
+		byte type;
+		for (String word : newWords) {
+			affected = unknownsByWord.remove(word);
+			if (affected == null) continue;
+			for (int i = 0; i < affected.size; i++) {
+				// the slot is empty if its note was identified already
+				slot = affected.slots[i];
+				uNote = unknownNotes.getSlot(slot);
+				if (uNote == null) continue;
+				reparsed = NoteTokenizer.tokenize(uNote.getNote(), intergalWords);
+				type = typeOf(reparsed);
+				// still unknown, but counted with the new words now
+				if (type == UNKNOWN) {
+					unknownNotes.setSlot(slot, reparsed);
+					continue;
+				}
+				unknownNotes.removeSlot(slot);
+				listOf(type).addPending(reparsed);
+				numIdentified++;
+			}
+		}
+		
+		// the index holds slots, so is built again if they are compacted
+		if (unknownNotes.compactIfSparse()) {
+			unknownsByWord.clear();
+			numIndexedSlots = 0;
+			indexUnknowns();
+		}
+		mapParsedNotes();
+		
+		return numIdentified;
+	}
+	
+	/**
+	 * Add the slots of the unknown notes not yet in the index to it, 
+	 * under each component a word not yet learned could reclassify. Does
+	 * nothing until the first word is learned.
+	 * 
+	 * The index holds slots rather than notes, so a note taken out of 
+	 * the list of unknown notes is not kept by the index; its slot stays
+	 * empty until the slots are compacted and the index built again.
+	 */
+	private void indexUnknowns() {
+		
+		if (unknownsByWord == null) return;
+		
+		UnknownNote uNote;
+		CharSequence component;
+		byte cls;
+		String word;
+		SlotList withWord;
+		for (; numIndexedSlots < unknownNotes.getNumSlots(); numIndexedSlots++) {
+			uNote = unknownNotes.getSlot(numIndexedSlots);
+			if (uNote == null) continue;
+			for (int i = 0; i < uNote.getNumComponents(); i++) {
+				component = uNote.getComponent(i);
+				cls = NoteTokenizer.classify(component, 0, component.length());
+				if ((cls != NoteTokenizer.OTHER && cls != NoteTokenizer.COMMODITY) ||
+					(intergalWords != null && 
+					 intergalWords.contains(component, 0, component.length())))
+					continue;
+				word = component.toString();
+				withWord = unknownsByWord.get(word);
+				if (withWord == null) {
+					withWord = new SlotList();
+					unknownsByWord.put(word, withWord);
+				}
+				withWord.add(numIndexedSlots);
+			}
+		}
+	}
+	
+	/**
+	 * The slots of the unknown notes with one word, in increasing order, 
+	 * each once.
+	 */
+	private static final class SlotList {
+		
+		private int[] slots = new int[2];
+		private int size;
+		
+		void add(int slot) {
+			
+			// a note with the word twice is indexed under it once
+			if (size > 0 && slots[size-1] == slot) return;
+			if (size == slots.length) slots = Arrays.copyOf(slots, 2*size);
+			slots[size++] = slot;
+		}
+	}
+	
+	/**
+	 * Put read-only lists in map for easy bulk transfer.
+	 */
+	private void mapParsedNotes() {
 		pNotes.put(BaseIntergalNumDecl.class, baseIntergalNumDecs);
 		pNotes.put(CompIntergalNumDecl.class, compIntergalNumDecs);
 		pNotes.put(CommodityDecl.class, commodityDecs);
@@ -62,6 +380,215 @@ public class NoteParser {
 		pNotes.put(UnknownNote.class, unknownNotes);
 	}
 	
+	/**
+	 * Parse and sort notes in chunks on the pool, each chunk into its own
+	 * lists of like notes, then add the chunks' lists to this parser's
+	 * lists in order.
+	 * 
+	 * Each chunk starts from a copy of this parser's shape table, which 
+	 * is not changed until the chunks are done; the shapes the chunks 
+	 * find are added to it afterward. Likewise each chunk caches lines in
+	 * its own cache, which also finds the lines of a copy of this parser's
+	 * cache, and the chunks' caches are merged into it afterward.
+	 * 
+	 * @param notes is a list of strings: the notes to parse
+	 */
+	private void parseInParallel(List<String> notes) {
+		
+		ForkJoinPool pool = getPool();
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, (int)Math.ceil(
+				(double)notes.size() / 
+				(CHUNKS_PER_THREAD * pool.getParallelism())));
+		NoteParser[] chunks = 
+				new NoteParser[(notes.size() + chunkSize - 1) / chunkSize];
+		Map<String, ParseCache.Entry> cached = 
+				cache != null ? cache.copyLines() : null;
+		
+		pool.invoke(new ParseTask(notes, chunks, chunkSize, cached, 0, 
+				chunks.length));
+		
+		for (NoteParser chunk : chunks) {
+			baseIntergalNumDecs.addAllPending(chunk.baseIntergalNumDecs);
+			compIntergalNumDecs.addAllPending(chunk.compIntergalNumDecs);
+			commodityDecs.addAllPending(chunk.commodityDecs);
+			queries.addAllPending(chunk.queries);
+			unknownNotes.addAll(chunk.unknownNotes);
+			shapes.merge(chunk.shapes);
+			if (cache != null) cache.merge(chunk.cache);
+		}
+	}
+	
+	/**
+	 * Parse a run of chunks of notes, splitting the run in half until 
+	 * it is one chunk.
+	 */
+	private class ParseTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final List<String> notes;
+		private final NoteParser[] chunks;
+		private final int chunkSize;
+		// a copy of the parser's cached lines, or null if no cache
+		private final Map<String, ParseCache.Entry> cached;
+		private final int first; // the first chunk of the run
+		private final int end; // the chunk after the last chunk of the run
+		
+		ParseTask(List<String> notes, NoteParser[] chunks, int chunkSize, 
+				Map<String, ParseCache.Entry> cached, int first, int end) {
+			this.notes = notes;
+			this.chunks = chunks;
+			this.chunkSize = chunkSize;
+			this.cached = cached;
+			this.first = first;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute() {
+			
+			if (end - first > 1) {
+				int mid = (first + end) >>> 1;
+				invokeAll(
+						new ParseTask(notes, chunks, chunkSize, cached, first, mid),
+						new ParseTask(notes, chunks, chunkSize, cached, mid, end));
+				return;
+			}
+			
+			NoteParser chunk = new NoteParser(new ShapeTable(shapes));
+			chunk.intergalWords = intergalWords;
+			// each chunk caches the lines it sees on its own, finding 
+			// the lines the parser had cached too
+			if (cache != null) chunk.cache = new ParseCache(cache, cached);
+			int last = Math.min(notes.size(), (first+1)*chunkSize);
+			for (String note : notes.subList(first*chunkSize, last)) 
+				chunk.sortLine(note);
+			chunks[first] = chunk;
+		}
+	}
+	
+	/**
+	 * Parse notes one at a time as they are read, handing each parsed 
+	 * note to a consumer.
+	 * 
+	 * Unlike parseNotes(List), the notes never have to all be in memory
+	 * at once: the parser keeps no reference to a note or its line once 
+	 * the consumer returns, unless keepStreamedNotes is set, in which case
+	 * each parsed note is also added to its list of like notes.
+	 * 
+	 * @param notes is an iterator of strings: the lines of notes
+	 * @param consumer is a Consumer: what to do with each parsed note
+	 * @throws NullPointerException if notes or consumer is null, or 
+	 * notes gives a null line
+	 * @return a long: the number of notes parsed
+	 */
+	public long parseNotes(Iterator<String> notes, 
+			Consumer<? super ParsedNote> consumer) {
+		
+		if (notes == null)
+			throw new NullPointerException("Notes can't be null");
+		if (consumer == null)
+			throw new NullPointerException("Consumer can't be null");
+		
+		long count = 0;
+		while (notes.hasNext()) {
+			emit(notes.next(), consumer);
+			count++;
+		}
+		if (keepStreamedNotes) mapParsedNotes();
+		
+		return count;
+	}
+	
+	/**
+	 * Parse notes one at a time as they are read, handing each parsed 
+	 * note to a consumer. See parseNotes(Iterator, Consumer).
+	 * 
+	 * @param notes is a Spliterator of strings: the lines of notes
+	 * @param consumer is a Consumer: what to do with each parsed note
+	 * @throws NullPointerException if notes or consumer is null, or 
+	 * notes gives a null line
+	 * @return a long: the number of notes parsed
+	 */
+	public long parseNotes(Spliterator<String> notes, 
+			Consumer<? super ParsedNote> consumer) {
+		
+		if (notes == null)
+			throw new NullPointerException("Notes can't be null");
+		if (consumer == null)
+			throw new NullPointerException("Consumer can't be null");
+		
+		LineCounter counter = new LineCounter(consumer);
+		while (notes.tryAdvance(counter));
+		if (keepStreamedNotes) mapParsedNotes();
+		
+		return counter.count;
+	}
+	
+	/**
+	 * Parse notes one line at a time as they are read, handing each parsed
+	 * note to a consumer. See parseNotes(Iterator, Consumer).
+	 * 
+	 * The reader is read to the end but not closed.
+	 * 
+	 * @param notes is a Reader: where to read lines of notes from
+	 * @param consumer is a Consumer: what to do with each parsed note
+	 * @throws NullPointerException if notes or consumer is null
+	 * @throws IOException if reading the notes fails
+	 * @return a long: the number of notes parsed
+	 */
+	public long parseNotes(Reader notes, Consumer<? super ParsedNote> consumer)
+			throws IOException {
+		
+		if (notes == null)
+			throw new NullPointerException("Notes can't be null");
+		if (consumer == null)
+			throw new NullPointerException("Consumer can't be null");
+		
+		BufferedReader bR = notes instanceof BufferedReader ? 
+				(BufferedReader)notes : new BufferedReader(notes);
+		
+		long count = 0;
+		String note;
+		while ((note = bR.readLine()) != null) {
+			emit(note, consumer);
+			count++;
+		}
+		if (keepStreamedNotes) mapParsedNotes();
+		
+		return count;
+	}
+	
+	/**
+	 * Parse one streamed note, keep it if streamed notes are kept, and 
+	 * hand it to the consumer.
+	 */
+	private void emit(String note, Consumer<? super ParsedNote> consumer) {
+		
+		ParsedNote pNote = parse(note);
+		if (keepStreamedNotes) sortNote(pNote);
+		consumer.accept(pNote);
+	}
+	
+	/**
+	 * Parse and emit each line a Spliterator gives, counting the lines.
+	 */
+	private class LineCounter implements Consumer<String> {
+		
+		private final Consumer<? super ParsedNote> consumer;
+		private long count;
+		
+		LineCounter(Consumer<? super ParsedNote> consumer) {
+			this.consumer = consumer;
+		}
+		
+		@Override
+		public void accept(String note) {
+			emit(note, consumer);
+			count++;
+		}
+	}
+	
 	/**
 	 * Add a parsed note to list of like notes.
 	 * 
@@ -98,6 +625,45 @@ public class NoteParser {
 		return false;
 	}
 	
+	/**
+	 * Parse a note and add it to its list of like notes, leaving it to be
+	 * built into its typed ParsedNote when first got from the list.
+	 * 
+	 * @param note is a string: the note to parse
+	 */
+	private void sortLine(String note) {
+		
+		if (cache != null) {
+			ParseCache.Entry cached = cached(note);
+			if (cached.type == UNKNOWN) 
+				unknownNotes.add(new UnknownNote(cached.note));
+			else 
+				listOf(cached.type).addPending(cached.note);
+			return;
+		}
+		
+		UnknownNote uNote = NoteTokenizer.tokenize(note, intergalWords);
+		byte type = typeOf(uNote);
+		if (type == UNKNOWN) unknownNotes.add(uNote);
+		else listOf(type).addPending(uNote);
+	}
+	
+	/**
+	 * Get the list of like notes of an identified type.
+	 * 
+	 * @param type is a byte: the type of note, not UNKNOWN
+	 * @return a LazyNoteList: the list of notes of the type
+	 */
+	private LazyNoteList<?> listOf(byte type) {
+		
+		switch (type) {
+			case QUERY: return queries;
+			case BASE_NUM_DECL: return baseIntergalNumDecs;
+			case COMP_NUM_DECL: return compIntergalNumDecs;
+			default: return commodityDecs;
+		}
+	}
+	
 	/**
 	 * Parse a note, meaning split the note string into relevant components and
 	 * track metadata based on best guess of how the metadata determines the 
@@ -118,6 +684,8 @@ public class NoteParser {
 	 * 0 or 1 question mark, 9) can have 0 or 1 arabic numerals, 10) can have
 	 * 0 or 1 'how', 11) can have 0 or 1 'much', 12) can have 0 or 1 'many'.
 	 * 
+	 * See NoteTokenizer for how each component is classified.
+	 * 
 	 * @param note is a string: the note to parse
 	 * @return a type of ParsedNote (the string split into an array of words 
 	 * and metadata about the contents of the array, and identified 
@@ -125,376 +693,435 @@ public class NoteParser {
 	 */
 	public ParsedNote parse(String note) {
 		
-		// create an unknown note with clean data 
-		UnknownNote uNote = new UnknownNote(note);
-		int numComponents = uNote.getComponents().length;
-		
-		// parse the note (set its metadata and identify it)
-		for (int i = 0; i < numComponents; i++) {
-			if (checkAndSetIs(uNote, i)) continue;
-			if (checkAndSetCredits(uNote, i)) continue;
-			if (checkAndSetHow(uNote, i)) continue;
-			if (checkAndSetMuch(uNote, i)) continue;
-			if (checkAndSetMany(uNote, i)) continue;
-			if (checkAndSetQ(uNote, i)) continue;
-			if (checkAndSetArabic(uNote, i)) continue;
-			if (checkAndSetCommodity(uNote, i)) continue;
-			if (checkAndSetBaseRomanNum(uNote, i)) continue;
-			if (checkAndSetCompRomanNum(uNote, i)) continue;
-			if (checkAndSetStartIntergalNum(uNote, i))
-				i = setEndIntergalNum(uNote, i);
+		if (cache != null) {
+			// the cached note is shared, so unknown notes get a copy
+			ParseCache.Entry cached = cached(note);
+			return materialise(cached.type, cached.type == UNKNOWN ? 
+					new UnknownNote(cached.note) : cached.note);
 		}
 		
-		return identifyNote(uNote);
+		// split the note and set its metadata in one pass, then identify it
+		return identifyNote(NoteTokenizer.tokenize(note, intergalWords));
 	}
 	
 	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is a commodity. If so, sets relevant data in the
-	 * unknown note and returns true. If not, returns false.
+	 * Get the tokenized note and type of a line from the parse cache, 
+	 * tokenizing and identifying the line and caching it if it is not 
+	 * there.
 	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
+	 * @param note is a string: the line to parse
+	 * @return a ParseCache.Entry: the line's tokenized note and type; the
+	 * note may be shared with other lines' notes, so must not be changed
 	 */
-	private boolean checkAndSetCommodity(UnknownNote uNote, int index) {
-		if (isCommodity(uNote.getComponents()[index])) {
-			if (uNote.getCountComm() == 0) {
-				uNote.setComm1Pos(index);
-			}
-			else {
-				uNote.setComm2Pos(index);
-			}
-			uNote.setCountComm(uNote.getCountComm()+1);
-		}
-		return false;
-	} 
+	private ParseCache.Entry cached(String note) {
+		
+		ParseCache.Entry cached = cache.get(note);
+		if (cached != null) return cached;
+		
+		UnknownNote uNote = NoteTokenizer.tokenize(note, intergalWords);
+		return cache.put(note, uNote, typeOf(uNote));
+	}
 	
 	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is a base roman numeral. If so, sets relevant data in the
-	 * unknown note and returns true. If not, returns false.
+	 * Attempt to identify an UnknownNote.
+	 * If matching against all known ParsedNote types fails, 
+	 * returns the passed UnknownNote.
 	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
+	 * The type of a note depends only on its shape, so a note with a 
+	 * known shape is identified by looking its shape up in the shape 
+	 * table, and only checked against each type the first time its shape
+	 * is seen.
+	 * 
+	 * @param note is the UnknownNote to identify
+	 * @throws IllegalArgumentException if note is null
+	 * @return an instance of ParsedNote that is also an instance of
+	 * the appropriate subclass based on checks of note metadata
 	 */
-	private boolean checkAndSetBaseRomanNum(UnknownNote uNote, int index) {
-		if (Translator.ROMAN_NUM_RANK.
-				containsKey(uNote.getComponents()[index])){
-			uNote.setRomanPos(index);
-			uNote.setCountRomanBase(uNote.getCountRomanBase()+1);
-		}
-		return false;
-	} 
+	public ParsedNote identifyNote(UnknownNote note) {
+		
+		if (note == null) 
+			throw new IllegalArgumentException("note cannot be null");
+		
+		return materialise(typeOf(note), note);
+	}
 	
 	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is a composite roman numeral. If so, sets relevant data
-	 * in the unknown note and returns true. If not, returns false.
+	 * Get the type of an UnknownNote from the shape table, checking the
+	 * note against each type if its shape is not in the table.
 	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
+	 * @param note is the UnknownNote to identify
+	 * @return a byte: the type of the note, or UNKNOWN if it matches none
 	 */
-	private boolean checkAndSetCompRomanNum(UnknownNote uNote, int index) {
-		try {
-			Translator.romanNumToArabic(uNote.getComponents()[index]);
-			uNote.setRomanPos(index);
-			uNote.setCountRomanComp(uNote.getCountRomanComp()+1);
-			return true;
-		} catch (IllegalArgumentException e) {
-			return false;
+	private byte typeOf(UnknownNote note) {
+		
+		long shape = note.getShape();
+		byte type = shape == 0 ? ShapeTable.NONE : shapes.get(shape);
+		if (type == ShapeTable.NONE) {
+			type = checkType(note);
+			if (shape != 0) shapes.put(shape, type);
 		}
-	} 
+		
+		return type;
+	}
 	
 	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is a base intergal numeral. If so, sets relevant data 
-	 * in the unknown note and returns true. If not, returns false.
+	 * Build the typed ParsedNote of an identified UnknownNote.
 	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
+	 * @param type is a byte: the type of the note
+	 * @param note is the UnknownNote to build from
+	 * @return a ParsedNote of the given type, or the UnknownNote itself
+	 * if the type is UNKNOWN
 	 */
-	private boolean checkAndSetStartIntergalNum(UnknownNote uNote, int index) {
-		if (isIntergalNum(uNote.getComponents()[index])) {	
-			if (uNote.getCountIntergalClust() == 0) {
-				uNote.setStart1IntergalClust(index);
-			}
-			else {
-				uNote.setStart2IntergalClust(index);
-			}
-			uNote.setCountIntergalClust(uNote.getCountIntergalClust()+1);
-			return true;
+	private static ParsedNote materialise(byte type, UnknownNote note) {
+		
+		switch (type) {
+			case QUERY: return new Query(note);
+			case BASE_NUM_DECL: return new BaseIntergalNumDecl(note);
+			case COMP_NUM_DECL: return new CompIntergalNumDecl(note);
+			case COMMODITY_DECL: return new CommodityDecl(note);
 		}
-		return false;
+		
+		// note does not conform to any known note types, return unchanged
+		return note;
 	}
 	
 	/**
-	 * Sets the relevant info for the end of an intergal numeral cluster
-	 * given an unknown note and the index of the start of an intergal numeral
-	 * cluster within that note.
+	 * A list of like notes that keeps identified notes as the UnknownNotes
+	 * they were tokenized into, building each note's typed ParsedNote the
+	 * first time it is got, and keeping that in its place.
 	 * 
-	 * @param uNote: the note whose info to set
-	 * @param index: the index of the start of an intergal numeral cluster
-	 * @return an int: the index of the end of the intergal numeral cluster
+	 * A built note is put in its place by compareAndSet, so threads that 
+	 * get the same note at once agree on one instance, and see all of it.
+	 * Adding and removing notes is no safer than for an ArrayList. Typed
+	 * notes may also be added as usual, and are kept as given.
 	 */
-	private int setEndIntergalNum(UnknownNote uNote, int index) {
-		// from the start of this intergal num cluster, count base 
-		// intergal nums, set end of cluster, and return end index
-		do {
-			index++;
-		} while (isIntergalNum(uNote.getComponents()[index]));
+	private static final class LazyNoteList<T extends ParsedNote> 
+			extends AbstractList<T> implements RandomAccess {
 		
-		index--;
+		private final byte type;
+		// each a T, or an UnknownNote of this type not yet built; 
+		// replaced when it grows
+		private AtomicReferenceArray<Object> items;
+		private int size;
 		
-		if (uNote.getCountIntergalClust() == 1) {
-			uNote.setEnd1IntergalClust(index);
+		LazyNoteList(byte type) {
+			this.type = type;
+			this.items = new AtomicReferenceArray<Object>(16);
+			this.size = 0;
 		}
-		else {
-			uNote.setEnd2IntergalClust(index);
+		
+		/**
+		 * Add a note of this list's type, to be built when first got.
+		 * 
+		 * @param note is an UnknownNote: the tokenized note
+		 */
+		void addPending(UnknownNote note) {
+			modCount++;
+			ensureCapacity(size + 1);
+			items.set(size++, note);
 		}
 		
-		return index;
-	}
-	
-	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is 'how'. If so, sets relevant data 
-	 * in the unknown note and returns true. If not, returns false.
-	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
-	 */	
-	private boolean checkAndSetHow(UnknownNote uNote, int index) {
-		if (uNote.getComponents()[index].equals("how")) {
-			uNote.setHowPos(index);
-			uNote.setCountHow(uNote.getCountHow()+1);
-			return true;
+		/**
+		 * Add every note of another list of the same type, built or not.
+		 * 
+		 * @param list is a LazyNoteList: the notes to add
+		 */
+		void addAllPending(LazyNoteList<T> list) {
+			
+			modCount++;
+			int numAdded = list.size;
+			ensureCapacity(size + numAdded);
+			for (int i = 0; i < numAdded; i++)
+				items.set(size + i, list.items.get(i));
+			size += numAdded;
 		}
-		return false;
-	}
-	
-	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is 'much'. If so, sets relevant data 
-	 * in the unknown note and returns true. If not, returns false.
-	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
-	 */
-	private boolean checkAndSetMuch(UnknownNote uNote, int index) {
-		if (uNote.getComponents()[index].equals("much")) {
-			uNote.setMuchPos(index);
-			uNote.setCountMuch(uNote.getCountMuch()+1);
-			return true;
+		
+		@Override
+		public T get(int index) {
+			
+			checkIndex(index);
+			Object item = items.get(index);
+			if (item instanceof UnknownNote) {
+				Object built = materialise(type, (UnknownNote)item);
+				// another thread may have built it first; keep theirs
+				item = items.compareAndSet(index, item, built) ? 
+						built : items.get(index);
+			}
+			
+			return cast(item);
 		}
-		return false;
-	}
-	
-	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is 'many'. If so, sets relevant data 
-	 * in the unknown note and returns true. If not, returns false.
-	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
-	 */
-	private boolean checkAndSetMany(UnknownNote uNote, int index) {
-		if (uNote.getComponents()[index].equals("many")) {
-			uNote.setManyPos(index);
-			uNote.setCountMany(uNote.getCountMany()+1);
-			return true;
+		
+		@Override
+		public T set(int index, T note) {
+			T previous = get(index);
+			items.set(index, note);
+			return previous;
 		}
-		return false;
-	} 
-	
-	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is '?'. If so, sets relevant data 
-	 * in the unknown note and returns true. If not, returns false.
-	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
-	 */
-	private boolean checkAndSetQ(UnknownNote uNote, int index) {
-		if (uNote.getComponents()[index].equals("?")) {
-			uNote.setqPos(index);
-			uNote.setCountQ(uNote.getCountQ()+1);
-			return true;
+		
+		@Override
+		public void add(int index, T note) {
+			
+			if (index < 0 || index > size)
+				throw new IndexOutOfBoundsException("Index: " + index + 
+						", Size: " + size);
+			
+			modCount++;
+			ensureCapacity(size + 1);
+			for (int i = size; i > index; i--) items.set(i, items.get(i - 1));
+			items.set(index, note);
+			size++;
 		}
-		return false;
-	}
-	
-	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is an arabic numeral. If so, sets relevant data 
-	 * in the unknown note and returns true. If not, returns false.
-	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
-	 */
-	private boolean checkAndSetArabic(UnknownNote uNote, int index) {
-		if (isArabic(uNote.getComponents()[index])) {
-			uNote.setArabicPos(index);
-			uNote.setCountArabic(uNote.getCountArabic()+1);
-			return true;
+		
+		@Override
+		public T remove(int index) {
+			
+			T removed = get(index);
+			modCount++;
+			for (int i = index; i < size - 1; i++) items.set(i, items.get(i + 1));
+			items.set(--size, null);
+			return removed;
 		}
-		return false;
-	}
-	
-	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is 'Credits'. If so, sets relevant data 
-	 * in the unknown note and returns true. If not, returns false.
-	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
-	 */
-	private boolean checkAndSetCredits(UnknownNote uNote, int index) {
-		if (uNote.getComponents()[index].equals("Credits")) {
-			uNote.setCreditPos(index);
-			uNote.setCountCredits(uNote.getCountCredits()+1);
-			return true;
+		
+		@Override
+		public void clear() {
+			modCount++;
+			items = new AtomicReferenceArray<Object>(16);
+			size = 0;
 		}
-		return false;
-	}
-	
-	/**
-	 * Checks whether the component at the given index of the given
-	 * unknown note is 'is'. If so, sets relevant data 
-	 * in the unknown note and returns true. If not, returns false.
-	 * 
-	 * @param uNote: the note to check
-	 * @param index: the index of the note component to check
-	 * @return true if the check succeeded and info was set, false otherwise
-	 */
-	private boolean checkAndSetIs(UnknownNote uNote, int index) {
-		if (uNote.getComponents()[index].equals("is")) {
-			uNote.setIsPos(index);
-			uNote.setCountIs(uNote.getCountIs()+1);
-			return true;
+		
+		@Override
+		public int size() {
+			return size;
+		}
+		
+		private void checkIndex(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + 
+						", Size: " + size);
+		}
+		
+		private void ensureCapacity(int capacity) {
+			
+			AtomicReferenceArray<Object> old = items;
+			if (capacity <= old.length()) return;
+			
+			AtomicReferenceArray<Object> grown = new AtomicReferenceArray<Object>(
+					Math.max(capacity, 2*old.length()));
+			for (int i = 0; i < size; i++) grown.set(i, old.get(i));
+			items = grown;
+		}
+		
+		@SuppressWarnings("unchecked")
+		private T cast(Object item) {
+			return (T)item;
 		}
-		return false;
 	}
 	
 	/**
-	 * Check whether the given string is entirely an arabic numeral.
+	 * A list of unknown notes that a note can be taken out of without 
+	 * moving or looking at the others.
 	 * 
-	 * @param str is a string: the string to check
-	 * @throws IllegalArgumentException if str is null
-	 * @return true if the string is contains (and contains nothing
-	 * but) an arabic numeral, false otherwise
+	 * Notes are kept in slots, in order. Taking a note out empties its 
+	 * slot, and a Fenwick tree counts the notes in runs of slots, so the 
+	 * note at an index is found in time proportional to the log of the 
+	 * number of slots. Notes can only be added at the end. The slots are
+	 * only compacted when compactIfSparse is called, so a slot keeps its 
+	 * note until then.
 	 */
-	private boolean isArabic(String str) {
+	private static final class UnknownNoteList 
+			extends AbstractList<UnknownNote> implements RandomAccess {
 		
-		if (str == null) 
-			throw new IllegalArgumentException("str cannot be null");
+		private UnknownNote[] slots;
+		// tree[p] counts the notes in the slots from p - (p & -p) up to,
+		// but not including, p
+		private int[] tree;
+		private int numSlots;
+		private int size;
 		
-		for (int i = 0; i < str.length(); i++) {
-			try {
-				Integer.parseInt(str.substring(i, i+1));	
-			}
-			catch (Exception e){
-				return false;
+		UnknownNoteList() {
+			this.slots = new UnknownNote[16];
+			this.tree = new int[slots.length + 1];
+			this.numSlots = 0;
+			this.size = 0;
+		}
+		
+		@Override
+		public UnknownNote get(int index) {
+			return slots[slotOf(index)];
+		}
+		
+		@Override
+		public UnknownNote set(int index, UnknownNote note) {
+			
+			if (note == null)
+				throw new NullPointerException("Unknown note can't be null");
+			
+			int slot = slotOf(index);
+			UnknownNote previous = slots[slot];
+			slots[slot] = note;
+			return previous;
+		}
+		
+		@Override
+		public void add(int index, UnknownNote note) {
+			
+			if (index != size)
+				throw new UnsupportedOperationException("Unknown notes can "
+						+ "only be added at the end");
+			if (note == null)
+				throw new NullPointerException("Unknown note can't be null");
+			
+			if (numSlots == slots.length) {
+				slots = Arrays.copyOf(slots, 2*numSlots);
+				tree = Arrays.copyOf(tree, 2*numSlots + 1);
 			}
+			
+			// the new node counts this note and the others in its run
+			int p = numSlots + 1;
+			tree[p] = 1 + countBefore(p - 1) - countBefore(p - (p & -p));
+			slots[numSlots++] = note;
+			size++;
+			modCount++;
 		}
-		return true;
-	}
-	
-	/**
-	 * Check whether the given string matches the form of 
-	 * a commodity in notes about intergalactic commodity markets.
-	 * 
-	 * Commodities are entirely alphabetic and start with a capital
-	 * letter followed by at least one lowercase letter, 
-	 * and are not some reserved key words.
-	 * 
-	 * @param str is a string: the string to check
-	 * @return true if the string is a commodity, false otherwise
-	 */
-	private boolean isCommodity(String str) {
 		
-		if (str == null) 
-			throw new IllegalArgumentException("str cannot be null");
+		@Override
+		public UnknownNote remove(int index) {
+			int slot = slotOf(index);
+			UnknownNote removed = slots[slot];
+			removeSlot(slot);
+			return removed;
+		}
 		
-		if (str.length() < 2) return false;
-		if (!Character.isAlphabetic(str.charAt(0))) return false;
-		if (!Character.isUpperCase(str.charAt(0))) return false;
-		if (str.equals("Credits")) return false;
+		@Override
+		public void clear() {
+			Arrays.fill(slots, 0, numSlots, null);
+			numSlots = 0;
+			size = 0;
+			modCount++;
+		}
 		
-		for (int i = 1; i < str.length(); i++) {
-			if (!Character.isAlphabetic(str.charAt(i))) return false;
-			if (Character.isUpperCase(str.charAt(i))) return false;
+		@Override
+		public int size() {
+			return size;
 		}
 		
-		return true;
-	}
-	
-	/**
-	 * Check whether the given string matches the form of an
-	 * intergalactic numeral form intergalactic commodity market
-	 * notes.
-	 * 
-	 * An intergalactic numeral in intergalactic commodity notes
-	 * is entirely alphabetic and lowercase, and is not 
-	 * some reserved key words.
-	 * 
-	 * @param str is the string to check
-	 * @throws IllegalArgumentException is the string is null
-	 * @return true if the string is an intergalactic numeral, 
-	 * false otherwise
-	 */
-	private boolean isIntergalNum(String str) {
+		int getNumSlots() {
+			return numSlots;
+		}
 		
-		if (str == null) 
-			throw new IllegalArgumentException("str cannot be null");
+		/**
+		 * Get the note in a slot.
+		 * 
+		 * @param slot is an int: the slot, less than getNumSlots
+		 * @return an UnknownNote: the note in the slot, or null if it was
+		 * taken out
+		 */
+		UnknownNote getSlot(int slot) {
+			return slots[slot];
+		}
 		
-		if (str.length() < 1) return false;
-		if (str.equals("Credits")) return false;
-		if (str.equals("how")) return false;
-		if (str.equals("much")) return false;
-		if (str.equals("is")) return false;
+		/**
+		 * Replace the note in a slot that holds one.
+		 * 
+		 * @param slot is an int: the slot, less than getNumSlots
+		 * @param note is an UnknownNote: the note to put in its place
+		 */
+		void setSlot(int slot, UnknownNote note) {
+			slots[slot] = note;
+		}
 		
-		// must be alphabetic and lower case
-		for (int i = 0; i < str.length(); i++) {
-			if (!Character.isAlphabetic(str.charAt(i)) || 
-				!Character.isLowerCase(str.charAt(i)))
-				return false;
+		/**
+		 * Take the note in a slot out of the list, leaving the slot empty.
+		 * 
+		 * @param slot is an int: a slot holding a note
+		 */
+		void removeSlot(int slot) {
+			
+			slots[slot] = null;
+			for (int p = slot + 1; p <= numSlots; p += p & -p) tree[p]--;
+			size--;
+			modCount++;
 		}
 		
-		return true;
+		/**
+		 * Move the notes into the first slots, in order, if at least half 
+		 * the slots are empty.
+		 * 
+		 * @return true if the slots were compacted, so a note's slot may
+		 * have changed, false otherwise
+		 */
+		boolean compactIfSparse() {
+			
+			if (2*size > numSlots) return false;
+			
+			int n = 0;
+			for (int slot = 0; slot < numSlots; slot++)
+				if (slots[slot] != null) slots[n++] = slots[slot];
+			Arrays.fill(slots, n, numSlots, null);
+			numSlots = n;
+			
+			// every slot is full, so each node counts its whole run
+			for (int p = 1; p <= n; p++) tree[p] = p & -p;
+			modCount++;
+			
+			return true;
+		}
+		
+		/**
+		 * Count the notes in the slots before a slot.
+		 * 
+		 * @param slot is an int: the slot, at most getNumSlots
+		 * @return an int: the number of notes before it
+		 */
+		private int countBefore(int slot) {
+			int count = 0;
+			for (int p = slot; p > 0; p -= p & -p) count += tree[p];
+			return count;
+		}
+		
+		/**
+		 * Find the slot of the note at an index of the list.
+		 * 
+		 * @param index is an int: the index of the note
+		 * @throws IndexOutOfBoundsException if there is no note at index
+		 * @return an int: the slot holding the note
+		 */
+		private int slotOf(int index) {
+			
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + 
+						", Size: " + size);
+			if (size == numSlots) return index;
+			
+			// walk down the tree to the last slot with at most index notes
+			// before it and in it
+			int p = 0, remaining = index + 1;
+			for (int step = Integer.highestOneBit(numSlots); step > 0; 
+					step >>= 1) {
+				if (p + step <= numSlots && tree[p + step] < remaining) {
+					p += step;
+					remaining -= tree[p];
+				}
+			}
+			
+			return p;
+		}
 	}
 	
 	/**
-	 * Attempt to identify an UnknownNote.
-	 * If matching against all known ParsedNote types fails, 
-	 * returns the passed UnknownNote.
+	 * Check an UnknownNote against each known ParsedNote type in turn.
 	 * 
-	 * @param note is the UnknownNote to identify
-	 * @throws IllegalArgumentException if note is null
-	 * @return an instance of ParsedNote that is also an instance of
-	 * the appropriate subclass based on checks of note metadata
+	 * @param note is the UnknownNote to check
+	 * @return a byte: the type of the note, or UNKNOWN if it matches none
 	 */
-	public ParsedNote identifyNote(UnknownNote note) {
-		
-		if (note == null) 
-			throw new IllegalArgumentException("note cannot be null");
+	private byte checkType(UnknownNote note) {
 		
-		if (isQuery(note)) return new Query(note);
-		if (isBaseNumDecl(note)) return new BaseIntergalNumDecl(note);
-		if (isCompositeNumDecl(note)) return new CompIntergalNumDecl(note);
-		if (isCommodityDecl(note)) return new CommodityDecl(note);
+		if (isQuery(note)) return QUERY;
+		if (isBaseNumDecl(note)) return BASE_NUM_DECL;
+		if (isCompositeNumDecl(note)) return COMP_NUM_DECL;
+		if (isCommodityDecl(note)) return COMMODITY_DECL;
 		
-		// note does not conform to any known note types, return unchanged
-		return note;
+		return UNKNOWN;
 	}
 	
 	/**
@@ -515,7 +1142,7 @@ public class NoteParser {
 		if (note == null) 
 			throw new IllegalArgumentException("note cannot be null");
 		
-		return note.getComponents().length == 3 && 
+		return note.getNumComponents() == 3 && 
 			note.getCountIntergalClust() == 1 &&
 			note.getCountRomanBase() == 1 && note.getCountIs() == 1 && 
 			note.getRomanPos() == 2 && note.getIsPos() == 1 &&
@@ -541,13 +1168,13 @@ public class NoteParser {
 		if (note == null) 
 			throw new IllegalArgumentException("note cannot be null");
 		
-		return note.getComponents().length > 3 && 
+		return note.getNumComponents() > 3 && 
 			note.getCountIntergalClust() == 1 &&
 			note.getCountRomanComp() == 1 && note.getCountIs() == 1 && 
-			note.getRomanPos() == note.getComponents().length-1 && 
-			note.getIsPos() == note.getComponents().length-2 &&
+			note.getRomanPos() == note.getNumComponents()-1 && 
+			note.getIsPos() == note.getNumComponents()-2 &&
 			note.getStart1IntergalClust() == 0 && 
-			note.getEnd1IntergalClust() == note.getComponents().length-3;
+			note.getEnd1IntergalClust() == note.getNumComponents()-3;
 	}
 	
 	/**
@@ -573,16 +1200,16 @@ public class NoteParser {
 		if (note == null) 
 			throw new IllegalArgumentException("note cannot be null");
 		
-		return note.getComponents().length > 4 && 
+		return note.getNumComponents() > 4 && 
 				note.getCountIntergalClust() == 1 &&
 				note.getCountCredits() == 1 && note.getCountIs() == 1 && 
 				note.getCountArabic() == 1 && 
-				note.getCreditPos() == note.getComponents().length-1 &&
-				note.getArabicPos() == note.getComponents().length-2 &&
-				note.getIsPos() == note.getComponents().length-3 &&
-				note.getComm1Pos() == note.getComponents().length - 4 &&
+				note.getCreditPos() == note.getNumComponents()-1 &&
+				note.getArabicPos() == note.getNumComponents()-2 &&
+				note.getIsPos() == note.getNumComponents()-3 &&
+				note.getComm1Pos() == note.getNumComponents() - 4 &&
 				note.getStart1IntergalClust() == 0 && 
-				note.getEnd1IntergalClust() == note.getComponents().length-5;
+				note.getEnd1IntergalClust() == note.getNumComponents()-5;
 	}
 	
 	/**
@@ -601,7 +1228,101 @@ public class NoteParser {
 	 * @return true if the given note is a query, false otherwise.
 	 */
 	public boolean isQuery(UnknownNote note) {
-		return note.getqPos() == note.getComponents().length-1;
+		return note.getqPos() == note.getNumComponents()-1;
+	}
+	
+	/**
+	 * Get the table of note shapes this parser has identified, with
+	 * counts of how often a note's shape was (hits) or was not (misses)
+	 * already in it.
+	 * 
+	 * @return a ShapeTable: the shapes this parser has identified
+	 */
+	public ShapeTable getShapeTable() {
+		return shapes;
+	}
+	
+	public boolean isKeepStreamedNotes() {
+		return keepStreamedNotes;
+	}
+	
+	/**
+	 * Set whether notes parsed as a stream are also added to the lists 
+	 * of like notes, as parseNotes(List) does. Off by default, so that 
+	 * streaming any number of notes takes the same memory.
+	 * 
+	 * @param keepStreamedNotes is a boolean: true to keep streamed notes,
+	 * false to let them go once consumed
+	 */
+	public void setKeepStreamedNotes(boolean keepStreamedNotes) {
+		this.keepStreamedNotes = keepStreamedNotes;
+	}
+	
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+	
+	/**
+	 * Set how many notes parseNotes must be given to parse them in 
+	 * parallel.
+	 * 
+	 * @param parallelThreshold is an int: the fewest notes to parse in 
+	 * parallel, or Integer.MAX_VALUE to always parse notes in sequence
+	 * @throws IllegalArgumentException if parallelThreshold is less than 1
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		
+		if (parallelThreshold < 1)
+			throw new IllegalArgumentException("Parallel threshold must be "
+					+ "at least 1, not " + parallelThreshold);
+		
+		this.parallelThreshold = parallelThreshold;
+	}
+	
+	/**
+	 * Get the pool notes are parsed in parallel on.
+	 * 
+	 * @return a ForkJoinPool: the pool set with setPool, or the common
+	 * pool if none was set
+	 */
+	public ForkJoinPool getPool() {
+		return pool != null ? pool : ForkJoinPool.commonPool();
+	}
+	
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	public ParseCache getParseCache() {
+		return cache;
+	}
+	
+	/**
+	 * Set the cache of recently parsed lines to parse repeated lines 
+	 * from. Off (null) by default.
+	 * 
+	 * Lines parsed in parallel are cached by each chunk on its own, in an
+	 * empty cache like this one that also finds the lines this one held
+	 * beforehand. When the chunks are done, their lines are cached in this
+	 * one in order, evicting as its policy says, and their hits and misses
+	 * are added to this one's.
+	 * 
+	 * How a line parses depends on the words the parser has learned, so 
+	 * a cache should only be given to one parser.
+	 * 
+	 * @param cache is a ParseCache: the cache to use, or null to parse 
+	 * every line
+	 */
+	public void setParseCache(ParseCache cache) {
+		this.cache = cache;
+	}
+	
+	public long getShapeHits() {
+		return shapes.getHits();
+	}
+	
+	public long getShapeMisses() {
+		return shapes.getMisses();
 	}
 	
 	public Map<Class, List<? extends ParsedNote>> getParsedNotes() {
@@ -628,6 +1349,21 @@ public class NoteParser {
 		return unknownNotes;
 	}
 	
+	/**
+	 * Get the words this parser has learned are intergal numerals.
+	 * 
+	 * @return a set of strings: a read-only copy of the learned words
+	 */
+	public Set<String> getIntergalWords() {
+		
+		if (intergalWords == null) return Collections.emptySet();
+		
+		Set<String> words = new HashSet<String>();
+		for (int id = 0; id < intergalWords.size(); id++)
+			words.add(intergalWords.symbolOf(id));
+		return Collections.unmodifiableSet(words);
+	}
+	
 	public List<String> getNotes() {
 		return notes;
 	}
@@ -1,6 +1,7 @@
 package app;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
@@ -11,6 +12,7 @@ import notes.BaseIntergalNumDecl;
 import notes.CommodityDecl;
 import notes.CompIntergalNumDecl;
 import notes.Query;
+import utility.Journal;
 import utility.Ledger;
 import utility.Translator;
 
@@ -32,7 +34,9 @@ import utility.Translator;
  * 
  * Input to this program consists of a string, which is the path to a text 
  * file detailing notes on the conversion between intergalactic units 
- * and roman numerals.
+ * and roman numerals, and optionally the path to a journal directory. 
+ * With a journal, the program remembers every declaration it is given 
+ * from one run to the next (see Journal).
  * 
  * @author ryanwilliamconnor
  * 
@@ -68,7 +72,9 @@ public class NoteProcessor {
 	 * Begin a program that:
 	 * 
 	 * 1) reads the text file located at the path given as a command-line
-	 * argument to this program
+	 * argument to this program, and if a second argument is given, 
+	 * replays the journal in that directory, learning every declaration
+	 * made in earlier runs
 	 * 2) parses the contents of the file, extracting relevant information
 	 * about the intergalactic commodity markets.
 	 * 3) responds to any queries contained in the file by printing
@@ -105,9 +111,21 @@ public class NoteProcessor {
         }
     	
 		NoteProcessor processor = new NoteProcessor(notes);
+		Journal journal = null;
+		if (args.length > 1) {
+			try {
+				journal = new Journal(new File(args[1]), processor.ledger, 
+						processor.translator);
+			}
+			catch (IOException ex) {
+				System.out.println("Unable to open journal '" + args[1] + "'");
+			}
+		}
+		
         processor.parser.parseNotes(notes);
         processor.makeDeclarations();
         processor.handleQueries();
+        if (journal != null) journal.close();
 	}
 	
 	public void makeDeclarations() {
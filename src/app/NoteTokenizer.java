@@ -0,0 +1,435 @@
+package app;
+
+import notes.ParsedNote;
+import notes.SymbolTable;
+import notes.UnknownNote;
+import utility.NumeralSystem;
+import utility.Translator;
+
+/**
+ * Split notes about the intergalactic commodity markets into components
+ * and classify each component, in a single pass over each note.
+ *
+ * Gives the same components as note.split(" ") and the same metadata as
+ * checking each component against every kind of component in turn, but
+ * looks each char up in a table once instead of running a check per kind
+ * of component. Components are recorded as offsets into the note rather
+ * than copied out of it.
+ *
+ * A component is classified as exactly one of the token classes below.
+ * Base roman numerals are also composite roman numerals, so count as
+ * both in the metadata.
+ *
+ * The token classes of a note's components, in order, make up the shape
+ * of the note, packed into a long four bits per component. Every
+ * metadata stat is a function of the shape, so notes of the same shape
+ * are always the same type of note.
+ *
+ * @author ryanwilliamconnor
+ *
+ */
+public final class NoteTokenizer {
+
+	// token classes
+	public static final byte OTHER = 0;
+	public static final byte IS = 1;
+	public static final byte CREDITS = 2;
+	public static final byte HOW = 3;
+	public static final byte MUCH = 4;
+	public static final byte MANY = 5;
+	public static final byte Q = 6;
+	public static final byte ARABIC = 7;
+	public static final byte COMMODITY = 8;
+	public static final byte ROMAN_BASE = 9;
+	public static final byte ROMAN_COMP = 10;
+	public static final byte INTERGAL = 11;
+	public static final String[] CLASS_NAMES = {"OTHER", "IS", "CREDITS",
+		"HOW", "MUCH", "MANY", "Q", "ARABIC", "COMMODITY", "ROMAN_BASE",
+		"ROMAN_COMP", "INTERGAL"};
+
+	// char flags; a component has a flag if every char in it does
+	private static final int DIGIT = 1;
+	private static final int ROMAN = 2;
+	private static final int UPPER_ALPHA = 4;
+	private static final int NON_UPPER_ALPHA = 8;
+	private static final int LOWER_ALPHA = 16;
+	private static final int ALL_FLAGS = 31;
+
+	// flags of each ascii char; other chars are checked as they come
+	private static final byte[] CHAR_FLAGS;
+
+	private static final int INITIAL_COMPONENTS = 16;
+
+	// the most components a note can have and still have a shape
+	public static final int MAX_SHAPE_COMPONENTS = 16;
+
+	static {
+		CHAR_FLAGS = new byte[128];
+		for (char c = 0; c < CHAR_FLAGS.length; c++)
+			CHAR_FLAGS[c] = (byte)computeFlags(c);
+	}
+
+	/**
+	 * Split a note into components and track its metadata, in one pass.
+	 *
+	 * A cluster of intergal numerals runs until the first component that
+	 * is not an intergal numeral or 'many', or to the end of the note.
+	 *
+	 * @param note is a string: the note to tokenize
+	 * @throws NullPointerException if note is null
+	 * @return an UnknownNote holding the components and metadata of
+	 * the note
+	 */
+	public static UnknownNote tokenize(String note) {
+		return tokenize(note, null);
+	}
+
+	/**
+	 * Split a note into components and track its metadata, in one pass,
+	 * also taking the given words to be intergal numerals.
+	 *
+	 * A component that would otherwise be classified as OTHER or as a
+	 * COMMODITY is an INTERGAL numeral if it is one of the words, so 
+	 * dialects can use numerals that are not all lowercase letters. The
+	 * words are looked up in place, so no component is copied.
+	 *
+	 * @param note is a string: the note to tokenize
+	 * @param intergalWords is a SymbolTable: words known to be intergal 
+	 * numerals, or null if there are none
+	 * @throws NullPointerException if note is null
+	 * @return an UnknownNote holding the components and metadata of
+	 * the note
+	 */
+	public static UnknownNote tokenize(String note, 
+			SymbolTable intergalWords) {
+
+		if (note == null)
+			throw new NullPointerException("Note can't be null");
+
+		// the start and end of each component, one after the other
+		int[] offsets = new int[2*INITIAL_COMPONENTS];
+		UnknownNote uNote = new UnknownNote(note, offsets, 0);
+		int numComponents = 0;
+		// like split(" "), empty components count only if another follows
+		int numEmpty = 0;
+		boolean inClust = false;
+		long shape = 0;
+
+		int length = note.length();
+		int start = 0;
+		int first = 0, rest = ALL_FLAGS;
+		char c;
+		byte cls;
+
+		for (int i = 0; i <= length; i++) {
+
+			c = i < length ? note.charAt(i) : ' ';
+
+			if (c != ' ') {
+				if (i == start) first = flagsOf(c);
+				else rest &= flagsOf(c);
+				continue;
+			}
+
+			if (i == start) {
+				numEmpty++;
+				start = i+1;
+				continue;
+			}
+
+			if (2*(numComponents + numEmpty + 1) > offsets.length)
+				offsets = grow(offsets, 2*(numComponents + numEmpty + 1));
+			for (; numEmpty > 0; numEmpty--) {
+				// the empty component before the separator at start-1
+				offsets[2*numComponents] = start - numEmpty;
+				offsets[2*numComponents+1] = start - numEmpty;
+				inClust = addComponent(uNote, ARABIC, numComponents++,
+						inClust);
+				shape = addToShape(shape, ARABIC);
+			}
+
+			cls = classify(note, start, i, first, rest);
+			if (intergalWords != null && (cls == OTHER || cls == COMMODITY) &&
+				intergalWords.contains(note, start, i))
+				cls = INTERGAL;
+			offsets[2*numComponents] = start;
+			offsets[2*numComponents+1] = i;
+			inClust = addComponent(uNote, cls, numComponents++, inClust);
+			shape = addToShape(shape, cls);
+
+			start = i+1;
+			rest = ALL_FLAGS;
+		}
+
+		// a note with no spaces is one component, even if it is empty
+		if (length == 0) {
+			inClust = addComponent(uNote, ARABIC, numComponents++, inClust);
+			shape = addToShape(shape, ARABIC);
+		}
+
+		if (inClust) endClust(uNote, numComponents-1);
+
+		uNote.setComponentOffsets(offsets, numComponents);
+		uNote.setShape(numComponents <= MAX_SHAPE_COMPONENTS ? shape : 0);
+
+		return uNote;
+	}
+
+	/**
+	 * Get the shape of a note: the token classes of its components, in
+	 * order, four bits each with the first component highest.
+	 *
+	 * @param pNote is a ParsedNote: the note to get the shape of
+	 * @throws NullPointerException if pNote is null
+	 * @return a long: the shape of the note, or 0 if the note has more
+	 * than MAX_SHAPE_COMPONENTS components
+	 */
+	public static long shapeOf(ParsedNote pNote) {
+
+		int numComponents = pNote.getNumComponents();
+		if (numComponents > MAX_SHAPE_COMPONENTS) return 0;
+
+		long shape = 0;
+		CharSequence component;
+		for (int i = 0; i < numComponents; i++) {
+			component = pNote.getComponent(i);
+			shape = addToShape(shape, classify(component, 0,
+					component.length()));
+		}
+
+		return shape;
+	}
+
+	/**
+	 * Spell out a shape as the names of its token classes.
+	 *
+	 * @param shape is a long: the shape of a note
+	 * @return a string: the token classes of the shape separated by
+	 * spaces, e.g. "INTERGAL INTERGAL COMMODITY IS ARABIC CREDITS"
+	 */
+	public static String shapeToString(long shape) {
+
+		StringBuilder str = new StringBuilder();
+		int cls;
+		for (int shift = 60; shift >= 0; shift -= 4) {
+			cls = (int)(shape >>> shift) & 0xF;
+			if (cls == 0) continue;
+			if (str.length() > 0) str.append(' ');
+			str.append(CLASS_NAMES[cls-1]);
+		}
+
+		return str.toString();
+	}
+
+	/**
+	 * Add a component to the end of a shape. Each class is stored as
+	 * one more than itself, so no component is ever all zero bits.
+	 */
+	private static long addToShape(long shape, byte cls) {
+		return (shape << 4) | (cls + 1);
+	}
+
+	/**
+	 * Classify a portion of a character sequence as a component of a note.
+	 *
+	 * @param str is a CharSequence holding the component
+	 * @param start is an int: the index of the first char of the component
+	 * @param end is an int: the index after the last char of the component
+	 * @throws NullPointerException if str is null
+	 * @return a byte: the token class of the component
+	 */
+	public static byte classify(CharSequence str, int start, int end) {
+
+		if (end <= start) return ARABIC;
+
+		int first = flagsOf(str.charAt(start));
+		int rest = ALL_FLAGS;
+		for (int i = start+1; i < end; i++) rest &= flagsOf(str.charAt(i));
+
+		return classify(str, start, end, first, rest);
+	}
+
+	/**
+	 * Classify a component given the flags of its chars.
+	 *
+	 * @param str is a CharSequence holding the component
+	 * @param start is an int: the index of the first char of the component
+	 * @param end is an int: the index after the last char of the component
+	 * @param first is an int: the flags of the first char
+	 * @param rest is an int: the flags every char after the first has
+	 * @return a byte: the token class of the component
+	 */
+	private static byte classify(CharSequence str, int start, int end,
+			int first, int rest) {
+
+		int len = end - start;
+		int all = first & rest;
+
+		switch (len) {
+			case 1:
+				if (str.charAt(start) == '?') return Q;
+				break;
+			case 2:
+				if (matches(str, start, "is")) return IS;
+				break;
+			case 3:
+				if (matches(str, start, "how")) return HOW;
+				break;
+			case 4:
+				if (matches(str, start, "much")) return MUCH;
+				if (matches(str, start, "many")) return MANY;
+				break;
+			case 7:
+				if (matches(str, start, "Credits")) return CREDITS;
+				break;
+		}
+
+		if ((all & DIGIT) != 0) return ARABIC;
+
+		// first letter capital, the rest not, and at least two letters
+		if (len > 1 && (first & UPPER_ALPHA) != 0 && 
+			(rest & NON_UPPER_ALPHA) != 0)
+			return COMMODITY;
+
+		if ((all & ROMAN) != 0) {
+			if (len == 1) return ROMAN_BASE;
+			if (Translator.tryRomanNumToArabic(str, start, end) >= 0)
+				return ROMAN_COMP;
+			return OTHER;
+		}
+
+		if ((all & LOWER_ALPHA) != 0) return INTERGAL;
+
+		return OTHER;
+	}
+
+	/**
+	 * Record one classified component in the metadata of a note.
+	 *
+	 * @param uNote is an UnknownNote: the note whose metadata to set
+	 * @param cls is a byte: the token class of the component
+	 * @param index is an int: the index of the component in the note
+	 * @param inClust is a boolean: whether the component before this one
+	 * is in a cluster of intergal numerals
+	 * @return true if this component is in a cluster of intergal numerals,
+	 * false otherwise
+	 */
+	private static boolean addComponent(UnknownNote uNote, byte cls,
+			int index, boolean inClust) {
+
+		if (inClust) {
+			if (cls == INTERGAL || cls == MANY) return true;
+			endClust(uNote, index-1);
+		}
+
+		switch (cls) {
+			case IS:
+				uNote.setIsPos(index);
+				uNote.setCountIs(uNote.getCountIs()+1);
+				break;
+			case CREDITS:
+				uNote.setCreditPos(index);
+				uNote.setCountCredits(uNote.getCountCredits()+1);
+				break;
+			case HOW:
+				uNote.setHowPos(index);
+				uNote.setCountHow(uNote.getCountHow()+1);
+				break;
+			case MUCH:
+				uNote.setMuchPos(index);
+				uNote.setCountMuch(uNote.getCountMuch()+1);
+				break;
+			case MANY:
+				uNote.setManyPos(index);
+				uNote.setCountMany(uNote.getCountMany()+1);
+				break;
+			case Q:
+				uNote.setqPos(index);
+				uNote.setCountQ(uNote.getCountQ()+1);
+				break;
+			case ARABIC:
+				uNote.setArabicPos(index);
+				uNote.setCountArabic(uNote.getCountArabic()+1);
+				break;
+			case COMMODITY:
+				if (uNote.getCountComm() == 0) uNote.setComm1Pos(index);
+				else uNote.setComm2Pos(index);
+				uNote.setCountComm(uNote.getCountComm()+1);
+				break;
+			case ROMAN_BASE:
+				uNote.setRomanPos(index);
+				uNote.setCountRomanBase(uNote.getCountRomanBase()+1);
+				uNote.setCountRomanComp(uNote.getCountRomanComp()+1);
+				break;
+			case ROMAN_COMP:
+				uNote.setRomanPos(index);
+				uNote.setCountRomanComp(uNote.getCountRomanComp()+1);
+				break;
+			case INTERGAL:
+				if (uNote.getCountIntergalClust() == 0)
+					uNote.setStart1IntergalClust(index);
+				else
+					uNote.setStart2IntergalClust(index);
+				uNote.setCountIntergalClust(uNote.getCountIntergalClust()+1);
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Set the end of the latest cluster of intergal numerals in a note.
+	 *
+	 * @param uNote is an UnknownNote: the note whose metadata to set
+	 * @param index is an int: the index of the last component of the cluster
+	 */
+	private static void endClust(UnknownNote uNote, int index) {
+		if (uNote.getCountIntergalClust() == 1)
+			uNote.setEnd1IntergalClust(index);
+		else
+			uNote.setEnd2IntergalClust(index);
+	}
+
+	/**
+	 * Determine whether a portion of a character sequence is a keyword.
+	 *
+	 * WARNING: Assumes the portion is as long as the keyword.
+	 */
+	private static boolean matches(CharSequence str, int start,
+			String keyword) {
+		for (int i = 0; i < keyword.length(); i++)
+			if (str.charAt(start+i) != keyword.charAt(i)) return false;
+		return true;
+	}
+
+	private static int[] grow(int[] offsets, int minLength) {
+		int[] grown = new int[Math.max(minLength, 2*offsets.length)];
+		System.arraycopy(offsets, 0, grown, 0, offsets.length);
+		return grown;
+	}
+
+	private static int flagsOf(char c) {
+		return c < CHAR_FLAGS.length ? CHAR_FLAGS[c] : computeFlags(c);
+	}
+
+	/**
+	 * Work out the flags of a char from the same checks the parser
+	 * has always made of each char of a component.
+	 *
+	 * @param c is a char: the char to check
+	 * @return an int: the flags of the char
+	 */
+	private static int computeFlags(char c) {
+
+		int flags = 0;
+		// a single char parses as an int exactly when it is a digit
+		if (Character.digit(c, 10) >= 0) flags |= DIGIT;
+		if (NumeralSystem.ROMAN.rankOfChar(c) >= 0) flags |= ROMAN;
+		if (Character.isAlphabetic(c)) {
+			flags |= Character.isUpperCase(c) ? UPPER_ALPHA : NON_UPPER_ALPHA;
+			if (Character.isLowerCase(c)) flags |= LOWER_ALPHA;
+		}
+
+		return flags;
+	}
+}
@@ -0,0 +1,257 @@
+package app;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import notes.UnknownNote;
+
+/**
+ * Remember how recently parsed lines of notes parsed, so a line seen 
+ * again is not tokenized and identified again.
+ * 
+ * Feeds of notes repeat lines constantly (the same price declaration 
+ * every tick, the same query from many dashboards), and a line always 
+ * parses the same way as long as the parser learns no new words. The 
+ * cache maps each raw line to its tokenized note and type, which the 
+ * parser never changes once cached; a hit builds its ParsedNote from 
+ * those instead of from the line.
+ * 
+ * The cache holds up to a maximum number of lines. Once full, what
+ * happens to a new line depends on the cache's eviction policy.
+ * 
+ * A ParseCache is not safe to use from more than one thread at a time.
+ * A parser parsing in parallel gives each chunk its own cache, which 
+ * also finds the lines of an unchanging copy of the parser's cache, and
+ * merges the chunks' caches back into its own when they are done.
+ * 
+ * @author ryanwilliamconnor
+ * 
+ */
+public final class ParseCache {
+	
+	/**
+	 * What a full cache does with a new line.
+	 */
+	public enum Eviction {
+		/** Drop the line used least recently to make room. */
+		LRU,
+		/** Drop the line cached longest ago to make room. */
+		FIFO,
+		/** Don't cache the new line, like a full ShapeTable. */
+		NONE
+	}
+	
+	public static final int DEFAULT_MAX_LINES = 4096;
+	
+	private final int maxLines;
+	private final Eviction eviction;
+	private final Map<String, ParseCache.Entry> lines;
+	// the lines of another cache, only read, to find lines not in this
+	// one; null if none
+	private final Map<String, ParseCache.Entry> seed;
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	/**
+	 * Create an empty ParseCache holding up to DEFAULT_MAX_LINES lines, 
+	 * dropping the least recently used line when full.
+	 */
+	public ParseCache() {
+		this(DEFAULT_MAX_LINES, Eviction.LRU);
+	}
+	
+	/**
+	 * Create an empty ParseCache.
+	 * 
+	 * @param maxLines is an int: the most lines to hold
+	 * @param eviction is an Eviction: what to do with a new line when full
+	 * @throws IllegalArgumentException if maxLines is less than 1
+	 * @throws NullPointerException if eviction is null
+	 */
+	public ParseCache(int maxLines, Eviction eviction) {
+		this(maxLines, eviction, null);
+	}
+	
+	/**
+	 * Create an empty ParseCache with the same maximum lines and eviction
+	 * policy as another.
+	 * 
+	 * @param cache is a ParseCache: the cache to take the settings of
+	 */
+	public ParseCache(ParseCache cache) {
+		this(cache.maxLines, cache.eviction, null);
+	}
+	
+	/**
+	 * Create an empty ParseCache with the same maximum lines and eviction
+	 * policy as another, that also finds the lines of a copy of another
+	 * cache's lines, caching each it finds there as if just parsed.
+	 * 
+	 * @param cache is a ParseCache: the cache to take the settings of
+	 * @param seed is a map of strings to Entries: a copy of the lines of 
+	 * a cache, which must not change while this cache is used
+	 */
+	ParseCache(ParseCache cache, Map<String, ParseCache.Entry> seed) {
+		this(cache.maxLines, cache.eviction, seed);
+	}
+	
+	private ParseCache(int maxLines, Eviction eviction, 
+			Map<String, ParseCache.Entry> seed) {
+		
+		if (maxLines < 1)
+			throw new IllegalArgumentException("Max lines must be at least 1,"
+					+ " not " + maxLines);
+		if (eviction == null)
+			throw new NullPointerException("Eviction can't be null");
+		
+		this.maxLines = maxLines;
+		this.eviction = eviction;
+		this.seed = seed;
+		// inside the subclass, Entry would name Map.Entry
+		this.lines = new LinkedHashMap<String, ParseCache.Entry>(16, 0.75f, 
+				eviction == Eviction.LRU) {
+			
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, ParseCache.Entry> eldest) {
+				if (size() <= ParseCache.this.maxLines) return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+	
+	/**
+	 * Get the cached parse of a line, counting a hit if the line is in 
+	 * the cache and a miss otherwise.
+	 * 
+	 * @param line is a string: the raw line
+	 * @return an Entry: the line's tokenized note and type, or null if
+	 * the line is not in the cache
+	 */
+	Entry get(String line) {
+		
+		Entry entry = lines.get(line);
+		if (entry == null && seed != null) {
+			entry = seed.get(line);
+			if (entry != null) cache(line, entry);
+		}
+		if (entry == null) misses++;
+		else hits++;
+		
+		return entry;
+	}
+	
+	/**
+	 * Cache the parse of a line, unless the cache is full and its policy
+	 * is not to evict.
+	 * 
+	 * @param line is a string: the raw line
+	 * @param note is an UnknownNote: the line tokenized, which must not 
+	 * be changed from now on
+	 * @param type is a byte: the type the note was identified as
+	 * @return an Entry: the line's tokenized note and type, whether or 
+	 * not it was cached
+	 */
+	Entry put(String line, UnknownNote note, byte type) {
+		
+		Entry entry = new Entry(note, type);
+		cache(line, entry);
+		
+		return entry;
+	}
+	
+	/**
+	 * Cache the lines of another cache, from the least to the most 
+	 * recently cached or used, as if each were just parsed, evicting as 
+	 * this cache's policy says; and add the other cache's hits, misses and
+	 * evictions to this one's.
+	 * 
+	 * @param cache is a ParseCache: the cache to merge into this one
+	 */
+	void merge(ParseCache cache) {
+		
+		for (Map.Entry<String, Entry> line : cache.lines.entrySet())
+			cache(line.getKey(), line.getValue());
+		
+		hits += cache.hits;
+		misses += cache.misses;
+		evictions += cache.evictions;
+	}
+	
+	/**
+	 * Get a copy of the cached lines, for caches to find lines in.
+	 * 
+	 * @return a map of strings to Entries: the lines and their parses
+	 */
+	Map<String, Entry> copyLines() {
+		return new HashMap<String, Entry>(lines);
+	}
+	
+	private void cache(String line, Entry entry) {
+		if (eviction != Eviction.NONE || lines.size() < maxLines || 
+				lines.containsKey(line)) 
+			lines.put(line, entry);
+	}
+	
+	/**
+	 * Remove every line, keeping the hit, miss and eviction counts.
+	 */
+	public void clear() {
+		lines.clear();
+	}
+	
+	/**
+	 * Get the fraction of lookups that were hits.
+	 * 
+	 * @return a double: hits over hits plus misses, or 0 if there have
+	 * been no lookups
+	 */
+	public double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double)hits / lookups;
+	}
+	
+	public int getNumLines() {
+		return lines.size();
+	}
+	
+	public int getMaxLines() {
+		return maxLines;
+	}
+	
+	public Eviction getEviction() {
+		return eviction;
+	}
+	
+	public long getHits() {
+		return hits;
+	}
+	
+	public long getMisses() {
+		return misses;
+	}
+	
+	public long getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * The parse of a cached line: its tokenized note and type. Immutable,
+	 * as long as the parser leaves the note alone.
+	 */
+	static final class Entry {
+		
+		final UnknownNote note;
+		final byte type;
+		
+		Entry(UnknownNote note, byte type) {
+			this.note = note;
+			this.type = type;
+		}
+	}
+}
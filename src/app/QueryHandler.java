@@ -1,10 +1,5 @@
 package app;
 
-import java.math.BigDecimal;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
-import java.util.Map;
-
 import notes.Query;
 import utility.Ledger;
 import utility.Translator;
@@ -20,7 +15,7 @@ public class QueryHandler {
 	
 	Translator translator;
 	Ledger ledger;
-	NumberFormat priceOutFormat;
+	int[] intergalNumIds;
 	
 	/**
 	 * Create a new QueryHandler.
@@ -33,7 +28,7 @@ public class QueryHandler {
 	public QueryHandler(Translator translator, Ledger ledger) {
 		this.translator = translator;
 		this.ledger = ledger;
-		this.priceOutFormat = new DecimalFormat("#.##");
+		this.intergalNumIds = new int[Translator.MAX_ROMAN_LENGTH];
 	}
 
 	/**
@@ -61,7 +56,7 @@ public class QueryHandler {
 			return;
 		}
 		
-		if (q.getComponents()[1].equals("much")) {
+		if (q.componentEquals(1, "much")) {
 			handleMuchQ(q);
 		}
 		else {
@@ -79,14 +74,14 @@ public class QueryHandler {
 	 * @param q is a Query: the 'much' query to handle
 	 */
 	private void handleMuchQ(Query q) {
-		try {
-			String answer = q.getIntergalNum() + " is ";
-			answer += translator.intergalNumToArabic(q.getIntergalNum());
-			System.out.println(answer);	
-		} catch (Exception e) {
-			System.out.println("I don't know how to answer '" 
-					+ q.getNote() + "'");
+		
+		int aNum = translateIntergalNum(q);
+		if (aNum < 0) {
+			printUnanswerable(q);
+			return;
 		}
+		
+		System.out.println(q.getIntergalNum() + " is " + aNum);
 	}
 	
 	/**
@@ -99,20 +94,71 @@ public class QueryHandler {
 	 * @param q is a Query: the 'many' query to handle
 	 */
 	private void handleManyQ(Query q) {
-		// format to show decimal only if necessary
-		try {
-			int aCommAmnt = 
-					translator.intergalNumToArabic(q.getIntergalNum());
-			BigDecimal aCommPrice = ledger.getCreditPrice(q.getCommodity()).
-					multiply(new BigDecimal(aCommAmnt));
-			String answer = q.getIntergalNum() + " " + q.getCommodity() 
-				+ " is ";
-			answer += priceOutFormat.format(aCommPrice) + " Credits";
-			System.out.println(answer);
-		} catch (Exception e) {
-			System.out.println("I don't know how to answer '" 
-					+ q.getNote() + "'");
+		
+		int aCommAmnt = translateIntergalNum(q);
+		String aCommPrice = aCommAmnt < 0 ? null : 
+			ledger.formatCreditPrice(q.getCommodityId(), aCommAmnt);
+		if (aCommPrice == null) {
+			printUnanswerable(q);
+			return;
 		}
+		
+		// formatted to show decimal only if necessary
+		String answer = q.getIntergalNum() + " " + q.getCommodity() + " is ";
+		answer += aCommPrice + " Credits";
+		System.out.println(answer);
+	}
+	
+	/**
+	 * Translate the intergal numeral in a query to an arabic numeral.
+	 * 
+	 * Looks up the id of each base intergal numeral in the query's 
+	 * components and has the translator work on the ids, so no 
+	 * numeral strings are built.
+	 * 
+	 * @param q is a Query: the query whose intergal numeral to translate
+	 * @return an int: the arabic numeral, or the negative code of a 
+	 * NumeralError if the intergal numeral can't be translated
+	 */
+	private int translateIntergalNum(Query q) {
+		
+		int start = q.getIntergalNumStart();
+		int len = q.getIntergalNumLength();
+		
+		if (intergalNumIds.length < len) intergalNumIds = new int[len];
+		for (int i = 0; i < len; i++)
+			intergalNumIds[i] = intergalNumIdOf(q, start+i);
+		
+		return translator.tryIntergalNumToArabic(intergalNumIds, 0, len);
+	}
+	
+	/**
+	 * Look up the id of a component of a query as an intergal numeral,
+	 * without copying the component out of the query's note.
+	 * 
+	 * @param q is a Query: the query
+	 * @param index is an int: the index of the component
+	 * @return an int: the id of the intergal numeral, or -1 if the 
+	 * translator does not know it
+	 */
+	private int intergalNumIdOf(Query q, int index) {
+		
+		int start = q.getComponentStart(index);
+		// components not given as parts of the note are strings already
+		if (start < 0) return translator.getIntergalNumId(q.getComponent(index));
+		
+		return translator.getIntergalNumId(q.getNote(), start, 
+				q.getComponentEnd(index));
+	}
+	
+	/**
+	 * Print the response to a query that can't be answered.
+	 * 
+	 * @param q is a Query: the query that can't be answered
+	 */
+	private void printUnanswerable(Query q) {
+		System.out.println("I don't know how to answer '" 
+				+ q.getNote() + "'");
 	}
 	
 	/**
@@ -129,48 +175,41 @@ public class QueryHandler {
 	 */
 	private boolean isWellFormed(Query q) {
 		
-		String[] components = q.getComponents();
+		if (q.getNumComponents() < 4) return false;
+		if (!q.componentEquals(0, "how")) return false;	
 		
-		if (components.length < 4) return false;
-		if (!q.getComponents()[0].equals("how")) return false;	
+		boolean much = q.componentEquals(1, "much");
 		
-		String qWord = components[1];		
-		
-		if (!qWord.equals("much") && !qWord.equals("many")) return false;
-		if (!isWellFormedQType(q, components, qWord)) return false;
+		if (!much && !q.componentEquals(1, "many")) return false;
+		if (!isWellFormedQType(q, much)) return false;
 		
 		return true;
 	}
 	
-	private boolean isWellFormedQType(Query q, String[] qComponents, 
-			String qType) {
-		
-		Map<String, Integer> intergalNumRank = 
-				translator.getIntergalNumRank();		
+	private boolean isWellFormedQType(Query q, boolean much) {
 		
-		if (qType.equals("much")) {
+		if (much) {
 			// it's a 'much' question, with form 'how much is [intergalNum]?'
-			if (!qComponents[2].equals("is")) return false;
-
+			if (!q.componentEquals(2, "is")) return false;
+			
 			for (int i = 3; i < 3+q.getIntergalNumLength(); i++) {
-				if (!intergalNumRank.containsKey(qComponents[i]))
+				if (intergalNumIdOf(q, i) < 0)
 					return false;
 			}
 		}
 		else {
 			// it's a 'many' question, 
 			// with form 'how many Credits is [intergalNum] [commodity]?'
-			if (!qComponents[2].equals("Credits")) return false;
-
-			if (!qComponents[3].equals("is")) return false;
+			if (!q.componentEquals(2, "Credits")) return false;
+			
+			if (!q.componentEquals(3, "is")) return false;
 			
 			for (int i = 4; i < 4+q.getIntergalNumLength(); i++) {
-				if (!intergalNumRank.containsKey(qComponents[i]))
+				if (intergalNumIdOf(q, i) < 0)
 					return false;
 			}
 			
-			if (!ledger.getPriceBook().
-					containsKey(qComponents[qComponents.length-2]))
+			if (!ledger.hasEntry(q.getCommodityId()))
 				return false;
 		}
 		
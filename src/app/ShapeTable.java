@@ -0,0 +1,183 @@
+package app;
+
+import java.util.Arrays;
+
+/**
+ * Remember the type of note each note shape parses as.
+ * 
+ * A shape is the sequence of token classes of a note's components
+ * (see NoteTokenizer.shapeOf), and the type of a note depends only on
+ * its shape. Real notes repeat a handful of shapes, so once a shape has
+ * been classified, every later note of that shape is one probe away
+ * from its type.
+ * 
+ * Shapes are stored in an open addressing table of longs, filled as
+ * they are first seen, up to a maximum number of shapes. Once full, new
+ * shapes are not stored, so a feed of mostly nonsense can't grow the
+ * table without bound.
+ * 
+ * A ShapeTable is not safe to use from more than one thread at a time;
+ * to classify notes in parallel, give each thread a copy and merge the
+ * copies back when done.
+ * 
+ * @author ryanwilliamconnor
+ * 
+ */
+public final class ShapeTable {
+	
+	// the type of a shape not in the table; other types are up to the caller
+	public static final byte NONE = 0;
+	
+	public static final int DEFAULT_MAX_SHAPES = 1024;
+	
+	private final long[] shapes; // 0 for an empty slot
+	private final byte[] types;
+	private final int mask;
+	private final int maxShapes;
+	private int numShapes;
+	private long hits;
+	private long misses;
+	
+	/**
+	 * Create an empty ShapeTable holding up to DEFAULT_MAX_SHAPES shapes.
+	 */
+	public ShapeTable() {
+		this(DEFAULT_MAX_SHAPES);
+	}
+	
+	/**
+	 * Create an empty ShapeTable.
+	 * 
+	 * @param maxShapes is an int: the most shapes to hold
+	 * @throws IllegalArgumentException if maxShapes is less than 1 or
+	 * more than 2^28
+	 */
+	public ShapeTable(int maxShapes) {
+		
+		if (maxShapes < 1 || maxShapes > 1 << 28)
+			throw new IllegalArgumentException("Max shapes must be from 1 to "
+					+ (1 << 28) + ", not " + maxShapes);
+		
+		// at most half full, so probes stay short
+		int capacity = Integer.highestOneBit(maxShapes) << 2;
+		this.shapes = new long[capacity];
+		this.types = new byte[capacity];
+		this.mask = capacity - 1;
+		this.maxShapes = maxShapes;
+	}
+	
+	/**
+	 * Create a ShapeTable with the same shapes as another, and no hits
+	 * or misses.
+	 * 
+	 * @param table is a ShapeTable: the table to copy
+	 */
+	public ShapeTable(ShapeTable table) {
+		this.shapes = table.shapes.clone();
+		this.types = table.types.clone();
+		this.mask = table.mask;
+		this.maxShapes = table.maxShapes;
+		this.numShapes = table.numShapes;
+	}
+	
+	/**
+	 * Get the type of a shape, counting a hit if the shape is in the
+	 * table and a miss otherwise.
+	 * 
+	 * @param shape is a long: the shape to look up (not 0)
+	 * @return a byte: the type of the shape, or NONE if the shape is not
+	 * in the table
+	 */
+	public byte get(long shape) {
+		
+		for (int i = slot(shape); shapes[i] != 0; i = (i + 1) & mask) {
+			if (shapes[i] == shape) {
+				hits++;
+				return types[i];
+			}
+		}
+		
+		misses++;
+		return NONE;
+	}
+	
+	/**
+	 * Store the type of a shape, unless the table is full.
+	 * 
+	 * @param shape is a long: the shape (not 0)
+	 * @param type is a byte: the type of the shape (not NONE)
+	 * @throws IllegalArgumentException if shape is 0 or type is NONE
+	 * @return true if the shape is in the table with the given type,
+	 * false if the table is full
+	 */
+	public boolean put(long shape, byte type) {
+		
+		if (shape == 0)
+			throw new IllegalArgumentException("Shape can't be 0");
+		if (type == NONE)
+			throw new IllegalArgumentException("Type can't be NONE");
+		
+		int i = slot(shape);
+		for (; shapes[i] != 0; i = (i + 1) & mask) {
+			if (shapes[i] == shape) {
+				types[i] = type;
+				return true;
+			}
+		}
+		
+		if (numShapes == maxShapes) return false;
+		
+		types[i] = type;
+		shapes[i] = shape;
+		numShapes++;
+		
+		return true;
+	}
+	
+	/**
+	 * Add the shapes of another table to this one, as far as there is
+	 * room, and add its hits and misses to this one's.
+	 * 
+	 * @param table is a ShapeTable: the table to add
+	 */
+	public void merge(ShapeTable table) {
+		
+		for (int i = 0; i < table.shapes.length; i++)
+			if (table.shapes[i] != 0) put(table.shapes[i], table.types[i]);
+		
+		hits += table.hits;
+		misses += table.misses;
+	}
+	
+	/**
+	 * Remove every shape and reset the hit and miss counts.
+	 */
+	public void clear() {
+		Arrays.fill(shapes, 0);
+		Arrays.fill(types, NONE);
+		numShapes = 0;
+		hits = 0;
+		misses = 0;
+	}
+	
+	private int slot(long shape) {
+		long hash = shape * 0x9E3779B97F4A7C15L;
+		return (int)(hash ^ (hash >>> 32)) & mask;
+	}
+	
+	public int getNumShapes() {
+		return numShapes;
+	}
+	
+	public int getMaxShapes() {
+		return maxShapes;
+	}
+	
+	public long getHits() {
+		return hits;
+	}
+	
+	public long getMisses() {
+		return misses;
+	}
+}
@@ -11,7 +11,10 @@ package notes;
  */
 public class BaseIntergalNumDecl extends Declaration {
 	
+	// built from the note on first use
 	private String baseRomanNum, baseIntergalNum;
+	// the id of the base intergal numeral in the global symbol table
+	private int baseIntergalNumId;
 
 	/**
 	 * Create a new BaseIntergalNumDecl from an UnknownNote.
@@ -26,27 +29,35 @@ public class BaseIntergalNumDecl extends Declaration {
 	 */
 	public BaseIntergalNumDecl(UnknownNote uNote) {
 		super(uNote);
-		this.baseRomanNum = uNote.getComponents()[2];
-		this.baseIntergalNum = uNote.getComponents()[0];
+		this.baseRomanNum = null;
+		this.baseIntergalNum = null;
+		this.baseIntergalNumId = SymbolTable.GLOBAL.intern(getComponent(0));
 	}
 	
 	@Override
 	public String toString() {
 		
 		String str = super.toString();
-		str += "Base roman numeral: " + baseRomanNum;
+		str += "Base roman numeral: " + getBaseRomanNum();
 		str += "\n";
-		str += "Base intergalactic numeral: " + baseIntergalNum;
+		str += "Base intergalactic numeral: " + getBaseIntergalNum();
 		str += "\n";
 		
 		return str;
 	}
 	
 	public String getBaseIntergalNum() {
+		if (baseIntergalNum == null) 
+			baseIntergalNum = SymbolTable.GLOBAL.symbolOf(baseIntergalNumId);
 		return baseIntergalNum;
 	}
 	
+	public int getBaseIntergalNumId() {
+		return baseIntergalNumId;
+	}
+	
 	public String getBaseRomanNum() {
+		if (baseRomanNum == null) baseRomanNum = getComponent(2).toString();
 		return baseRomanNum;
 	}
 }
@@ -12,9 +12,13 @@ package notes;
  */
 public class CommodityDecl extends Declaration {
 
+	// the strings are built from the note on first use
 	private String intergalNum;
+	private int intergalNumStart, intergalNumEnd;
 	private int arabicNum;
 	private String commodity;
+	// the id of the commodity in the global symbol table
+	private int commodityId;
 	
 	/**
 	 * Convert an Unknown note into a new CommodityDecl.
@@ -32,18 +36,40 @@ public class CommodityDecl extends Declaration {
 	public CommodityDecl(UnknownNote note) {
 		super(note);
 		
-		String[] components = super.getComponents();
-		int iStart = note.getStart1IntergalClust();
-		int iEnd = note.getEnd1IntergalClust();
-		String str = "";
-		int i;
-		for (i = iStart; i < iEnd; i++) 
-			str += components[i] + " ";
-		str += components[i];
-		this.intergalNum = str;
+		this.intergalNum = null;
+		this.intergalNumStart = note.getStart1IntergalClust();
+		this.intergalNumEnd = note.getEnd1IntergalClust();
+		this.arabicNum = parseArabic(getComponent(note.getArabicPos()));
+		this.commodity = null;
+		this.commodityId = 
+				SymbolTable.GLOBAL.intern(getComponent(note.getComm1Pos()));
+	}
+	
+	/**
+	 * Parse an arabic numeral the way Integer.parseInt would, without
+	 * copying it out of the note.
+	 * 
+	 * @param str is a CharSequence: the arabic numeral, all digits
+	 * @throws NumberFormatException if str is empty, is not all digits,
+	 * or does not fit in an int
+	 * @return an int: the value of the arabic numeral
+	 */
+	private static int parseArabic(CharSequence str) {
+		
+		if (str.length() < 1) 
+			throw new NumberFormatException("For input string: \"\"");
+		
+		long value = 0;
+		int digit;
+		for (int i = 0; i < str.length(); i++) {
+			digit = Character.digit(str.charAt(i), 10);
+			value = 10*value + digit;
+			if (digit < 0 || value > Integer.MAX_VALUE)
+				throw new NumberFormatException("For input string: \"" + 
+						str + "\"");
+		}
 		
-		this.arabicNum = Integer.parseInt(components[note.getArabicPos()]);
-		this.commodity = components[note.getComm1Pos()];
+		return (int)value;
 	}
 	
 	@Override
@@ -51,17 +77,31 @@ public class CommodityDecl extends Declaration {
 		
 		String str = super.toString();
 		str += "Arabic numeral: " + arabicNum; 
-		str += "Intergal numeral: " + intergalNum;
+		str += "Intergal numeral: " + getIntergalNum();
 		str += "\n";
-		str += "Commodity: " + commodity;
+		str += "Commodity: " + getCommodity();
 		str += '\n';
 			
 		return str;
 	}
 
 	public String getIntergalNum() {
+		if (intergalNum == null) 
+			intergalNum = getIntergalNumSpan().toString();
 		return intergalNum;
 	}
+	
+	/**
+	 * Get the intergal numeral of the declaration without copying it
+	 * out of the note.
+	 * 
+	 * @return a CharSequence: the intergal numeral, with base intergal
+	 * numerals separated by spaces
+	 */
+	public CharSequence getIntergalNumSpan() {
+		if (intergalNum != null) return intergalNum;
+		return getSpan(intergalNumStart, intergalNumEnd);
+	}
 
 	public void setIntergalNum(String intergalNum) {
 		this.intergalNum = intergalNum;
@@ -76,10 +116,17 @@ public class CommodityDecl extends Declaration {
 	}
 
 	public String getCommodity() {
+		if (commodity == null) 
+			commodity = SymbolTable.GLOBAL.symbolOf(commodityId);
 		return commodity;
 	}
 
 	public void setCommodity(String commodity) {
-		this.commodity = commodity;
+		this.commodityId = SymbolTable.GLOBAL.intern(commodity);
+		this.commodity = SymbolTable.GLOBAL.symbolOf(commodityId);
+	}
+	
+	public int getCommodityId() {
+		return commodityId;
 	}
 }
@@ -21,7 +21,10 @@ package notes;
  */
 public class CompIntergalNumDecl extends Declaration {
 
+	// built from the note on first use
 	private String romanNum, intergalNum;
+	// the id of each base intergal numeral in the global symbol table
+	private int[] intergalNumIds;
 	
 	/**
 	 * Create a new CompIntergalNumDecl from an UnknownNote.
@@ -36,29 +39,28 @@ public class CompIntergalNumDecl extends Declaration {
 	 */
 	public CompIntergalNumDecl(UnknownNote note) {
 		super(note);
-		String[] components = note.getComponents();
-		this.romanNum = components[components.length-1];
-		String str = "";
-		for (int i = 0; i < components.length-3; i++) {
-			str += components[i] + " ";
-		}
-		str += components[components.length-3];
-		this.intergalNum = str;
+		this.romanNum = null;
+		this.intergalNum = null;
+		this.intergalNumIds = new int[getNumComponents()-2];
+		for (int i = 0; i < intergalNumIds.length; i++)
+			intergalNumIds[i] = SymbolTable.GLOBAL.intern(getComponent(i));
 	}
 	
 	@Override
 	public String toString() {
 		
 		String str = super.toString();
-		str += "Base roman numeral: " + romanNum;
+		str += "Base roman numeral: " + getRomanNum();
 		str += "\n";
-		str += "Base intergalactic numeral: " + intergalNum;
+		str += "Base intergalactic numeral: " + getIntergalNum();
 		str += "\n";
 		
 		return str;
 	}
 
 	public String getRomanNum() {
+		if (romanNum == null) 
+			romanNum = getComponent(getNumComponents()-1).toString();
 		return romanNum;
 	}
 
@@ -67,10 +69,38 @@ public class CompIntergalNumDecl extends Declaration {
 	}
 
 	public String getIntergalNum() {
+		if (intergalNum == null) 
+			intergalNum = getIntergalNumSpan().toString();
 		return intergalNum;
 	}
+	
+	/**
+	 * Get the intergal numeral of the declaration without copying it
+	 * out of the note.
+	 * 
+	 * @return a CharSequence: the intergal numeral, with base intergal
+	 * numerals separated by spaces
+	 */
+	public CharSequence getIntergalNumSpan() {
+		if (intergalNum != null) return intergalNum;
+		return getSpan(0, getNumComponents()-3);
+	}
 
 	public void setIntergalNum(String intergalNum) {
 		this.intergalNum = intergalNum;
+		String[] bases = intergalNum.split(" ");
+		this.intergalNumIds = new int[bases.length];
+		for (int i = 0; i < bases.length; i++)
+			intergalNumIds[i] = SymbolTable.GLOBAL.intern(bases[i]);
+	}
+	
+	/**
+	 * Get the ids of the base intergal numerals of the declaration in the
+	 * global symbol table.
+	 * 
+	 * @return an int array: the id of each base intergal numeral, in order
+	 */
+	public int[] getIntergalNumIds() {
+		return intergalNumIds;
 	}
 }
@@ -26,7 +26,7 @@ public abstract class Declaration extends ParsedNote {
 	 * @param note is the UnknownNote to convert to a Declaration
 	 */
 	public Declaration(UnknownNote uNote) {
-		super(uNote.getNote(), uNote.getComponents());	
+		super(uNote);
 		this.countIs = uNote.getCountIs();
 		this.isPos = uNote.getIsPos();
 	}
@@ -0,0 +1,82 @@
+package notes;
+
+/**
+ * A read-only view of part of a note, such as one component or a run of
+ * components, that does not copy the chars of the note.
+ * 
+ * Use toString to get the part as its own string.
+ * 
+ * @author ryanwilliamconnor
+ */
+public final class NoteSpan implements CharSequence {
+	
+	private final String note;
+	private final int start, end;
+	
+	/**
+	 * Create a view of part of a note.
+	 * 
+	 * @param note is a string: the note to view
+	 * @param start is an int: the index of the first char of the part
+	 * @param end is an int: the index after the last char of the part
+	 * @throws IndexOutOfBoundsException if the part is not in the note
+	 */
+	public NoteSpan(String note, int start, int end) {
+		if (start < 0 || end > note.length() || start > end)
+			throw new IndexOutOfBoundsException("Span " + start + "-" + end 
+					+ " is not in a note of length " + note.length());
+		this.note = note;
+		this.start = start;
+		this.end = end;
+	}
+	
+	@Override
+	public int length() {
+		return end - start;
+	}
+	
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= end - start)
+			throw new IndexOutOfBoundsException("Index " + index + 
+					" is not in a span of length " + (end - start));
+		return note.charAt(start + index);
+	}
+	
+	@Override
+	public CharSequence subSequence(int from, int to) {
+		if (from < 0 || to > end - start || from > to)
+			throw new IndexOutOfBoundsException("Span " + from + "-" + to 
+					+ " is not in a span of length " + (end - start));
+		return new NoteSpan(note, start + from, start + to);
+	}
+	
+	/**
+	 * Determine whether this part of the note holds exactly the given
+	 * string, without copying it out.
+	 * 
+	 * @param str is a string: the string to compare with
+	 * @return true if the chars are the same, false otherwise
+	 */
+	public boolean contentEquals(String str) {
+		return str.length() == end - start && 
+				note.regionMatches(start, str, 0, end - start);
+	}
+	
+	@Override
+	public String toString() {
+		return note.substring(start, end);
+	}
+	
+	public String getNote() {
+		return note;
+	}
+	
+	public int getStart() {
+		return start;
+	}
+	
+	public int getEnd() {
+		return end;
+	}
+}
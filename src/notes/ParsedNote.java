@@ -4,11 +4,21 @@ package notes;
  * Blueprint to storing and accessing metadata from a single line of notes
  * about the intergalactic commodity markets.
  * 
+ * Keeps the raw note and where each component starts and ends in it, so
+ * components (and runs of components, like an intergalactic numeral) can
+ * be read as views of the note without copying. The components are only
+ * built as strings if getComponents is called.
+ * 
  * @author ryanwilliamconnor
  */
 public abstract class ParsedNote {
 	
 	private String note;
+	// component k runs from offsets[2k] up to offsets[2k+1] in note,
+	// or offsets is null if the components were given as strings
+	private int[] offsets;
+	private int numComponents;
+	// built on first use if the note has offsets
 	private String[] components;
 	
 	/**
@@ -20,9 +30,39 @@ public abstract class ParsedNote {
 	public ParsedNote(String note, String[] components) {
 		// throw exceptions
 		this.note = note;
+		this.offsets = null;
+		this.numComponents = components == null ? 0 : components.length;
 		this.components = components;
 	}
 	
+	/**
+	 * Create a new parsed note whose components are parts of the raw note.
+	 * 
+	 * @param note is a string: the raw note
+	 * @param offsets is an int array: the start and end of each component
+	 * in the raw note, one after the other; may be longer than needed
+	 * @param numComponents is an int: the number of components
+	 */
+	public ParsedNote(String note, int[] offsets, int numComponents) {
+		this.note = note;
+		this.offsets = offsets;
+		this.numComponents = numComponents;
+		this.components = null;
+	}
+	
+	/**
+	 * Create a new parsed note with the same note and components as
+	 * another, sharing rather than copying them.
+	 * 
+	 * @param pNote is a ParsedNote: the note to share
+	 */
+	protected ParsedNote(ParsedNote pNote) {
+		this.note = pNote.note;
+		this.offsets = pNote.offsets;
+		this.numComponents = pNote.numComponents;
+		this.components = pNote.components;
+	}
+	
 	public String getNote() {
 		return note;
 	}
@@ -31,24 +71,151 @@ public abstract class ParsedNote {
 		this.note = note;
 	}
 	
+	/**
+	 * Get the components of the note as strings, building them on
+	 * first use.
+	 * 
+	 * @return a string array: the components of the note
+	 */
 	public String[] getComponents() {
+		
+		if (components == null && offsets != null) {
+			String[] built = new String[numComponents];
+			for (int i = 0; i < numComponents; i++)
+				built[i] = note.substring(offsets[2*i], offsets[2*i+1]);
+			components = built;
+		}
+		
 		return components;
 	}
 	
 	public void setComponents(String[] components) {
 		this.components = components;
+		this.offsets = null;
+		this.numComponents = components == null ? 0 : components.length;
+	}
+	
+	/**
+	 * Set the components of the note to parts of the raw note.
+	 * 
+	 * @param offsets is an int array: the start and end of each component
+	 * in the raw note, one after the other; may be longer than needed
+	 * @param numComponents is an int: the number of components
+	 */
+	public void setComponentOffsets(int[] offsets, int numComponents) {
+		this.offsets = offsets;
+		this.numComponents = numComponents;
+		this.components = null;
+	}
+	
+	public int getNumComponents() {
+		return numComponents;
+	}
+	
+	/**
+	 * Get a component of the note without copying it out of the note.
+	 * 
+	 * @param index is an int: the index of the component
+	 * @throws IndexOutOfBoundsException if there is no such component
+	 * @return a CharSequence: the component
+	 */
+	public CharSequence getComponent(int index) {
+		
+		checkIndex(index);
+		if (offsets == null) return components[index];
+		return new NoteSpan(note, offsets[2*index], offsets[2*index+1]);
+	}
+	
+	/**
+	 * Get a run of components of the note, with the separators between
+	 * them, without copying it out of the note.
+	 * 
+	 * @param first is an int: the index of the first component of the run
+	 * @param last is an int: the index of the last component of the run
+	 * @throws IndexOutOfBoundsException if there is no such run
+	 * @return a CharSequence: the run of components
+	 */
+	public CharSequence getSpan(int first, int last) {
+		
+		checkIndex(first);
+		checkIndex(last);
+		if (last < first)
+			throw new IndexOutOfBoundsException("Run of components " + first
+					+ "-" + last + " is empty");
+		
+		if (offsets != null)
+			return new NoteSpan(note, offsets[2*first], offsets[2*last+1]);
+		
+		StringBuilder span = new StringBuilder(components[first]);
+		for (int i = first+1; i <= last; i++)
+			span.append(' ').append(components[i]);
+		return span.toString();
+	}
+	
+	/**
+	 * Determine whether a component of the note is the given string,
+	 * without copying the component out of the note.
+	 * 
+	 * @param index is an int: the index of the component
+	 * @param str is a string: the string to compare with
+	 * @throws IndexOutOfBoundsException if there is no such component
+	 * @return true if the component is the given string, false otherwise
+	 */
+	public boolean componentEquals(int index, String str) {
+		
+		checkIndex(index);
+		if (offsets == null) return components[index].equals(str);
+		
+		int start = offsets[2*index];
+		int len = offsets[2*index+1] - start;
+		return str.length() == len && note.regionMatches(start, str, 0, len);
+	}
+	
+	/**
+	 * Get where a component starts in the note.
+	 * 
+	 * @param index is an int: the index of the component
+	 * @throws IndexOutOfBoundsException if there is no such component
+	 * @return an int: the index in the note of the first char of the
+	 * component, or -1 if the components were not given as parts of
+	 * the note
+	 */
+	public int getComponentStart(int index) {
+		checkIndex(index);
+		return offsets == null ? -1 : offsets[2*index];
+	}
+	
+	/**
+	 * Get where a component ends in the note.
+	 * 
+	 * @param index is an int: the index of the component
+	 * @throws IndexOutOfBoundsException if there is no such component
+	 * @return an int: the index in the note after the last char of the
+	 * component, or -1 if the components were not given as parts of
+	 * the note
+	 */
+	public int getComponentEnd(int index) {
+		checkIndex(index);
+		return offsets == null ? -1 : offsets[2*index+1];
+	}
+	
+	private void checkIndex(int index) {
+		if (index < 0 || index >= numComponents)
+			throw new IndexOutOfBoundsException("Component " + index +
+					" is not in a note with " + numComponents +
+					" components");
 	}
 	
 	public String toString() {
 		
-		String str = "";
-		str += note;
-		str += '\n';
-		str += "Components: ";
-		for (int i = 0; i < components.length; i++) 
-			str += "'" + components[i] + "', ";
-		str += '\n';
+		StringBuilder str = new StringBuilder();
+		str.append(note);
+		str.append('\n');
+		str.append("Components: ");
+		for (int i = 0; i < numComponents; i++)
+			str.append("'").append(getComponent(i)).append("', ");
+		str.append('\n');
 		
-		return str;
+		return str.toString();
 	}
 }
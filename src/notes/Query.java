@@ -17,8 +17,9 @@ public class Query extends ParsedNote {
 
 	// if have commodity, it's a 'many' question
 	// if not, it's a 'much' question
+	// the strings are built from the note on first use
 	private String commodity, intergalNum;
-	private int intergalNumLength;
+	private int commodityPos, intergalNumStart, intergalNumLength;
 	
 	/**
 	 * Create a new Query from an UnknownNote.
@@ -30,59 +31,102 @@ public class Query extends ParsedNote {
 	 * @param note is the UnknownNote to convert to a Query
 	 */
 	public Query(UnknownNote note) {
-		super(note.getNote(), note.getComponents());
+		super(note);
 		
-		String[] components = note.getComponents();
-		
-		if (note.getCountComm() > 0) {
-			this.commodity = components[note.getComm1Pos()];
-		}
-		else {
-			this.commodity = null;
-		}
+		this.commodity = null;
+		this.commodityPos = note.getCountComm() > 0 ? note.getComm1Pos() : -1;
 		
+		// a query with no intergal numeral has an empty one
 		int iStart = note.getStart1IntergalClust();
 		int iEnd = note.getEnd1IntergalClust();
-		int i;
-		String str = "";
-		int len = 1;
-		for (i = iStart; i < iEnd; i++) {
-			str += components[i] + " ";
-			len++;
-		}
-		str += components[i];
-		this.intergalNum = str;
-		this.intergalNumLength = len; 
+		this.intergalNum = null;
+		this.intergalNumStart = iStart;
+		this.intergalNumLength = iStart < 0 ? 0 : iEnd - iStart + 1; 
 	}
 	
 	@Override
 	public String toString() {
 		// note commodity will print null if it's a 'much' question
 		String str = super.toString();
-		str += "Commodity: " + commodity;
+		str += "Commodity: " + getCommodity();
 		str += "\n";
-		str += "Intergalactic numeral: " + intergalNum;
+		str += "Intergalactic numeral: " + getIntergalNum();
 		str += "\n";
 		
 		return str;
 	}
 
+	/**
+	 * Get the commodity of the query: the global symbol table's string 
+	 * for it if the commodity has been interned (i.e., declared), or a
+	 * copy out of the note if not.
+	 * 
+	 * @return a string: the commodity, or null if the query has none
+	 */
 	public String getCommodity() {
+		
+		if (commodity == null && commodityPos >= 0) {
+			int id = getCommodityId();
+			commodity = id >= 0 ? SymbolTable.GLOBAL.symbolOf(id) : 
+				getComponent(commodityPos).toString();
+		}
+		
 		return commodity;
 	}
+	
+	/**
+	 * Get the id of the commodity of the query in the global symbol table,
+	 * without interning it.
+	 * 
+	 * @return an int: the id of the commodity, or -1 if the query has no
+	 * commodity or the commodity has not been interned
+	 */
+	public int getCommodityId() {
+		
+		if (commodityPos >= 0) 
+			return SymbolTable.GLOBAL.idOf(getComponent(commodityPos));
+		if (commodity != null) return SymbolTable.GLOBAL.idOf(commodity);
+		
+		return -1;
+	}
 
 	public void setCommodity(String commodity) {
 		this.commodity = commodity;
+		this.commodityPos = -1;
 	}
 
 	public String getIntergalNum() {
+		if (intergalNum == null && intergalNumLength > 0) 
+			intergalNum = getIntergalNumSpan().toString();
 		return intergalNum;
 	}
+	
+	/**
+	 * Get the intergal numeral of the query without copying it out of
+	 * the note.
+	 * 
+	 * @return a CharSequence: the intergal numeral, with base intergal
+	 * numerals separated by spaces, or null if the query has none
+	 */
+	public CharSequence getIntergalNumSpan() {
+		if (intergalNum != null) return intergalNum;
+		if (intergalNumLength < 1) return null;
+		return getSpan(intergalNumStart, 
+				intergalNumStart + intergalNumLength - 1);
+	}
 
 	public void setIntergalNum(String intergalNum) {
 		this.intergalNum = intergalNum;
 	}
 
+	public int getIntergalNumStart() {
+		return intergalNumStart;
+	}
+
+	public void setIntergalNumStart(int intergalNumStart) {
+		this.intergalNumStart = intergalNumStart;
+	}
+
 	public int getIntergalNumLength() {
 		return intergalNumLength;
 	}
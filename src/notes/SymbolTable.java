@@ -0,0 +1,281 @@
+package notes;
+
+import java.util.Arrays;
+
+/**
+ * Intern the words of notes about the intergalactic commodity markets,
+ * giving each distinct word one canonical string and a small int id.
+ * 
+ * Notes, the Ledger and the Translator look commodities and intergal
+ * numerals up here, so however many lines mention a commodity, the
+ * commodity is held once, as one string, and prices and pairings are
+ * kept in arrays indexed by id rather than in maps hashing strings.
+ * 
+ * Words can be looked up as any CharSequence (like a NoteSpan), so a
+ * word already interned is found without being copied out of its note.
+ * Ids are dense, start at 0, and are never reused; a word is never
+ * removed. Looking words up is safe from any number of threads at once,
+ * and interning a new word locks the table only while adding it.
+ * 
+ * @author ryanwilliamconnor
+ */
+public final class SymbolTable {
+	
+	// the table shared by the parser, ledger and translators by default
+	public static final SymbolTable GLOBAL = new SymbolTable();
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	// open addressing table, at most half full; replaced when it grows
+	private volatile Symbol[] table;
+	// the word of each id; replaced when it grows
+	private volatile String[] idToSymbol;
+	private int numSymbols;
+	
+	/**
+	 * Create an empty SymbolTable.
+	 */
+	public SymbolTable() {
+		this.table = new Symbol[INITIAL_CAPACITY];
+		this.idToSymbol = new String[INITIAL_CAPACITY/2];
+		this.numSymbols = 0;
+	}
+	
+	/**
+	 * Get the id of a word, interning the word if it is new.
+	 * 
+	 * @param word is a CharSequence: the word
+	 * @throws NullPointerException if word is null
+	 * @return an int: the id of the word
+	 */
+	public int intern(CharSequence word) {
+		return intern(word, 0, word.length());
+	}
+	
+	/**
+	 * Get the id of a word held in part of a character sequence,
+	 * interning the word if it is new.
+	 * 
+	 * @param str is a CharSequence holding the word
+	 * @param start is an int: the index of the first char of the word
+	 * @param end is an int: the index after the last char of the word
+	 * @throws NullPointerException if str is null
+	 * @return an int: the id of the word
+	 */
+	public int intern(CharSequence str, int start, int end) {
+		
+		int hash = hash(str, start, end);
+		Symbol symbol = find(table, str, start, end, hash);
+		if (symbol != null) return symbol.id;
+		
+		return add(str, start, end, hash);
+	}
+	
+	/**
+	 * Get the id of a word without interning it.
+	 * 
+	 * @param word is a CharSequence: the word
+	 * @throws NullPointerException if word is null
+	 * @return an int: the id of the word, or -1 if it is not interned
+	 */
+	public int idOf(CharSequence word) {
+		return idOf(word, 0, word.length());
+	}
+	
+	/**
+	 * Get the id of a word held in part of a character sequence, without
+	 * interning it.
+	 * 
+	 * @param str is a CharSequence holding the word
+	 * @param start is an int: the index of the first char of the word
+	 * @param end is an int: the index after the last char of the word
+	 * @throws NullPointerException if str is null
+	 * @return an int: the id of the word, or -1 if it is not interned
+	 */
+	public int idOf(CharSequence str, int start, int end) {
+		
+		int hash = hash(str, start, end);
+		Symbol symbol = find(table, str, start, end, hash);
+		if (symbol != null) return symbol.id;
+		
+		// it may have just been added by another thread
+		synchronized (this) {
+			symbol = find(table, str, start, end, hash);
+		}
+		return symbol == null ? -1 : symbol.id;
+	}
+	
+	/**
+	 * Determine whether a word held in part of a character sequence is
+	 * interned, without copying it and without locking the table, so a
+	 * word another thread is interning at the same time may not be found.
+	 * 
+	 * @param str is a CharSequence holding the word
+	 * @param start is an int: the index of the first char of the word
+	 * @param end is an int: the index after the last char of the word
+	 * @throws NullPointerException if str is null
+	 * @return true if the word is interned, false otherwise
+	 */
+	public boolean contains(CharSequence str, int start, int end) {
+		return find(table, str, start, end, hash(str, start, end)) != null;
+	}
+	
+	/**
+	 * Get the canonical string of a word, interning the word if it is new.
+	 * 
+	 * @param word is a CharSequence: the word
+	 * @throws NullPointerException if word is null
+	 * @return a string: the one string this table holds for the word
+	 */
+	public String canonical(CharSequence word) {
+		return symbolOf(intern(word));
+	}
+	
+	/**
+	 * Get the word with an id.
+	 * 
+	 * @param id is an int: the id of the word
+	 * @throws IndexOutOfBoundsException if no word has the id
+	 * @return a string: the canonical string of the word
+	 */
+	public String symbolOf(int id) {
+		
+		String[] symbols = idToSymbol;
+		if (id >= 0 && id < symbols.length && symbols[id] != null)
+			return symbols[id];
+		
+		synchronized (this) {
+			if (id < 0 || id >= numSymbols)
+				throw new IndexOutOfBoundsException("No symbol has id " + id);
+			return idToSymbol[id];
+		}
+	}
+	
+	/**
+	 * Get the number of words interned, which is also the next id.
+	 * 
+	 * @return an int: the number of words interned
+	 */
+	public synchronized int size() {
+		return numSymbols;
+	}
+	
+	/**
+	 * Add a word not found in the table, unless another thread added it
+	 * first.
+	 * 
+	 * @param str is a CharSequence holding the word
+	 * @param start is an int: the index of the first char of the word
+	 * @param end is an int: the index after the last char of the word
+	 * @param hash is an int: the hash of the word
+	 * @return an int: the id of the word
+	 */
+	private synchronized int add(CharSequence str, int start, int end, 
+			int hash) {
+		
+		Symbol[] symbols = table;
+		Symbol symbol = find(symbols, str, start, end, hash);
+		if (symbol != null) return symbol.id;
+		
+		int id = numSymbols;
+		String word = str.subSequence(start, end).toString();
+		
+		// fill in the id before the table, so a thread that finds the
+		// word can read its string by id
+		if (id == idToSymbol.length)
+			idToSymbol = Arrays.copyOf(idToSymbol, 2*id);
+		idToSymbol[id] = word;
+		numSymbols++;
+		
+		if (2*numSymbols > symbols.length) {
+			symbols = rehash(symbols, 2*symbols.length);
+			insert(symbols, new Symbol(word, hash, id));
+			table = symbols;
+		}
+		else {
+			insert(symbols, new Symbol(word, hash, id));
+		}
+		
+		return id;
+	}
+	
+	private static Symbol find(Symbol[] symbols, CharSequence str, 
+			int start, int end, int hash) {
+		
+		int mask = symbols.length - 1;
+		Symbol symbol;
+		for (int i = hash & mask; (symbol = symbols[i]) != null;
+				i = (i + 1) & mask) {
+			if (symbol.hash == hash && matches(symbol.str, str, start, end))
+				return symbol;
+		}
+		
+		return null;
+	}
+	
+	private static boolean matches(String word, CharSequence str, 
+			int start, int end) {
+		
+		if (word.length() != end - start) return false;
+		if (str instanceof String)
+			return word.regionMatches(0, (String)str, start, end - start);
+		
+		for (int i = start; i < end; i++)
+			if (word.charAt(i - start) != str.charAt(i)) return false;
+		return true;
+	}
+	
+	private static void insert(Symbol[] symbols, Symbol symbol) {
+		int mask = symbols.length - 1;
+		int i = symbol.hash & mask;
+		while (symbols[i] != null) i = (i + 1) & mask;
+		symbols[i] = symbol;
+	}
+	
+	private static Symbol[] rehash(Symbol[] symbols, int capacity) {
+		Symbol[] grown = new Symbol[capacity];
+		for (Symbol symbol : symbols)
+			if (symbol != null) insert(grown, symbol);
+		return grown;
+	}
+	
+	/**
+	 * Hash a word the way String.hashCode does, then spread the bits so
+	 * the low bits used for slots depend on the whole word.
+	 * 
+	 * @param str is a CharSequence holding the word
+	 * @param start is an int: the index of the first char of the word
+	 * @param end is an int: the index after the last char of the word
+	 * @return an int: the hash of the word
+	 */
+	private static int hash(CharSequence str, int start, int end) {
+		
+		int h;
+		if (start == 0 && end == str.length() && str instanceof String) {
+			h = str.hashCode();
+		}
+		else {
+			h = 0;
+			for (int i = start; i < end; i++) h = 31*h + str.charAt(i);
+		}
+		
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * An interned word, with its hash and id. Immutable, so a thread
+	 * that finds one in the table sees all of it.
+	 */
+	private static final class Symbol {
+		
+		private final String str;
+		private final int hash;
+		private final int id;
+		
+		Symbol(String str, int hash, int id) {
+			this.str = str;
+			this.hash = hash;
+			this.id = id;
+		}
+	}
+}
@@ -18,12 +18,51 @@ package notes;
  */
 public class UnknownNote extends ParsedNote {
 	
-	private int countIs, countIntergalClust, countRomanBase, 
-		countRomanComp, countComm, countQ,
-		countArabic, countCredits, countHow, countMuch, countMany, isPos, 
-		start1IntergalClust, end1IntergalClust, start2IntergalClust, 
-		end2IntergalClust, romanPos, comm1Pos, comm2Pos, qPos, arabicPos, 
-		creditPos, howPos, muchPos, manyPos;
+	// each stat is packed into a byte as its value + 1, so -1 (no position)
+	// to 253 fit, eight stats to a long; a stat outside that range is
+	// packed as WIDE and kept in wideStats instead, made on first need
+	private long stats0, stats1, stats2, stats3;
+	private int[] wideStats;
+	// the token classes of the components, or 0 if not known
+	private long shape;
+	private static final int WIDE = 0xFF;
+	
+	// the index of each stat
+	private static final int COUNT_IS = 0;
+	private static final int COUNT_INTERGAL_CLUST = 1;
+	private static final int COUNT_ROMAN_BASE = 2;
+	private static final int COUNT_ROMAN_COMP = 3;
+	private static final int COUNT_COMM = 4;
+	private static final int COUNT_Q = 5;
+	private static final int COUNT_ARABIC = 6;
+	private static final int COUNT_CREDITS = 7;
+	private static final int COUNT_HOW = 8;
+	private static final int COUNT_MUCH = 9;
+	private static final int COUNT_MANY = 10;
+	private static final int IS_POS = 11;
+	private static final int START1_INTERGAL_CLUST = 12;
+	private static final int END1_INTERGAL_CLUST = 13;
+	private static final int START2_INTERGAL_CLUST = 14;
+	private static final int END2_INTERGAL_CLUST = 15;
+	private static final int ROMAN_POS = 16;
+	private static final int COMM1_POS = 17;
+	private static final int COMM2_POS = 18;
+	private static final int Q_POS = 19;
+	private static final int ARABIC_POS = 20;
+	private static final int CREDIT_POS = 21;
+	private static final int HOW_POS = 22;
+	private static final int MUCH_POS = 23;
+	private static final int MANY_POS = 24;
+	private static final int NUM_STATS = 25;
+	private static final int NUM_COUNTS = 11;
+	
+	// the packed stats of a new note: 0 for counts and -1 for positions
+	private static final long[] CLEAR_STATS = new long[4];
+	
+	static {
+		for (int i = 0; i < NUM_COUNTS; i++)
+			CLEAR_STATS[i >>> 3] |= 1L << (i << 3);
+	}
 	
 	/**
 	 * Create an unparsed UnknownNote, with stats initialized to 0 for counts
@@ -77,31 +116,62 @@ public class UnknownNote extends ParsedNote {
 	 * in 'components'
 	 */
 	public UnknownNote(String note) {
-		super(note, note.split(" "));
-		this.countIntergalClust = 0;
-		this.countRomanBase = 0;
-		this.countRomanComp = 0;
-		this.countComm = 0;
-		this.countQ = 0;
-		this.countArabic = 0;
-		this.countCredits = 0;
-		this.countHow = 0;
-		this.countMuch = 0;
-		this.countMany = 0;
-		this.isPos = -1;
-		this.start1IntergalClust = -1;
-		this.end1IntergalClust = -1;
-		this.start2IntergalClust = -1;
-		this.end2IntergalClust = -1;
-		this.romanPos = -1;
-		this.comm1Pos = -1;
-		this.comm2Pos = -1;
-		this.qPos = -1;
-		this.arabicPos = -1;
-		this.creditPos = -1;
-		this.howPos = -1;
-		this.muchPos = -1;
-		this.manyPos = -1;		
+		this(note, note.split(" "));
+	}
+	
+	/**
+	 * Create an unparsed UnknownNote from a note already split into 
+	 * components, with stats initialized to 0 for counts and -1 for 
+	 * positions.
+	 * 
+	 * @param note is a string: the raw note
+	 * @param components is a string array: the words, numerals, and
+	 * question mark (if any) of the raw note
+	 */
+	public UnknownNote(String note, String[] components) {
+		super(note, components);
+		clearStats();
+	}
+	
+	/**
+	 * Create an unparsed UnknownNote whose components are parts of the raw
+	 * note, with stats initialized to 0 for counts and -1 for positions.
+	 * 
+	 * @param note is a string: the raw note
+	 * @param offsets is an int array: the start and end of each component
+	 * in the raw note, one after the other
+	 * @param numComponents is an int: the number of components
+	 */
+	public UnknownNote(String note, int[] offsets, int numComponents) {
+		super(note, offsets, numComponents);
+		clearStats();
+	}
+	
+	/**
+	 * Create an UnknownNote with the same note, components, stats and 
+	 * shape as another, sharing the note and components rather than 
+	 * copying them.
+	 * 
+	 * @param uNote is an UnknownNote: the note to copy
+	 */
+	public UnknownNote(UnknownNote uNote) {
+		super(uNote);
+		this.stats0 = uNote.stats0;
+		this.stats1 = uNote.stats1;
+		this.stats2 = uNote.stats2;
+		this.stats3 = uNote.stats3;
+		if (uNote.wideStats != null) this.wideStats = uNote.wideStats.clone();
+		this.shape = uNote.shape;
+	}
+	
+	/**
+	 * Set stats to 0 for counts and -1 for positions.
+	 */
+	private void clearStats() {
+		this.stats0 = CLEAR_STATS[0];
+		this.stats1 = CLEAR_STATS[1];
+		this.stats2 = CLEAR_STATS[2];
+		this.stats3 = CLEAR_STATS[3];
 	}
 	
 	/**
@@ -166,253 +236,371 @@ public class UnknownNote extends ParsedNote {
 			int creditPos, int howPos, int muchPos, int manyPos) {
 		
 		super(note, components);
-		this.countIs = countIs;
-		this.countIntergalClust = countIntergalClust;
-		this.countRomanBase = countRomanBase;
-		this.countRomanComp = countRomanComp;
-		this.countComm = countComm;
-		this.countQ = countQ;
-		this.countArabic = countArabic;
-		this.countCredits = countCredits;
-		this.countHow = countHow;
-		this.countMuch = countMuch;
-		this.countMany = countMany;
-		this.isPos = isPos;
-		this.start1IntergalClust = start1IntergalClust;
-		this.end1IntergalClust = end1IntergalClust;
-		this.start2IntergalClust = start2IntergalClust;
-		this.end2IntergalClust = end2IntergalClust;
-		this.romanPos = romanPos;
-		this.comm1Pos = comm1Pos;
-		this.comm2Pos = comm2Pos;
-		this.qPos = qPos;
-		this.arabicPos = arabicPos;
-		this.creditPos = creditPos;
-		this.howPos = howPos;
-		this.muchPos = muchPos;
-		this.manyPos = manyPos;
+		clearStats();
+		setStat(COUNT_IS, countIs);
+		setStat(COUNT_INTERGAL_CLUST, countIntergalClust);
+		setStat(COUNT_ROMAN_BASE, countRomanBase);
+		setStat(COUNT_ROMAN_COMP, countRomanComp);
+		setStat(COUNT_COMM, countComm);
+		setStat(COUNT_Q, countQ);
+		setStat(COUNT_ARABIC, countArabic);
+		setStat(COUNT_CREDITS, countCredits);
+		setStat(COUNT_HOW, countHow);
+		setStat(COUNT_MUCH, countMuch);
+		setStat(COUNT_MANY, countMany);
+		setStat(IS_POS, isPos);
+		setStat(START1_INTERGAL_CLUST, start1IntergalClust);
+		setStat(END1_INTERGAL_CLUST, end1IntergalClust);
+		setStat(START2_INTERGAL_CLUST, start2IntergalClust);
+		setStat(END2_INTERGAL_CLUST, end2IntergalClust);
+		setStat(ROMAN_POS, romanPos);
+		setStat(COMM1_POS, comm1Pos);
+		setStat(COMM2_POS, comm2Pos);
+		setStat(Q_POS, qPos);
+		setStat(ARABIC_POS, arabicPos);
+		setStat(CREDIT_POS, creditPos);
+		setStat(HOW_POS, howPos);
+		setStat(MUCH_POS, muchPos);
+		setStat(MANY_POS, manyPos);
+	}
+	
+	/**
+	 * Get one stat of the note.
+	 * 
+	 * @param stat is an int: the index of the stat
+	 * @return an int: the value of the stat
+	 */
+	private int getStat(int stat) {
+		switch (stat >>> 3) {
+			case 0: return unpack(stats0, stat);
+			case 1: return unpack(stats1, stat);
+			case 2: return unpack(stats2, stat);
+			default: return unpack(stats3, stat);
+		}
+	}
+	
+	/**
+	 * Set one stat of the note.
+	 * 
+	 * @param stat is an int: the index of the stat
+	 * @param value is an int: the value of the stat
+	 */
+	private void setStat(int stat, int value) {
+		switch (stat >>> 3) {
+			case 0: stats0 = pack(stats0, stat, value); break;
+			case 1: stats1 = pack(stats1, stat, value); break;
+			case 2: stats2 = pack(stats2, stat, value); break;
+			default: stats3 = pack(stats3, stat, value);
+		}
+	}
+	
+	/**
+	 * Get one stat of the note from the packed long holding it.
+	 * 
+	 * @param word is a long: the packed long holding the stat
+	 * @param stat is an int: the index of the stat
+	 * @return an int: the value of the stat
+	 */
+	private int unpack(long word, int stat) {
+		// a long shifts by the low six bits, so stat << 3 is its byte
+		int packed = (int)(word >>> (stat << 3)) & 0xFF;
+		return packed != WIDE ? packed - 1 : wideStats[stat];
+	}
+	
+	/**
+	 * Set one stat of the note in the packed long holding it, or among the
+	 * wide stats if the value does not fit in a byte.
+	 * 
+	 * @param word is a long: the packed long holding the stat
+	 * @param stat is an int: the index of the stat
+	 * @param value is an int: the value of the stat
+	 * @return a long: the packed long with the stat set
+	 */
+	private long pack(long word, int stat, int value) {
+		return (word & ~(0xFFL << (stat << 3))) | 
+				((long)packed(stat, value) << (stat << 3));
+	}
+	
+	/**
+	 * Get the byte to pack for a stat, keeping the stat among the wide 
+	 * stats if it does not fit in a byte.
+	 * 
+	 * @param stat is an int: the index of the stat
+	 * @param value is an int: the value of the stat
+	 * @return an int: the byte to pack
+	 */
+	private int packed(int stat, int value) {
+		return value >= -1 && value < WIDE-1 ? value+1 : setWideStat(stat, value);
+	}
+	
+	/**
+	 * Keep a stat that does not fit in a byte among the wide stats.
+	 * 
+	 * @param stat is an int: the index of the stat
+	 * @param value is an int: the value of the stat
+	 * @return an int: WIDE, to pack in place of the stat
+	 */
+	private int setWideStat(int stat, int value) {
+		
+		if (wideStats == null) wideStats = new int[NUM_STATS];
+		wideStats[stat] = value;
+		
+		return WIDE;
 	}
 	
 	@Override
 	public String toString() {
 		
 		String str = super.toString();
-		str += "Cis: " + countIs + ", CIntCl: " + countIntergalClust + 
-				", CRomB: " + countRomanBase + ", CRomC: " + countRomanComp 
-				+ ", CCm: " + countComm + ", CQ: " + countQ + ", CA: " + 
-				countArabic + ", CCr: " + countCredits + ", CH: " + 
-				countHow + ", CMu: " + countMuch + ", CM: " + countMany;
+		str += "Cis: " + getStat(COUNT_IS) + ", CIntCl: " + getStat(COUNT_INTERGAL_CLUST) + 
+				", CRomB: " + getStat(COUNT_ROMAN_BASE) + ", CRomC: " + getStat(COUNT_ROMAN_COMP) 
+				+ ", CCm: " + getStat(COUNT_COMM) + ", CQ: " + getStat(COUNT_Q) + ", CA: " + 
+				getStat(COUNT_ARABIC) + ", CCr: " + getStat(COUNT_CREDITS) + ", CH: " + 
+				getStat(COUNT_HOW) + ", CMu: " + getStat(COUNT_MUCH) + ", CM: " + getStat(COUNT_MANY);
 		str += '\n';
-		str += "isP: " + isPos + ", " + "sIC1: " + start1IntergalClust 
-				+ ", eIC1: " + end1IntergalClust + ", sIC2: " +
-				+ start2IntergalClust + ", eIC2: " + end2IntergalClust + 
-				", RP: " + romanPos + ", C1P: " + comm1Pos + 
-				", C2P: " + comm2Pos + ", QP: " + qPos + 
-				", AP: " + arabicPos + ", credP: " + creditPos + 
-				", HP: " + howPos + ", muchP: " + muchPos + 
-				", manyP: " + manyPos;
+		str += "isP: " + getStat(IS_POS) + ", " + "sIC1: " + getStat(START1_INTERGAL_CLUST) 
+				+ ", eIC1: " + getStat(END1_INTERGAL_CLUST) + ", sIC2: " +
+				+ getStat(START2_INTERGAL_CLUST) + ", eIC2: " + getStat(END2_INTERGAL_CLUST) + 
+				", RP: " + getStat(ROMAN_POS) + ", C1P: " + getStat(COMM1_POS) + 
+				", C2P: " + getStat(COMM2_POS) + ", QP: " + getStat(Q_POS) + 
+				", AP: " + getStat(ARABIC_POS) + ", credP: " + getStat(CREDIT_POS) + 
+				", HP: " + getStat(HOW_POS) + ", muchP: " + getStat(MUCH_POS) + 
+				", manyP: " + getStat(MANY_POS);
 		str += '\n';
 			
 		return str;
 	}
 
+	/**
+	 * Get the shape of the note, as set by NoteTokenizer.
+	 * 
+	 * @return a long: the token classes of the components of the note,
+	 * or 0 if they are not known
+	 */
+	public long getShape() {
+		return shape;
+	}
+	
+	public void setShape(long shape) {
+		this.shape = shape;
+	}
+	
+	/**
+	 * Set the components of the note, forgetting its shape.
+	 */
+	@Override
+	public void setComponents(String[] components) {
+		super.setComponents(components);
+		this.shape = 0;
+	}
+	
+	/**
+	 * Set the components of the note to parts of the raw note, forgetting
+	 * its shape.
+	 */
+	@Override
+	public void setComponentOffsets(int[] offsets, int numComponents) {
+		super.setComponentOffsets(offsets, numComponents);
+		this.shape = 0;
+	}
+	
 	public int getCountIs() {
-		return countIs;
+		return unpack(stats0, COUNT_IS);
 	}
 
 	public void setCountIs(int countIs) {
-		this.countIs = countIs;
+		stats0 = pack(stats0, COUNT_IS, countIs);
 	}
 
 	public int getCountIntergalClust() {
-		return countIntergalClust;
+		return unpack(stats0, COUNT_INTERGAL_CLUST);
 	}
 
 	public void setCountIntergalClust(int countIntergalClust) {
-		this.countIntergalClust = countIntergalClust;
+		stats0 = pack(stats0, COUNT_INTERGAL_CLUST, countIntergalClust);
 	}
 
 	public int getCountRomanBase() {
-		return countRomanBase;
+		return unpack(stats0, COUNT_ROMAN_BASE);
 	}
 
 	public void setCountRomanBase(int countRomanBase) {
-		this.countRomanBase = countRomanBase;
+		stats0 = pack(stats0, COUNT_ROMAN_BASE, countRomanBase);
 	}
 
 	public int getCountRomanComp() {
-		return countRomanComp;
+		return unpack(stats0, COUNT_ROMAN_COMP);
 	}
 
 	public void setCountRomanComp(int countRomanComp) {
-		this.countRomanComp = countRomanComp;
+		stats0 = pack(stats0, COUNT_ROMAN_COMP, countRomanComp);
 	}
 
 	public int getCountComm() {
-		return countComm;
+		return unpack(stats0, COUNT_COMM);
 	}
 
 	public void setCountComm(int countComm) {
-		this.countComm = countComm;
+		stats0 = pack(stats0, COUNT_COMM, countComm);
 	}
 
 	public int getCountQ() {
-		return countQ;
+		return unpack(stats0, COUNT_Q);
 	}
 
 	public void setCountQ(int countQ) {
-		this.countQ = countQ;
+		stats0 = pack(stats0, COUNT_Q, countQ);
 	}
 
 	public int getCountArabic() {
-		return countArabic;
+		return unpack(stats0, COUNT_ARABIC);
 	}
 
 	public void setCountArabic(int countArabic) {
-		this.countArabic = countArabic;
+		stats0 = pack(stats0, COUNT_ARABIC, countArabic);
 	}
 
 	public int getCountCredits() {
-		return countCredits;
+		return unpack(stats0, COUNT_CREDITS);
 	}
 
 	public void setCountCredits(int countCredits) {
-		this.countCredits = countCredits;
+		stats0 = pack(stats0, COUNT_CREDITS, countCredits);
 	}
 
 	public int getCountHow() {
-		return countHow;
+		return unpack(stats1, COUNT_HOW);
 	}
 
 	public void setCountHow(int countHow) {
-		this.countHow = countHow;
+		stats1 = pack(stats1, COUNT_HOW, countHow);
 	}
 
 	public int getCountMuch() {
-		return countMuch;
+		return unpack(stats1, COUNT_MUCH);
 	}
 
 	public void setCountMuch(int countMuch) {
-		this.countMuch = countMuch;
+		stats1 = pack(stats1, COUNT_MUCH, countMuch);
 	}
 
 	public int getCountMany() {
-		return countMany;
+		return unpack(stats1, COUNT_MANY);
 	}
 
 	public void setCountMany(int countMany) {
-		this.countMany = countMany;
+		stats1 = pack(stats1, COUNT_MANY, countMany);
 	}
 
 	public int getIsPos() {
-		return isPos;
+		return unpack(stats1, IS_POS);
 	}
 
 	public void setIsPos(int isPos) {
-		this.isPos = isPos;
+		stats1 = pack(stats1, IS_POS, isPos);
 	}
 
 	public int getStart1IntergalClust() {
-		return start1IntergalClust;
+		return unpack(stats1, START1_INTERGAL_CLUST);
 	}
 
 	public void setStart1IntergalClust(int start1IntergalClust) {
-		this.start1IntergalClust = start1IntergalClust;
+		stats1 = pack(stats1, START1_INTERGAL_CLUST, start1IntergalClust);
 	}
 
 	public int getEnd1IntergalClust() {
-		return end1IntergalClust;
+		return unpack(stats1, END1_INTERGAL_CLUST);
 	}
 
 	public void setEnd1IntergalClust(int end1IntergalClust) {
-		this.end1IntergalClust = end1IntergalClust;
+		stats1 = pack(stats1, END1_INTERGAL_CLUST, end1IntergalClust);
 	}
 
 	public int getStart2IntergalClust() {
-		return start2IntergalClust;
+		return unpack(stats1, START2_INTERGAL_CLUST);
 	}
 
 	public void setStart2IntergalClust(int start2IntergalClust) {
-		this.start2IntergalClust = start2IntergalClust;
+		stats1 = pack(stats1, START2_INTERGAL_CLUST, start2IntergalClust);
 	}
 
 	public int getEnd2IntergalClust() {
-		return end2IntergalClust;
+		return unpack(stats1, END2_INTERGAL_CLUST);
 	}
 
 	public void setEnd2IntergalClust(int end2IntergalClust) {
-		this.end2IntergalClust = end2IntergalClust;
+		stats1 = pack(stats1, END2_INTERGAL_CLUST, end2IntergalClust);
 	}
 
 	public int getRomanPos() {
-		return romanPos;
+		return unpack(stats2, ROMAN_POS);
 	}
 
 	public void setRomanPos(int romanPos) {
-		this.romanPos = romanPos;
+		stats2 = pack(stats2, ROMAN_POS, romanPos);
 	}
 
 	public int getComm1Pos() {
-		return comm1Pos;
+		return unpack(stats2, COMM1_POS);
 	}
 
 	public void setComm1Pos(int comm1Pos) {
-		this.comm1Pos = comm1Pos;
+		stats2 = pack(stats2, COMM1_POS, comm1Pos);
 	}
 
 	public int getComm2Pos() {
-		return comm2Pos;
+		return unpack(stats2, COMM2_POS);
 	}
 
 	public void setComm2Pos(int comm2Pos) {
-		this.comm2Pos = comm2Pos;
+		stats2 = pack(stats2, COMM2_POS, comm2Pos);
 	}
 
 	public int getqPos() {
-		return qPos;
+		return unpack(stats2, Q_POS);
 	}
 
 	public void setqPos(int qPos) {
-		this.qPos = qPos;
+		stats2 = pack(stats2, Q_POS, qPos);
 	}
 
 	public int getArabicPos() {
-		return arabicPos;
+		return unpack(stats2, ARABIC_POS);
 	}
 
 	public void setArabicPos(int arabicPos) {
-		this.arabicPos = arabicPos;
+		stats2 = pack(stats2, ARABIC_POS, arabicPos);
 	}
 
 	public int getCreditPos() {
-		return creditPos;
+		return unpack(stats2, CREDIT_POS);
 	}
 
 	public void setCreditPos(int creditPos) {
-		this.creditPos = creditPos;
+		stats2 = pack(stats2, CREDIT_POS, creditPos);
 	}
 
 	public int getHowPos() {
-		return howPos;
+		return unpack(stats2, HOW_POS);
 	}
 
 	public void setHowPos(int howPos) {
-		this.howPos = howPos;
+		stats2 = pack(stats2, HOW_POS, howPos);
 	}
 
 	public int getMuchPos() {
-		return muchPos;
+		return unpack(stats2, MUCH_POS);
 	}
 
 	public void setMuchPos(int muchPos) {
-		this.muchPos = muchPos;
+		stats2 = pack(stats2, MUCH_POS, muchPos);
 	}
 
 	public int getManyPos() {
-		return manyPos;
+		return unpack(stats3, MANY_POS);
 	}
 
 	public void setManyPos(int manyPos) {
-		this.manyPos = manyPos;
+		stats3 = pack(stats3, MANY_POS, manyPos);
 	}	
 }
@@ -0,0 +1,266 @@
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import app.NoteParser;
+import notes.BaseIntergalNumDecl;
+import notes.CommodityDecl;
+import notes.SymbolTable;
+import utility.Journal;
+import utility.Ledger;
+import utility.PriceHistory;
+import utility.Translator;
+
+/**
+ * Rough timings for recording prices in a Ledger from many threads at
+ * once, while another thread reads prices.
+ * 
+ * Not a unit test; run from the command line with the number of
+ * declarations each writer records as the only argument (default 
+ * 1000000), e.g.
+ * java test.LedgerBenchmark 10000000
+ * 
+ * Each run has 1, 8 and then 32 writer threads, recording declarations
+ * of 256 commodities, half overwriting prices and half only filling in
+ * missing ones. The same runs are then made with every write under one
+ * lock, for comparison. Last, one writer records with price history
+ * kept, and windows of history are summarized, and one writer records
+ * to a journal (in a temporary directory), which is then replayed,
+ * snapshotted, and restored from the snapshot.
+ * 
+ * @author ryanwilliamconnor
+ * 
+ */
+public class LedgerBenchmark {
+	
+	private static final String[] WORDS = {"glob", "prok", "pish", "tegj"};
+	private static final String ROMAN_BASES = "IVXL";
+	private static final int NUM_COMMODITIES = 256;
+	private static final int POOL_SIZE = 65536;
+	private static final int[] WRITERS = {1, 8, 32};
+	private static final int ROUNDS = 3;
+	
+	private Translator translator;
+	private List<CommodityDecl> cDecs;
+	private int[] commodityIds;
+	
+	/**
+	 * Create a benchmark with a pool of random commodity declarations.
+	 */
+	public LedgerBenchmark() {
+		
+		List<String> notes = new ArrayList<String>();
+		for (int i = 0; i < WORDS.length; i++)
+			notes.add(WORDS[i] + " is " + ROMAN_BASES.charAt(i));
+		
+		Random random = new Random(42);
+		for (int i = 0; i < POOL_SIZE; i++) {
+			notes.add(WORDS[random.nextInt(WORDS.length)] + " " +
+					WORDS[random.nextInt(WORDS.length)] + " " + 
+					commodity(random.nextInt(NUM_COMMODITIES)) + " is " + 
+					(1 + random.nextInt(100000)) + " Credits");
+		}
+		
+		NoteParser parser = new NoteParser();
+		parser.parseNotes(notes);
+		translator = new Translator();
+		for (BaseIntergalNumDecl bDec : parser.getBaseIntergalNumDecs())
+			translator.setIntergalToRomanValue(bDec);
+		cDecs = new ArrayList<CommodityDecl>(parser.getCommodityDecs());
+		commodityIds = new int[NUM_COMMODITIES];
+		for (int i = 0; i < NUM_COMMODITIES; i++)
+			commodityIds[i] = SymbolTable.GLOBAL.intern(commodity(i));
+	}
+	
+	/**
+	 * Name the i'th commodity, e.g. 'Benchab', all letters so the name 
+	 * parses as a commodity.
+	 */
+	private static String commodity(int i) {
+		return "Bench" + (char)('a' + i / 26) + (char)('a' + i % 26);
+	}
+	
+	public static void main(String[] args) throws InterruptedException, 
+			IOException, ExecutionException {
+		
+		long perWriter = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		LedgerBenchmark bench = new LedgerBenchmark();
+		System.out.println("Recording " + perWriter + " declarations per "
+				+ "writer, " + Runtime.getRuntime().availableProcessors() +
+				" processors, " + ROUNDS + " rounds");
+		
+		for (int round = 0; round < ROUNDS; round++) {
+			for (boolean locked : new boolean[] {false, true})
+				for (int writers : WRITERS)
+					bench.run(writers, perWriter, locked);
+			System.out.println();
+		}
+		bench.runHistory(perWriter);
+		bench.runJournal(perWriter);
+	}
+	
+	/**
+	 * Time one writer recording declarations to a journal, then time 
+	 * replaying the journal into a new ledger and translator, taking a
+	 * snapshot, and restoring from the snapshot.
+	 * 
+	 * @param records is a long: the declarations to record
+	 */
+	private void runJournal(long records) 
+			throws IOException, InterruptedException, ExecutionException {
+		
+		File dir = Files.createTempDirectory("ledger-journal").toFile();
+		Translator journaled = new Translator();
+		Ledger ledger = new Ledger(journaled);
+		Journal journal = new Journal(dir, ledger, journaled);
+		journal.setSnapshotRecords(0);
+		for (int i = 0; i < WORDS.length; i++)
+			journaled.setIntergalToRomanValue(WORDS[i], 
+					String.valueOf(ROMAN_BASES.charAt(i)));
+		
+		long begin = System.nanoTime();
+		for (long i = 0; i < records; i++)
+			ledger.recordCommDecl(cDecs.get((int)(i % POOL_SIZE)), true);
+		journal.close();
+		long elapsed = System.nanoTime() - begin;
+		long numRecords = journal.getNumRecords();
+		
+		Translator replayed = new Translator();
+		begin = System.nanoTime();
+		journal = new Journal(dir, new Ledger(replayed), replayed);
+		long replaying = System.nanoTime() - begin;
+		long numReplayed = journal.getNumReplayed();
+		begin = System.nanoTime();
+		journal.snapshot().get();
+		long snapshotting = System.nanoTime() - begin;
+		journal.close();
+		
+		Translator restored = new Translator();
+		begin = System.nanoTime();
+		journal = new Journal(dir, new Ledger(restored), restored);
+		long restoring = System.nanoTime() - begin;
+		journal.close();
+		
+		System.out.printf("journal  %8.1f ns/record %8.2f M records/s replayed "
+				+ "(%d records, %d MB)%n", (double)elapsed / records, 
+				numReplayed * 1e3 / replaying, numRecords, 
+				numRecords * Journal.RECORD_SIZE >> 20);
+		System.out.printf("snapshot %8.1f ms to take %8.1f ms to restore "
+				+ "(vs %.1f ms to replay)%n", snapshotting / 1e6, 
+				restoring / 1e6, replaying / 1e6);
+		for (File file : dir.listFiles()) file.delete();
+		dir.delete();
+	}
+	
+	/**
+	 * Time one writer recording declarations with price history kept, 
+	 * then time summarizing random windows of each commodity's history.
+	 * 
+	 * @param records is a long: the declarations to record
+	 */
+	private void runHistory(long records) {
+		
+		Ledger ledger = new Ledger(translator);
+		ledger.setKeepHistory(true);
+		long begin = System.nanoTime();
+		for (long i = 0; i < records; i++)
+			ledger.recordCommDecl(cDecs.get((int)(i % POOL_SIZE)), true);
+		long elapsed = System.nanoTime() - begin;
+		
+		Random random = new Random(7);
+		long last = ledger.getSequence(), count = 0;
+		int windows = 100000;
+		long from;
+		begin = System.nanoTime();
+		for (int i = 0; i < windows; i++) {
+			PriceHistory history = 
+					ledger.getPriceHistory(commodityIds[i % NUM_COMMODITIES]);
+			from = (long)(random.nextDouble() * last);
+			count += history.getWindow(from, 
+					from + (long)(random.nextDouble() * (last - from))).getCount();
+		}
+		long queried = System.nanoTime() - begin;
+		
+		System.out.printf("history  %8.1f ns/record %8.1f us/window "
+				+ "(%.0f observations/window)%n", (double)elapsed / records, 
+				queried / 1e3 / windows, (double)count / windows);
+	}
+	
+	/**
+	 * Time some writers recording declarations while a reader reads 
+	 * prices, and report the rates of both.
+	 * 
+	 * @param writers is an int: the number of writer threads
+	 * @param perWriter is a long: the declarations each writer records
+	 * @param locked is a boolean: whether to record under one lock
+	 */
+	private void run(int writers, final long perWriter, final boolean locked)
+			throws InterruptedException {
+		
+		final Ledger ledger = new Ledger(translator);
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		final long[] reads = {0};
+		final int[] ids = commodityIds;
+		
+		Thread reader = new Thread(() -> {
+			long count = 0, checksum = 0;
+			String price;
+			while (writing.get()) {
+				price = ledger.formatCreditPrice(
+						ids[(int)(count % NUM_COMMODITIES)], 3);
+				if (price != null) checksum += price.length();
+				count++;
+			}
+			reads[0] = count + (checksum == Long.MIN_VALUE ? 1 : 0);
+		});
+		
+		Thread[] threads = new Thread[writers];
+		for (int t = 0; t < writers; t++) {
+			final int offset = t * 7919;
+			threads[t] = new Thread(() -> {
+				try {
+					start.await();
+				}
+				catch (InterruptedException ex) {
+					return;
+				}
+				CommodityDecl cDec;
+				for (long i = 0; i < perWriter; i++) {
+					cDec = cDecs.get((int)((offset + i) % POOL_SIZE));
+					if (locked) {
+						synchronized (ledger) {
+							ledger.recordCommDecl(cDec, (i & 1) == 0);
+						}
+					}
+					else {
+						ledger.recordCommDecl(cDec, (i & 1) == 0);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		
+		reader.start();
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread thread : threads) thread.join();
+		long elapsed = System.nanoTime() - begin;
+		writing.set(false);
+		reader.join();
+		
+		long records = writers * perWriter;
+		System.out.printf("%-8s %2d writers %8.1f ns/record %8.2f M records/s"
+				+ " %8.2f M reads/s%n", locked ? "locked" : "lockfree",
+				writers, (double)elapsed / records, records * 1e3 / elapsed,
+				reads[0] * 1e3 / elapsed);
+	}
+}
@@ -3,38 +3,84 @@ package test;
 import static org.junit.Assert.*;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
 import app.*;
+import notes.*;
+import utility.Journal;
+import utility.Ledger;
+import utility.NumeralError;
+import utility.NumeralSystem;
+import utility.PriceHistory;
 import utility.Translator;
+import utility.TranslatorRegistry;
 
 /**
  * Unit test processing notes about intergalactic commodity markets.
  * 
  * @author ryanwilliamconnor
- *
+ * 
  */
 public class NoteProcessorTester {
 	
-	public static void main(String[] args) {
+	public static void main(String[] args) throws InterruptedException, 
+			IOException, ExecutionException {
 		
 		NoteProcessorTester test = new NoteProcessorTester();
 		
 		// unit testing for parsing
 		test.testParsing();
+		test.testTokenizer();
+		test.testNoteSpans();
+		test.testPackedStats();
+		test.testShapes();
+		test.testParallelParsing();
+		test.testStreamingParsing();
+		test.testIncrementalParsing();
+		test.testSymbolTable();
+		test.testLazyNotes();
+		test.testParseCache();
 		
 		// unit testing for queries
 		
 		// unit testing for translation
 		test.testRomanNumToArabicNum();
 		test.testArabicNumToRomanNum();
+		test.testArabicNumToRomanNumTable();
+		test.testTryIntergalNumToArabic();
+		test.testArabicNumToIntergal();
+		test.testNumeralIndex();
+		test.testBatchTranslation();
+		test.testMappingDecoder();
+		test.testTranslatorRegistry();
+		test.testNumeralSystem();
 		
 		// unit testing for ledger
+		test.testCreditPrices();
+		test.testConcurrentLedger();
+		test.testPriceHistory();
+		test.testJournal();
+		test.testJournalSnapshots();
 		
 		// unit testing for processing entire set of notes
 		
@@ -76,6 +122,1073 @@ public class NoteProcessorTester {
     	*/
     }
 
+    @Test
+    public void testTokenizer() {
+    	
+    	// components are split like split(" "), keeping inner empties
+    	UnknownNote uNote = NoteTokenizer.tokenize(" glob  prok Silver is 34 ");
+    	assertArrayEquals(new String[] {"", "glob", "", "prok", "Silver", 
+    			"is", "34"}, uNote.getComponents());
+    	// empty components count as arabic numerals
+    	assertEquals(3, uNote.getCountArabic());
+    	assertEquals(2, uNote.getCountIntergalClust());
+    	assertEquals(4, uNote.getComm1Pos());
+    	assertEquals(0, NoteTokenizer.tokenize("  ").getComponents().length);
+    	assertEquals(1, NoteTokenizer.tokenize("").getCountArabic());
+    	
+    	// 'many' does not end a cluster, and a cluster can end the note
+    	uNote = NoteTokenizer.tokenize("I is glob many prok");
+    	assertEquals(2, uNote.getStart1IntergalClust());
+    	assertEquals(4, uNote.getEnd1IntergalClust());
+    	assertEquals(0, uNote.getCountMany());
+    	
+    	// a base roman numeral is also a composite one
+    	uNote = NoteTokenizer.tokenize("glob is I");
+    	assertEquals(1, uNote.getCountRomanBase());
+    	assertEquals(1, uNote.getCountRomanComp());
+    	assertTrue(new NoteParser().parse("glob is I") 
+    			instanceof BaseIntergalNumDecl);
+    	
+    	assertEquals(NoteTokenizer.ROMAN_COMP, 
+    			NoteTokenizer.classify("MCMLXXXIV", 0, 9));
+    	assertEquals(NoteTokenizer.OTHER, NoteTokenizer.classify("IIII", 0, 4));
+    	assertEquals(NoteTokenizer.COMMODITY, NoteTokenizer.classify("Gold", 0, 4));
+    	assertEquals(NoteTokenizer.CREDITS, 
+    			NoteTokenizer.classify("Credits", 0, 7));
+    	assertEquals(NoteTokenizer.OTHER, NoteTokenizer.classify("GOld", 0, 4));
+    	assertEquals(NoteTokenizer.ARABIC, NoteTokenizer.classify("+1", 1, 2));
+    	assertEquals(NoteTokenizer.OTHER, NoteTokenizer.classify("+1", 0, 2));
+    }
+
+    @Test
+    public void testNoteSpans() {
+    	
+    	NoteParser parser = new NoteParser();
+    	String note = "glob  prok Silver is 34 Credits";
+    	UnknownNote uNote = NoteTokenizer.tokenize(note);
+    	
+    	// components are views of the note until asked for as strings
+    	assertEquals(7, uNote.getNumComponents());
+    	assertEquals(6, uNote.getComponentStart(2));
+    	assertEquals("prok", uNote.getComponent(2).toString());
+    	assertEquals(0, uNote.getComponent(1).length());
+    	assertTrue(uNote.componentEquals(4, "is"));
+    	assertEquals("glob  prok", uNote.getSpan(0, 2).toString());
+    	assertEquals("prok", uNote.getComponents()[2]);
+    	
+    	CommodityDecl cDec = (CommodityDecl)parser.parse(
+    			"glob prok Silver is 34 Credits");
+    	assertEquals("glob prok", cDec.getIntergalNumSpan().toString());
+    	assertEquals("glob prok", cDec.getIntergalNum());
+    	assertSame(cDec.getIntergalNum(), cDec.getIntergalNum());
+    	assertEquals("Silver", cDec.getCommodity());
+    	assertEquals(34, cDec.getArabicNum());
+    	
+    	Query q = (Query)parser.parse("how many Credits is glob prok Gold ?");
+    	assertEquals("glob prok", q.getIntergalNum());
+    	assertEquals(4, q.getIntergalNumStart());
+    	assertEquals(2, q.getIntergalNumLength());
+    	assertEquals("Gold", q.getCommodity());
+    	
+    	// a query with no intergal numeral has an empty one
+    	q = (Query)parser.parse("how much is ?");
+    	assertEquals(0, q.getIntergalNumLength());
+    	assertNull(q.getIntergalNum());
+    	
+    	CompIntergalNumDecl compDec = 
+    			(CompIntergalNumDecl)parser.parse("prok glob is IV");
+    	assertEquals("prok glob", compDec.getIntergalNum());
+    	assertEquals("IV", compDec.getRomanNum());
+    }
+
+    @Test
+    public void testPackedStats() {
+    	
+    	UnknownNote uNote = new UnknownNote("glob glob");
+    	assertEquals(0, uNote.getCountIs());
+    	assertEquals(0, uNote.getCountMany());
+    	assertEquals(-1, uNote.getIsPos());
+    	assertEquals(-1, uNote.getManyPos());
+    	
+    	// stats that fit in a byte and stats that don't
+    	uNote.setCountComm(253);
+    	uNote.setComm1Pos(254);
+    	uNote.setComm2Pos(100000);
+    	uNote.setArabicPos(-7);
+    	assertEquals(253, uNote.getCountComm());
+    	assertEquals(254, uNote.getComm1Pos());
+    	assertEquals(100000, uNote.getComm2Pos());
+    	assertEquals(-7, uNote.getArabicPos());
+    	assertEquals(-1, uNote.getqPos());
+    	
+    	// a wide stat can go back to fitting, without disturbing its neighbours
+    	uNote.setComm1Pos(3);
+    	assertEquals(3, uNote.getComm1Pos());
+    	assertEquals(100000, uNote.getComm2Pos());
+    	assertEquals(253, uNote.getCountComm());
+    	
+    	// positions past a byte in a long note
+    	StringBuilder note = new StringBuilder();
+    	for (int i = 0; i < 300; i++) note.append("glob ");
+    	note.append("is V");
+    	uNote = NoteTokenizer.tokenize(note.toString());
+    	assertEquals(300, uNote.getIsPos());
+    	assertEquals(301, uNote.getRomanPos());
+    	assertEquals(299, uNote.getEnd1IntergalClust());
+    	assertEquals(1, uNote.getCountIntergalClust());
+    }
+
+    @Test
+    public void testShapes() {
+    	
+    	UnknownNote uNote = NoteTokenizer.tokenize("glob prok Silver is 34 Credits");
+    	assertEquals("INTERGAL INTERGAL COMMODITY IS ARABIC CREDITS",
+    			NoteTokenizer.shapeToString(uNote.getShape()));
+    	assertEquals(uNote.getShape(), NoteTokenizer.shapeOf(uNote));
+    	
+    	// too many components to have a shape
+    	StringBuilder note = new StringBuilder("glob");
+    	for (int i = 0; i < NoteTokenizer.MAX_SHAPE_COMPONENTS; i++) 
+    		note.append(" glob");
+    	assertEquals(0, NoteTokenizer.tokenize(note.toString()).getShape());
+    	
+    	// each shape is checked once, then looked up
+    	NoteParser parser = new NoteParser();
+    	assertTrue(parser.parse("glob is I") instanceof BaseIntergalNumDecl);
+    	assertTrue(parser.parse("prok is V") instanceof BaseIntergalNumDecl);
+    	assertTrue(parser.parse("pish is glob") instanceof UnknownNote);
+    	assertTrue(parser.parse("tegj is prok") instanceof UnknownNote);
+    	assertTrue(parser.parse("glob prok is IV") instanceof CompIntergalNumDecl);
+    	assertEquals(2, parser.getShapeHits());
+    	assertEquals(3, parser.getShapeMisses());
+    	assertEquals(3, parser.getShapeTable().getNumShapes());
+    	
+    	// a full table still identifies new shapes, without keeping them
+    	parser = new NoteParser(1);
+    	parser.parse("glob is I");
+    	assertTrue(parser.parse("how much is glob ?") instanceof Query);
+    	assertTrue(parser.parse("how much is glob ?") instanceof Query);
+    	assertEquals(1, parser.getShapeTable().getNumShapes());
+    	assertEquals(0, parser.getShapeHits());
+    }
+
+    @Test
+    public void testParallelParsing() {
+    	
+    	String[] kinds = {"glob is I", "prok glob is IV", 
+    			"glob prok Silver is 34 Credits", "how much is pish tegj glob ?",
+    			"how many Credits is glob prok Gold ?", "wood chuck"};
+    	List<String> notes = new ArrayList<String>();
+    	for (int i = 0; i < 20000; i++) 
+    		notes.add(kinds[(i*7 + i/3) % kinds.length] + (i % 5 == 0 ? "" : " "));
+    	
+    	NoteParser sequential = new NoteParser();
+    	sequential.setParallelThreshold(Integer.MAX_VALUE);
+    	sequential.parseNotes(notes);
+    	
+    	NoteParser parallel = new NoteParser();
+    	parallel.setParallelThreshold(1);
+    	ForkJoinPool pool = new ForkJoinPool(4);
+    	parallel.setPool(pool);
+    	parallel.parseNotes(notes);
+    	pool.shutdown();
+    	
+    	// same notes in the same order
+    	for (Class<?> type : sequential.getParsedNotes().keySet()) {
+    		List<? extends ParsedNote> seqNotes = 
+    				sequential.getParsedNotes().get(type);
+    		List<? extends ParsedNote> parNotes = 
+    				parallel.getParsedNotes().get(type);
+    		assertEquals(seqNotes.size(), parNotes.size());
+    		for (int i = 0; i < seqNotes.size(); i++)
+    			assertSame(seqNotes.get(i).getNote(), parNotes.get(i).getNote());
+    	}
+    	assertEquals(notes.size(), 
+    			parallel.getShapeHits() + parallel.getShapeMisses());
+    	assertEquals(sequential.getShapeTable().getNumShapes(),
+    			parallel.getShapeTable().getNumShapes());
+    }
+
+    @Test
+    public void testStreamingParsing() {
+    	
+    	// notes made as they are read, never all in memory
+    	final int numNotes = 100000;
+    	Iterator<String> notes = new Iterator<String>() {
+    		private int i = 0;
+    		public boolean hasNext() { return i < numNotes; }
+    		public String next() {
+    			return i++ % 2 == 0 ? "how much is glob prok ?" : "glob is I";
+    		}
+    	};
+    	final long[] queries = {0};
+    	NoteParser parser = new NoteParser();
+    	long count = parser.parseNotes(notes, pNote -> {
+    		if (pNote instanceof Query) queries[0]++;
+    	});
+    	assertEquals(numNotes, count);
+    	assertEquals(numNotes/2, queries[0]);
+    	assertTrue(parser.getQueries().isEmpty());
+    	assertTrue(parser.getBaseIntergalNumDecs().isEmpty());
+    	
+    	// kept notes match parsing the whole list
+    	List<String> lines = Arrays.asList("glob is I", "prok is V", 
+    			"glob prok Silver is 34 Credits", "how much is glob prok ?", 
+    			"how much wood could a woodchuck chuck ?", "nonsense");
+    	NoteParser listParser = new NoteParser();
+    	listParser.parseNotes(lines);
+    	
+    	NoteParser streamParser = new NoteParser();
+    	streamParser.setKeepStreamedNotes(true);
+    	final List<ParsedNote> consumed = new ArrayList<ParsedNote>();
+    	streamParser.parseNotes(lines.spliterator(), consumed::add);
+    	assertEquals(lines.size(), consumed.size());
+    	assertEquals(2, streamParser.getQueries().size());
+    	
+    	try {
+    		streamParser.parseNotes(new StringReader(String.join("\n", lines)),
+    				pNote -> {});
+    	}
+    	catch (IOException ex) {
+    		fail(ex.getMessage());
+    	}
+    	for (Class<?> type : listParser.getParsedNotes().keySet())
+    		assertEquals(2*listParser.getParsedNotes().get(type).size(),
+    				streamParser.getParsedNotes().get(type).size());
+    	assertEquals(listParser.getQueries().get(1).getNote(), 
+    			streamParser.getQueries().get(3).getNote());
+    }
+
+    @Test
+    public void testIncrementalParsing() {
+    	
+    	NoteParser parser = new NoteParser();
+    	List<String> first = Arrays.asList("glob is I", "Tegj is V", 
+    			"how much is glob ?");
+    	parser.parseNotes(first);
+    	parser.appendNotes(Arrays.asList("prok is X", "glob Tegj Gold is 8 Credits",
+    			"Tegj Silver ?", "Zorp is L"));
+    	
+    	assertEquals(7, parser.getNotes().size());
+    	assertEquals(3, first.size());
+    	assertEquals(2, parser.getBaseIntergalNumDecs().size());
+    	assertEquals("prok is X", parser.getBaseIntergalNumDecs().get(1).getNote());
+    	assertEquals(2, parser.getQueries().size());
+    	assertEquals(3, parser.getUnkownNotes().size());
+    	
+    	// only the unknown notes with the word are identified
+    	assertEquals(2, parser.learnIntergalWord("Tegj"));
+    	assertEquals(1, parser.getUnkownNotes().size());
+    	assertEquals("Zorp is L", parser.getUnkownNotes().get(0).getNote());
+    	assertEquals("Tegj is V", parser.getBaseIntergalNumDecs().get(2).getNote());
+    	CommodityDecl cDec = parser.getCommodityDecs().get(0);
+    	assertEquals("glob Tegj", cDec.getIntergalNum());
+    	assertEquals("Gold", cDec.getCommodity());
+    	
+    	// later notes use the learned words
+    	parser.appendNotes(Arrays.asList("how much is Tegj glob ?"));
+    	assertEquals("Tegj glob", parser.getQueries().get(2).getIntergalNum());
+    	assertEquals(0, parser.learnIntergalWord("Tegj"));
+    	assertEquals(0, parser.learnIntergalWord("glob"));
+    	assertEquals(1, parser.learnIntergalWord("Zorp"));
+    	assertTrue(parser.getUnkownNotes().isEmpty());
+    	
+    	// notes still unknown are counted with the learned words too
+    	parser.appendNotes(Arrays.asList("Qux Blip Zed is 5 Credits"));
+    	assertEquals(3, parser.getUnkownNotes().get(0).getCountComm());
+    	assertEquals(0, parser.learnIntergalWord("Qux"));
+    	UnknownNote stillUnknown = parser.getUnkownNotes().get(0);
+    	UnknownNote fresh = (UnknownNote)parser.parse("Qux Blip Zed is 5 Credits");
+    	assertEquals(2, stillUnknown.getCountComm());
+    	assertEquals(1, stillUnknown.getCountIntergalClust());
+    	assertEquals(fresh.getCountComm(), stillUnknown.getCountComm());
+    	assertEquals(fresh.getCountIntergalClust(), 
+    			stillUnknown.getCountIntergalClust());
+    	assertEquals(1, parser.learnIntergalWord("Blip"));
+    	
+    	try {
+    		parser.learnIntergalWord("is");
+    		fail("keywords can't be intergal numerals");
+    	}
+    	catch (IllegalArgumentException ex) {}
+    	
+    	// parsing a list replaces every note stored before
+    	parser = new NoteParser();
+    	parser.parseNotes(Arrays.asList("glob is I", "how much is glob ?",
+    			"Tegj is V"));
+    	parser.learnIntergalWord("Zorp");
+    	parser.parseNotes(Arrays.asList("prok is V", "Tegj is X"));
+    	assertEquals(2, parser.getNotes().size());
+    	assertEquals(1, parser.getBaseIntergalNumDecs().size());
+    	assertTrue(parser.getQueries().isEmpty());
+    	assertEquals(1, parser.getUnkownNotes().size());
+    	assertEquals(1, parser.learnIntergalWord("Tegj"));
+    	assertEquals("Tegj is X", parser.getBaseIntergalNumDecs().get(1).getNote());
+    	
+    	// the unknown notes left keep their order, however many are
+    	// taken out
+    	parser = new NoteParser();
+    	List<String> lines = new ArrayList<String>();
+    	for (int i = 0; i < 1000; i++) lines.add("Word" + i + " is I");
+    	parser.parseNotes(lines);
+    	List<String> left = new ArrayList<String>(lines);
+    	Random random = new Random(17);
+    	String line;
+    	for (int round = 0; round < 990; round++) {
+    		line = left.remove(random.nextInt(left.size()));
+    		assertEquals(1, parser.learnIntergalWord(
+    				line.substring(0, line.indexOf(' '))));
+    		if (round % 97 != 0) continue;
+    		assertEquals(left.size(), parser.getUnkownNotes().size());
+    		for (int i = 0; i < left.size(); i++)
+    			assertEquals(left.get(i), parser.getUnkownNotes().get(i).getNote());
+    	}
+    	parser.getUnkownNotes().remove(0);
+    	parser.appendNotes(Arrays.asList("Zorp is L"));
+    	left.remove(0);
+    	left.add("Zorp is L");
+    	int i = 0;
+    	for (UnknownNote uNote : parser.getUnkownNotes())
+    		assertEquals(left.get(i++), uNote.getNote());
+    	assertEquals(left.size(), i);
+    	assertEquals(990, parser.getBaseIntergalNumDecs().size());
+    }
+
+    @Test
+    public void testSymbolTable() {
+    	
+    	SymbolTable symbols = new SymbolTable();
+    	assertEquals(-1, symbols.idOf("glob"));
+    	assertEquals(0, symbols.intern("glob"));
+    	assertEquals(1, symbols.intern(new StringBuilder("Iron")));
+    	assertEquals(0, symbols.intern("glob"));
+    	assertEquals(2, symbols.size());
+    	
+    	// words are found in part of a string without copying it out
+    	String note = "glob glob Iron is 20 Credits";
+    	assertEquals(1, symbols.idOf(note, 10, 14));
+    	assertEquals(-1, symbols.idOf(note, 10, 13));
+    	assertSame(symbols.symbolOf(1), symbols.canonical(note.substring(10, 14)));
+    	try {
+    		symbols.symbolOf(2);
+    		fail("no symbol has id 2");
+    	}
+    	catch (IndexOutOfBoundsException ex) {}
+    	
+    	// many new words, so the table grows
+    	for (int i = 0; i < 1000; i++)
+    		assertEquals(i+2, symbols.intern("word" + i));
+    	for (int i = 0; i < 1000; i++)
+    		assertEquals("word" + i, symbols.symbolOf(symbols.idOf("word" + i)));
+    	
+    	// notes, the ledger and the translator share one string per word
+    	NoteParser parser = new NoteParser();
+    	parser.parseNotes(Arrays.asList("glob is I", "prok is V", 
+    			"glob prok Unobtainium is 80 Credits",
+    			"how many Credits is glob Unobtainium ?"));
+    	Translator translator = new Translator();
+    	translator.setIntergalToRomanValue(parser.getBaseIntergalNumDecs().get(0));
+    	translator.setIntergalToRomanValue(parser.getBaseIntergalNumDecs().get(1));
+    	Ledger ledger = new Ledger(translator);
+    	CommodityDecl cDec = parser.getCommodityDecs().get(0);
+    	assertTrue(ledger.recordCommDecl(cDec, true));
+    	
+    	Query q = parser.getQueries().get(0);
+    	assertEquals(cDec.getCommodityId(), q.getCommodityId());
+    	assertSame(cDec.getCommodity(), q.getCommodity());
+    	assertSame(cDec.getCommodity(), 
+    			ledger.getPriceBook().keySet().iterator().next());
+    	assertSame(SymbolTable.GLOBAL.canonical("glob"), 
+    			translator.getRankToIntergalNum()[0]);
+    	assertTrue(ledger.hasEntry(q.getCommodityId()));
+    	assertEquals(20, ledger.getCreditPrice(q.getCommodityId()).intValue());
+    	assertEquals(translator.getIntergalNumId("glob"), 
+    			SymbolTable.GLOBAL.idOf("glob"));
+    }
+
+    @Test
+    public void testLazyNotes() throws InterruptedException {
+    	
+    	NoteParser parser = new NoteParser();
+    	parser.parseNotes(Arrays.asList("glob is I", "glob glob Lazium is 6 Credits",
+    			"how many Credits is glob Lazium ?", "glob glob Lazium is 8 Credits",
+    			"nonsense"));
+    	
+    	// notes are counted without building them
+    	assertEquals(2, parser.getCommodityDecs().size());
+    	assertEquals(1, parser.getQueries().size());
+    	assertEquals(1, parser.getUnkownNotes().size());
+    	assertEquals(-1, SymbolTable.GLOBAL.idOf("Lazium"));
+    	
+    	// getting a note builds it once, and only it
+    	CommodityDecl cDec = parser.getCommodityDecs().get(1);
+    	assertEquals(8, cDec.getArabicNum());
+    	assertSame(cDec, parser.getCommodityDecs().get(1));
+    	int lazium = SymbolTable.GLOBAL.idOf("Lazium");
+    	assertTrue(lazium >= 0);
+    	assertEquals(lazium, parser.getQueries().get(0).getCommodityId());
+    	
+    	// iterating builds the rest, in order
+    	int count = 0;
+    	for (CommodityDecl built : parser.getCommodityDecs()) {
+    		assertEquals(lazium, built.getCommodityId());
+    		assertEquals(count == 0 ? 6 : 8, built.getArabicNum());
+    		count++;
+    	}
+    	assertEquals(2, count);
+    	
+    	// built and unbuilt notes mix, parsed in parallel or added as usual
+    	parser.setParallelThreshold(1);
+    	parser.appendNotes(Arrays.asList("prok is V", "how much is glob ?"));
+    	assertTrue(parser.sortNote(parser.parse("pish is X")));
+    	List<BaseIntergalNumDecl> bDecs = parser.getBaseIntergalNumDecs();
+    	assertEquals(3, bDecs.size());
+    	assertEquals("glob prok pish", bDecs.get(0).getBaseIntergalNum() + " " +
+    			bDecs.get(1).getBaseIntergalNum() + " " + 
+    			bDecs.get(2).getBaseIntergalNum());
+    	assertEquals("glob", parser.getQueries().get(1).getIntergalNum());
+    	assertSame(parser.getQueries(), parser.getParsedNotes().get(Query.class));
+    	
+    	Iterator<BaseIntergalNumDecl> it = bDecs.iterator();
+    	it.next();
+    	it.remove();
+    	assertEquals("prok", bDecs.get(0).getBaseIntergalNum());
+    	assertEquals(2, bDecs.size());
+    	
+    	// threads getting the same unbuilt notes at once get one instance
+    	List<String> notes = new ArrayList<String>();
+    	for (int i = 0; i < 5000; i++) notes.add("glob Lazium is " + i + " Credits");
+    	parser.setParallelThreshold(NoteParser.DEFAULT_PARALLEL_THRESHOLD);
+    	parser.parseNotes(notes);
+    	final List<CommodityDecl> cDecs = parser.getCommodityDecs();
+    	final CommodityDecl[][] got = new CommodityDecl[4][cDecs.size()];
+    	Thread[] readers = new Thread[got.length];
+    	for (int t = 0; t < readers.length; t++) {
+    		final CommodityDecl[] mine = got[t];
+    		readers[t] = new Thread(() -> {
+    			for (int i = 0; i < mine.length; i++) mine[i] = cDecs.get(i);
+    		});
+    	}
+    	for (Thread reader : readers) reader.start();
+    	for (Thread reader : readers) reader.join();
+    	for (int i = 0; i < notes.size(); i++) {
+    		assertEquals(i, got[0][i].getArabicNum());
+    		for (int t = 1; t < got.length; t++) assertSame(got[0][i], got[t][i]);
+    		assertSame(got[0][i], cDecs.get(i));
+    	}
+    }
+
+    @Test
+    public void testParseCache() {
+    	
+    	NoteParser parser = new NoteParser();
+    	ParseCache cache = new ParseCache(2, ParseCache.Eviction.LRU);
+    	parser.setParseCache(cache);
+    	
+    	// repeated lines parse the same, as distinct notes
+    	parser.parseNotes(Arrays.asList("how much is glob ?", "glob is I",
+    			"how much is glob ?", "Tegj is V", "Tegj is V"));
+    	assertEquals(2, cache.getHits());
+    	assertEquals(3, cache.getMisses());
+    	assertEquals(0.4, cache.getHitRate(), 1e-9);
+    	assertEquals(1, cache.getEvictions());
+    	assertEquals(2, parser.getQueries().size());
+    	assertNotSame(parser.getQueries().get(0), parser.getQueries().get(1));
+    	assertEquals("glob", parser.getQueries().get(1).getIntergalNum());
+    	assertEquals(2, parser.getUnkownNotes().size());
+    	assertNotSame(parser.getUnkownNotes().get(0), 
+    			parser.getUnkownNotes().get(1));
+    	assertEquals(3, parser.getUnkownNotes().get(1).getNumComponents());
+    	
+    	// the least recently used line is dropped, not the oldest
+    	parser.parse("how much is glob ?");
+    	parser.parse("glob is I");
+    	parser.parse("how much is glob ?");
+    	assertEquals(4, cache.getHits());
+    	assertEquals(2, cache.getEvictions());
+    	assertEquals(2, cache.getNumLines());
+    	
+    	// learning a word empties the cache, so lines parse with it
+    	assertEquals(2, parser.learnIntergalWord("Tegj"));
+    	assertEquals(0, cache.getNumLines());
+    	assertTrue(parser.parse("Tegj is V") instanceof BaseIntergalNumDecl);
+    	
+    	// other policies
+    	ParseCache fifo = new ParseCache(2, ParseCache.Eviction.FIFO);
+    	ParseCache none = new ParseCache(2, ParseCache.Eviction.NONE);
+    	for (ParseCache policy : Arrays.asList(fifo, none)) {
+    		parser.setParseCache(policy);
+    		for (String note : Arrays.asList("a", "b", "a", "c", "a"))
+    			parser.parse(note);
+    	}
+    	assertEquals(1, fifo.getHits()); // 'a' was first in, so first out
+    	assertEquals(2, fifo.getEvictions());
+    	assertEquals(2, none.getHits()); // 'c' was never cached
+    	assertEquals(0, none.getEvictions());
+    	
+    	// chunks parsed in parallel add their counts
+    	parser.setParseCache(cache);
+    	parser.setParallelThreshold(1);
+    	long lookups = cache.getHits() + cache.getMisses();
+    	parser.appendNotes(Arrays.asList("glob is I", "glob is I"));
+    	assertEquals(lookups + 2, cache.getHits() + cache.getMisses());
+    	
+    	// find the lines cached beforehand, and cache theirs here in turn
+    	long hits = cache.getHits();
+    	parser.appendNotes(Arrays.asList("glob is I", "Tegj is V"));
+    	assertEquals(hits + 2, cache.getHits());
+    	assertEquals(2, cache.getNumLines());
+    	parser.appendNotes(Arrays.asList("a", "b", "c"));
+    	assertEquals(2, cache.getNumLines());
+    	hits = cache.getHits();
+    	parser.parse("c");
+    	parser.parse("b");
+    	assertEquals(hits + 2, cache.getHits());
+    	parser.parse("a"); // evicted, as the least recently used
+    	assertEquals(hits + 2, cache.getHits());
+    	
+    	try {
+    		new ParseCache(0, ParseCache.Eviction.LRU);
+    		fail("a cache must hold a line");
+    	}
+    	catch (IllegalArgumentException ex) {}
+    }
+
+    @Test
+    public void testCreditPrices() {
+    	
+    	// the same as DecimalFormat on the exact value
+    	DecimalFormat format = new DecimalFormat("#.##");
+    	format.setRoundingMode(RoundingMode.HALF_EVEN);
+    	for (long numerator = 0; numerator <= 3000; numerator += 7) {
+    		for (long denominator = 1; denominator <= 400; denominator += 3) {
+    			BigDecimal exact = BigDecimal.valueOf(numerator).divide(
+    					BigDecimal.valueOf(denominator), MathContext.DECIMAL128);
+    			assertEquals(format.format(exact), 
+    					Ledger.formatCredits(numerator, denominator));
+    			assertEquals(format.format(exact.negate()).replace("-0", "0"), 
+    					Ledger.formatCredits(-numerator, denominator)
+    					.replace("-0", "0"));
+    		}
+    	}
+    	assertEquals("0", Ledger.formatCredits(-1, 1000));
+    	assertEquals("0.12", Ledger.formatCredits(1, 8));
+    	assertEquals("0.38", Ledger.formatCredits(3, 8));
+    	assertEquals("1", Ledger.formatCredits(199, 200));
+    	assertEquals("92233720368547758.07", 
+    			Ledger.formatCredits(Long.MAX_VALUE, 100));
+    	
+    	// prices are kept exactly, and priced on longs
+    	NoteParser parser = new NoteParser();
+    	parser.parseNotes(Arrays.asList("glob is I", "prok is V", "pish is X",
+    			"glob glob glob Ratium is 10 Credits", 
+    			"pish Ratium is 1 Credits"));
+    	Translator translator = new Translator();
+    	for (BaseIntergalNumDecl bDec : parser.getBaseIntergalNumDecs())
+    		translator.setIntergalToRomanValue(bDec);
+    	Ledger ledger = new Ledger(translator);
+    	CommodityDecl cDec = parser.getCommodityDecs().get(0);
+    	assertTrue(ledger.recordCommDecl(cDec, true));
+    	assertEquals("3.33", ledger.formatCreditPrice(cDec.getCommodityId(), 1));
+    	assertEquals("10", ledger.formatCreditPrice(cDec.getCommodityId(), 3));
+    	assertEquals("10000", 
+    			ledger.formatCreditPrice(cDec.getCommodityId(), 3000));
+    	assertEquals(new BigDecimal("3.333333333333333"), 
+    			ledger.getCreditPrice(cDec.getCommodityId()));
+    	assertEquals("iii", ledger.getIntergalPrice("Ratium").replace("glob", "i")
+    			.replace(" ", ""));
+    	
+    	// not overwriting keeps the first price
+    	assertTrue(ledger.recordCommDecl(parser.getCommodityDecs().get(1), false));
+    	assertEquals("10", ledger.formatCreditPrice(cDec.getCommodityId(), 3));
+    	assertTrue(ledger.recordCommDecl(parser.getCommodityDecs().get(1), true));
+    	assertEquals("0.3", ledger.formatCreditPrice(cDec.getCommodityId(), 3));
+    	assertNull(ledger.formatCreditPrice(-1, 3));
+    	
+    	// big decimal prices are held exactly too
+    	ledger.setCreditPrice("Ratium", new BigDecimal("0.125"));
+    	assertEquals("0.12", ledger.formatCreditPrice(cDec.getCommodityId(), 1));
+    	assertEquals("0.38", ledger.formatCreditPrice(cDec.getCommodityId(), 3));
+    	assertEquals(new BigDecimal("0.125"), ledger.getCreditPrice("Ratium"));
+    	
+    	// prices with too many digits to hold exactly are rounded to fit
+    	ledger.setCreditPrice("Ratium", new BigDecimal(0.1));
+    	assertEquals(0, new BigDecimal("0.1").compareTo(
+    			ledger.getCreditPrice("Ratium")));
+    	ledger.setCreditPrice("Ratium", new BigDecimal("1.2345678901234567891"));
+    	assertEquals("123456789012345679", ledger.formatCreditPrice(
+    			cDec.getCommodityId(), 100000000000000000L));
+    	ledger.setCreditPrice("Ratium", new BigDecimal("1E-30"));
+    	assertEquals("0", ledger.formatCreditPrice(cDec.getCommodityId(), 1));
+    	ledger.setCreditPrice("Ratium", new BigDecimal("123456789012345678.9"));
+    	assertEquals("123456789012345679", 
+    			ledger.formatCreditPrice(cDec.getCommodityId(), 1));
+    	try {
+    		ledger.setCreditPrice("Ratium", new BigDecimal("1E19"));
+    		fail("Did not throw price too big");
+    	}
+    	catch (IllegalArgumentException ex) {}
+    	
+    	// the exact price differs from the old double price only on ties,
+    	// like 1 Credit for 24 units, priced at 9 units: 0.375
+    	DecimalFormat oldFormat = new DecimalFormat("#.##");
+    	assertEquals("0.37", oldFormat.format(new BigDecimal((double)1 / 24)
+    			.multiply(new BigDecimal(9))));
+    	assertEquals("0.38", Ledger.formatCredits(1 * 9, 24));
+    	int numTies = 0;
+    	for (int credits = 1; credits <= 40; credits++) {
+    		for (int units = 1; units <= 40; units++) {
+    			BigDecimal oldPrice = new BigDecimal((double)credits / units);
+    			for (int amount = 1; amount <= 40; amount++) {
+    				String oldAnswer = oldFormat.format(
+    						oldPrice.multiply(new BigDecimal(amount)));
+    				String newAnswer = 
+    						Ledger.formatCredits(credits * amount, units);
+    				if (oldAnswer.equals(newAnswer)) continue;
+    				// the exact price is halfway between two hundredths
+    				assertEquals(0, (200 * credits * amount) % units);
+    				assertEquals(1, (200 * credits * amount / units) % 2);
+    				numTies++;
+    			}
+    		}
+    	}
+    	assertTrue(numTies > 0);
+    }
+
+    @Test
+    public void testConcurrentLedger() throws InterruptedException {
+    	
+    	// each declaration prices Concurrium at i Credits, i from 1 to 99
+    	List<String> notes = new ArrayList<String>(Arrays.asList(
+    			"glob is I", "prok is V", "pish is X", "tegj is L", "zorp is C"));
+    	for (int i = 1; i < 100; i++)
+    		notes.add("glob Concurrium is " + i + " Credits");
+    	NoteParser parser = new NoteParser();
+    	parser.parseNotes(notes);
+    	final Translator translator = new Translator();
+    	for (BaseIntergalNumDecl bDec : parser.getBaseIntergalNumDecs())
+    		translator.setIntergalToRomanValue(bDec);
+    	final List<CommodityDecl> cDecs = 
+    			new ArrayList<CommodityDecl>(parser.getCommodityDecs());
+    	final int id = cDecs.get(0).getCommodityId();
+    	
+    	for (final boolean overwrite : new boolean[] {true, false}) {
+    		
+    		final Ledger ledger = new Ledger(translator);
+    		final boolean[] torn = {false};
+    		Thread[] writers = new Thread[4];
+    		for (int t = 0; t < writers.length; t++) {
+    			final int first = t;
+    			writers[t] = new Thread(() -> {
+    				for (int round = 0; round < 50; round++)
+    					for (int i = first; i < cDecs.size(); i += 4)
+    						ledger.recordCommDecl(cDecs.get(i), overwrite);
+    			});
+    		}
+    		Thread reader = new Thread(() -> {
+    			for (int i = 0; i < 100000; i++) {
+    				// the intergal price is always the credit price's
+    				Map<String, ?> book = ledger.getPriceBook();
+    				Object pair = book.get("Concurrium");
+    				if (pair == null) continue;
+    				String str = pair.toString();
+    				int credits = Integer.parseInt(
+    						str.substring(str.lastIndexOf(' ')+1, str.length()-1));
+    				if (!str.equals("(Intergal: " + 
+    						translator.tryArabicNumToIntergal(credits) + 
+    						", Credits: " + credits + ")")) 
+    					torn[0] = true;
+    			}
+    		});
+    		reader.start();
+    		for (Thread writer : writers) writer.start();
+    		for (Thread writer : writers) writer.join();
+    		reader.join();
+    		
+    		assertFalse(torn[0]);
+    		int credits = ledger.getCreditPrice(id).intValue();
+    		assertTrue(credits >= 1 && credits < 100);
+    		// not overwriting keeps whichever price was written first
+    		if (!overwrite) {
+    			assertTrue(credits <= 4);
+    			for (CommodityDecl cDec : cDecs)
+    				ledger.recordCommDecl(cDec, false);
+    			assertEquals(credits, ledger.getCreditPrice(id).intValue());
+    		}
+    	}
+    }
+
+    @Test
+    public void testPriceHistory() {
+    	
+    	PriceHistory history = new PriceHistory(4);
+    	assertEquals(0, history.size());
+    	assertNull(history.getLatestPrice());
+    	assertEquals(0, history.getWindow(0, Long.MAX_VALUE).getCount());
+    	try {
+    		new PriceHistory(6);
+    		fail("block size must be a power of two");
+    	}
+    	catch (IllegalArgumentException ex) {}
+    	
+    	// windows over many blocks and superblocks agree with a scan
+    	Random random = new Random(23);
+    	int num = 5000;
+    	long[] seqs = new long[num];
+    	int[] credits = new int[num], units = new int[num];
+    	for (int i = 0; i < num; i++) {
+    		seqs[i] = 10*i + random.nextInt(2)*5;
+    		credits[i] = random.nextInt(100000);
+    		units[i] = 1 + random.nextInt(3999);
+    		history.append(seqs[i], credits[i], units[i]);
+    		assertEquals(seqs[i], history.getLatestSeq());
+    		assertEquals(credits[i], history.getLatestCredits());
+    		assertEquals(units[i], history.getLatestUnits());
+    	}
+    	assertEquals(num, history.size());
+    	try {
+    		history.append(seqs[num-1] - 1, 1, 1);
+    		fail("sequence numbers must not go back");
+    	}
+    	catch (IllegalArgumentException ex) {}
+    	
+    	for (int test = 0; test < 500; test++) {
+    		int from = random.nextInt(num), to = from + random.nextInt(num-from) + 1;
+    		if (test < 20) to = Math.min(num, from + test + 1);
+    		int min = from, max = from;
+    		long sumCredits = 0, sumUnits = 0;
+    		double sumPrices = 0;
+    		for (int i = from; i < to; i++) {
+    			if ((long)credits[i]*units[min] < (long)credits[min]*units[i]) min = i;
+    			if ((long)credits[i]*units[max] > (long)credits[max]*units[i]) max = i;
+    			sumCredits += credits[i];
+    			sumUnits += units[i];
+    			sumPrices += (double)credits[i] / units[i];
+    		}
+    		
+    		PriceHistory.Window window = history.getWindow(seqs[from], seqs[to-1]);
+    		assertEquals(to - from, window.getCount());
+    		assertEquals(BigDecimal.valueOf(credits[min]).divide(
+    				BigDecimal.valueOf(units[min]), MathContext.DECIMAL64), 
+    				window.getMin());
+    		assertEquals(BigDecimal.valueOf(credits[max]).divide(
+    				BigDecimal.valueOf(units[max]), MathContext.DECIMAL64), 
+    				window.getMax());
+    		assertEquals(sumCredits, window.getCredits());
+    		assertEquals(sumUnits, window.getUnits());
+    		assertEquals(BigDecimal.valueOf(sumCredits).divide(
+    				BigDecimal.valueOf(sumUnits), MathContext.DECIMAL64), 
+    				window.getVwap());
+    		assertEquals(sumPrices / (to - from), window.getMean(), 
+    				1e-9 * sumPrices);
+    		assertEquals(window.getCount(), 
+    				history.getWindowByIndex(from, to).getCount());
+    	}
+    	
+    	// a window between observations is empty
+    	PriceHistory.Window empty = history.getWindow(seqs[0] + 1, seqs[1] - 1);
+    	assertEquals(0, seqs[1] - seqs[0] > 1 ? empty.getCount() : 0);
+    	assertNull(history.getWindow(seqs[num-1] + 1, Long.MAX_VALUE).getMin());
+    	
+    	// a ledger keeps history only when asked, and keeps every price
+    	NoteParser parser = new NoteParser();
+    	parser.parseNotes(Arrays.asList("glob is I", "prok is V",
+    			"glob Lutium is 10 Credits", "prok Lutium is 30 Credits",
+    			"glob glob Lutium is 3 Credits"));
+    	Translator translator = new Translator();
+    	for (BaseIntergalNumDecl bDec : parser.getBaseIntergalNumDecs())
+    		translator.setIntergalToRomanValue(bDec);
+    	Ledger ledger = new Ledger(translator);
+    	List<CommodityDecl> cDecs = parser.getCommodityDecs();
+    	ledger.recordCommDecl(cDecs.get(0), true);
+    	assertNull(ledger.getPriceHistory("Lutium"));
+    	ledger.setKeepHistory(true);
+    	for (CommodityDecl cDec : cDecs) assertTrue(ledger.recordCommDecl(cDec, false));
+    	
+    	PriceHistory lutium = ledger.getPriceHistory(cDecs.get(0).getCommodityId());
+    	assertEquals(3, lutium.size());
+    	assertEquals(3, ledger.getSequence());
+    	assertEquals(new BigDecimal("1.5"), lutium.getLatestPrice());
+    	assertEquals(new BigDecimal("10"), ledger.getCreditPrice("Lutium"));
+    	PriceHistory.Window all = lutium.getWindow(1, ledger.getSequence());
+    	assertEquals(new BigDecimal("1.5"), all.getMin());
+    	assertEquals(new BigDecimal("10"), all.getMax());
+    	assertEquals(new BigDecimal("5.375"), all.getVwap());
+    	assertEquals(17.5 / 3, all.getMean(), 1e-12);
+    	assertEquals(33, lutium.getWindow(2, 3).getCredits());
+    	assertEquals(7, lutium.getWindow(2, 3).getUnits());
+    }
+
+    @Test
+    public void testJournal() throws IOException, InterruptedException {
+    	
+    	File dir = Files.createTempDirectory("journal").toFile();
+    	NoteParser parser = new NoteParser();
+    	parser.parseNotes(Arrays.asList("glob is I", "prok is V", "pish is X",
+    			"glob glob Journalium is 34 Credits", 
+    			"prok Journalium is 50 Credits",
+    			"pish glob Extraordinarilylongcommodity is 1100 Credits"));
+    	
+    	// small segments, so the journal spans several
+    	Translator translator = new Translator();
+    	Ledger ledger = new Ledger(translator);
+    	Journal journal = new Journal(dir, ledger, translator, 16);
+    	assertEquals(0, journal.getNumReplayed());
+    	for (BaseIntergalNumDecl bDec : parser.getBaseIntergalNumDecs())
+    		translator.setIntergalToRomanValue(bDec);
+    	translator.putUnknownIntergalNum("tegj");
+    	for (int i = 0; i < 10; i++)
+    		for (CommodityDecl cDec : parser.getCommodityDecs())
+    			assertTrue(ledger.recordCommDecl(cDec, (i & 1) == 0));
+    	translator.setIntergalToRomanValue("tegj", "L");
+    	translator.decoupleIntergalNum("tegj", 3);
+    	long numRecords = journal.getNumRecords();
+    	journal.close();
+    	assertTrue(dir.list().length > 2);
+    	try {
+    		ledger.recordCommDecl(parser.getCommodityDecs().get(1), true);
+    	}
+    	catch (IllegalStateException ex) {
+    		fail("a closed journal stops journaling the ledger");
+    	}
+    	
+    	// replaying leaves a new ledger and translator as they were
+    	Translator replayed = new Translator();
+    	Ledger replayedLedger = new Ledger(replayed);
+    	journal = new Journal(dir, replayedLedger, replayed, 16);
+    	assertEquals(numRecords, journal.getNumReplayed());
+    	assertEquals(0, journal.getNumTruncated());
+    	assertEquals(translator.getIntergalNumRank(), replayed.getIntergalNumRank());
+    	assertTrue(replayed.getIntergalNumRank().containsKey("tegj"));
+    	assertNull(replayed.getIntergalNumRank().get("tegj"));
+    	for (String commodity : Arrays.asList("Journalium", 
+    			"Extraordinarilylongcommodity")) {
+    		assertEquals(ledger.getCreditPrice(commodity), 
+    				replayedLedger.getCreditPrice(commodity));
+    		assertEquals(ledger.getIntergalPrice(commodity), 
+    				replayedLedger.getIntergalPrice(commodity));
+    	}
+    	assertEquals("100", replayedLedger.formatCreditPrice(
+    			SymbolTable.GLOBAL.idOf("Journalium"), 10));
+    	
+    	// a torn record at the end is dropped, and the journal goes on
+    	parser = new NoteParser();
+    	parser.parseNotes(Arrays.asList("glob glob Tornium is 8 Credits"));
+    	CommodityDecl torn = parser.getCommodityDecs().get(0);
+    	assertTrue(replayedLedger.recordCommDecl(torn, true));
+    	numRecords = journal.getNumRecords();
+    	journal.close();
+    	List<Long> starts = new ArrayList<Long>();
+    	for (String name : dir.list())
+    		starts.add(Long.parseLong(name.replaceAll("[^0-9]", "")));
+    	long lastStart = starts.stream().mapToLong(Long::longValue).max().getAsLong();
+    	File last = new File(dir, String.format("journal-%019d.log", lastStart));
+    	try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+    		file.seek((numRecords - 1 - lastStart) * Journal.RECORD_SIZE + 9);
+    		file.write(0x7f);
+    	}
+    	
+    	Translator recovered = new Translator();
+    	Ledger recoveredLedger = new Ledger(recovered);
+    	journal = new Journal(dir, recoveredLedger, recovered, 16);
+    	assertEquals(numRecords - 1, journal.getNumReplayed());
+    	assertEquals(1, journal.getNumTruncated());
+    	assertFalse(recoveredLedger.hasEntry(torn.getCommodityId()));
+    	assertTrue(recoveredLedger.recordCommDecl(torn, true));
+    	journal.setGroupCommit(1, 0);
+    	journal.close();
+    	
+    	recovered = new Translator();
+    	recoveredLedger = new Ledger(recovered);
+    	journal = new Journal(dir, recoveredLedger, recovered);
+    	assertEquals(0, journal.getNumTruncated());
+    	assertEquals("8", recoveredLedger.formatCreditPrice(torn.getCommodityId(), 2));
+    	assertEquals(ledger.getCreditPrice("Journalium"), 
+    			recoveredLedger.getCreditPrice("Journalium"));
+    	journal.close();
+    	for (File file : dir.listFiles()) file.delete();
+    	
+    	// closing while others record stops journaling them, without error
+    	parser = new NoteParser();
+    	parser.parseNotes(Arrays.asList("glob is I", "prok is V",
+    			"glob Racium is 3 Credits", "prok Racium is 20 Credits"));
+    	final Translator racingTranslator = new Translator();
+    	final Ledger racingLedger = new Ledger(racingTranslator);
+    	for (BaseIntergalNumDecl bDec : parser.getBaseIntergalNumDecs())
+    		racingTranslator.setIntergalToRomanValue(bDec);
+    	journal = new Journal(dir, racingLedger, racingTranslator, 16);
+    	final List<CommodityDecl> racingDecs = new ArrayList<CommodityDecl>(
+    			parser.getCommodityDecs());
+    	final boolean[] failed = {false};
+    	Thread[] racers = new Thread[3];
+    	for (int t = 0; t < racers.length; t++) {
+    		final int racer = t;
+    		racers[t] = new Thread(() -> {
+    			try {
+    				for (int i = 0; i < 20000; i++) {
+    					if (racer == 0) 
+    						racingTranslator.putUnknownIntergalNum("race" + i);
+    					else
+    						racingLedger.recordCommDecl(
+    								racingDecs.get(i % racingDecs.size()), true);
+    				}
+    			}
+    			catch (IllegalStateException ex) {
+    				failed[0] = true;
+    			}
+    		});
+    	}
+    	for (Thread racer : racers) racer.start();
+    	while (journal.getNumRecords() < 1000) Thread.yield();
+    	journal.close();
+    	for (Thread racer : racers) racer.join();
+    	assertFalse(failed[0]);
+    	
+    	for (File file : dir.listFiles()) file.delete();
+    	dir.delete();
+    }
+
+    @Test
+    public void testJournalSnapshots() throws IOException, InterruptedException, 
+    		ExecutionException {
+    	
+    	File dir = Files.createTempDirectory("journal").toFile();
+    	NoteParser parser = new NoteParser();
+    	parser.parseNotes(Arrays.asList("glob is I", "prok is V", "pish is X",
+    			"glob glob Snapium is 34 Credits", "prok Snapium is 50 Credits",
+    			"pish Shotium is 1100 Credits"));
+    	List<CommodityDecl> cDecs = parser.getCommodityDecs();
+    	
+    	Translator translator = new Translator();
+    	Ledger ledger = new Ledger(translator);
+    	Journal journal = new Journal(dir, ledger, translator, 16);
+    	journal.setSnapshotRecords(0);
+    	for (BaseIntergalNumDecl bDec : parser.getBaseIntergalNumDecs())
+    		translator.setIntergalToRomanValue(bDec);
+    	translator.putUnknownIntergalNum("tegj");
+    	for (int i = 0; i < 20; i++)
+    		for (CommodityDecl cDec : cDecs) ledger.recordCommDecl(cDec, true);
+    	
+    	// a snapshot replaces every segment before it
+    	File snapshot = journal.snapshot().get();
+    	assertTrue(snapshot.exists());
+    	long position = journal.getSnapshotPosition();
+    	assertTrue(position > 0);
+    	assertEquals(2, dir.list().length); // the snapshot and a new segment
+    	
+    	// a snapshot that can't be written leaves the position as it was
+    	ledger.recordCommDecl(cDecs.get(1), true);
+    	File blocker = new File(dir, String.format("snapshot-%019d.snap.tmp", 
+    			journal.getNumRecords()));
+    	assertTrue(blocker.mkdir());
+    	try {
+    		journal.snapshot().get();
+    		fail("Did not fail to write the snapshot");
+    	}
+    	catch (ExecutionException ex) {
+    		assertTrue(ex.getCause() instanceof IOException);
+    	}
+    	assertEquals(position, journal.getSnapshotPosition());
+    	assertTrue(blocker.delete());
+    	ledger.recordCommDecl(cDecs.get(0), true);
+    	translator.setIntergalToRomanValue("tegj", "L");
+    	journal.close();
+    	
+    	// opening restores it and replays the rest
+    	Translator restored = new Translator();
+    	Ledger restoredLedger = new Ledger(restored);
+    	journal = new Journal(dir, restoredLedger, restored, 16);
+    	assertEquals(position, journal.getSnapshotPosition());
+    	assertEquals(journal.getNumRecords() - position, journal.getNumReplayed());
+    	assertTrue(journal.getNumReplayed() < 10);
+    	assertEquals(translator.getIntergalNumRank(), restored.getIntergalNumRank());
+    	assertEquals(ledger.getPriceBook().toString(), 
+    			restoredLedger.getPriceBook().toString());
+    	assertEquals("17", restoredLedger.formatCreditPrice(cDecs.get(0).getCommodityId(), 1));
+    	assertEquals(new BigDecimal("110"), restoredLedger.getCreditPrice("Shotium"));
+    	
+    	// snapshots are taken every so many records, leaving the newest
+    	journal.setSnapshotRecords(40);
+    	for (int i = 0; i < 200; i++) restoredLedger.recordCommDecl(cDecs.get(i % 3), true);
+    	journal.close();
+    	long periodic = journal.getSnapshotPosition();
+    	assertTrue(periodic > position);
+    	int numSnapshots = 0;
+    	for (String name : dir.list()) if (name.startsWith("snapshot")) numSnapshots++;
+    	assertEquals(1, numSnapshots);
+    	
+    	restored = new Translator();
+    	restoredLedger = new Ledger(restored);
+    	journal = new Journal(dir, restoredLedger, restored, 16);
+    	assertEquals(periodic, journal.getSnapshotPosition());
+    	assertEquals(journal.getNumRecords() - periodic, journal.getNumReplayed());
+    	assertEquals("1100", restoredLedger.formatCreditPrice(
+    			SymbolTable.GLOBAL.idOf("Shotium"), 10));
+    	position = journal.getSnapshotPosition();
+    	journal.close();
+    	
+    	// a corrupt snapshot is not restored
+    	try (RandomAccessFile file = new RandomAccessFile(
+    			new File(dir, String.format("snapshot-%019d.snap", position)), "rw")) {
+    		file.seek(20);
+    		file.write(file.read() ^ 1);
+    	}
+    	try {
+    		restored = new Translator();
+    		new Journal(dir, new Ledger(restored), restored);
+    		fail("a corrupt snapshot must not be restored");
+    	}
+    	catch (IOException ex) {
+    		assertTrue(ex.getMessage().endsWith("is corrupt"));
+    	}
+    	for (File file : dir.listFiles()) file.delete();
+    	
+    	// prices are copied in the background while writers go on, and 
+    	// replaying the records after a snapshot leaves the same prices
+    	List<String> notes = new ArrayList<String>(Arrays.asList(
+    			"glob is I", "prok is V", "pish is X"));
+    	for (int i = 0; i < 200; i++)
+    		notes.add("glob Snap" + (char)('a' + i % 10) + " is " + (i + 1) 
+    				+ " Credits");
+    	parser = new NoteParser();
+    	parser.parseNotes(notes);
+    	final List<CommodityDecl> snapDecs = parser.getCommodityDecs();
+    	translator = new Translator();
+    	for (BaseIntergalNumDecl bDec : parser.getBaseIntergalNumDecs())
+    		translator.setIntergalToRomanValue(bDec);
+    	final Ledger writtenLedger = new Ledger(translator);
+    	journal = new Journal(dir, writtenLedger, translator, 64);
+    	journal.setSnapshotRecords(100);
+    	Thread[] writers = new Thread[2];
+    	for (int t = 0; t < writers.length; t++) {
+    		final int first = t;
+    		writers[t] = new Thread(() -> {
+    			for (int i = first; i < 5000; i += 2)
+    				writtenLedger.recordCommDecl(
+    						snapDecs.get(i % snapDecs.size()), i % 3 == 0);
+    		});
+    	}
+    	for (Thread writer : writers) writer.start();
+    	for (Thread writer : writers) writer.join();
+    	journal.close();
+    	assertTrue(journal.getSnapshotPosition() > 0);
+    	
+    	restored = new Translator();
+    	restoredLedger = new Ledger(restored);
+    	journal = new Journal(dir, restoredLedger, restored, 64);
+    	for (char c = 'a'; c < 'a' + 10; c++) {
+    		assertNotNull(writtenLedger.getCreditPrice("Snap" + c));
+    		assertEquals(writtenLedger.getCreditPrice("Snap" + c), 
+    				restoredLedger.getCreditPrice("Snap" + c));
+    		assertEquals(writtenLedger.getIntergalPrice("Snap" + c), 
+    				restoredLedger.getIntergalPrice("Snap" + c));
+    	}
+    	journal.close();
+    	
+    	for (File file : dir.listFiles()) file.delete();
+    	dir.delete();
+    }
+
     @Test
     public void testRomanNumToArabicNum() {
     	
@@ -112,6 +1225,11 @@ public class NoteProcessorTester {
     	assertEquals(3232, Translator.romanNumToArabic("MMMCCXXXII"));
     	assertEquals(3487, Translator.romanNumToArabic("MMMCDLXXXVII"));
     	
+    	// portions of a longer sequence
+    	StringBuilder line = new StringBuilder("pish is MCMXLIV ?");
+    	assertEquals(1944, Translator.romanNumToArabic(line, 8, 15));
+    	assertEquals(1900, Translator.romanNumToArabic(line, 8, 11));
+    	
     	// invalid inputs
     	try {
     	    Translator.romanNumToArabic("MMMM");
@@ -148,6 +1266,18 @@ public class NoteProcessorTester {
     	    fail( "Did not throw illegal minuend" );
     	} catch (IllegalArgumentException e) {
     		
+    	}
+    	try {
+    	    Translator.romanNumToArabic("");
+    	    fail( "Did not throw empty numeral" );
+    	} catch (IllegalArgumentException e) {
+    		
+    	}
+    	try {
+    	    Translator.romanNumToArabic("XIZ");
+    	    fail( "Did not throw non-base numeral" );
+    	} catch (IllegalArgumentException e) {
+    		
     	}
     }
     
@@ -187,4 +1317,435 @@ public class NoteProcessorTester {
     	assertEquals("MMMCCXXXII", Translator.arabicNumToRoman(3232));
     	assertEquals("MMMCDLXXXVII", Translator.arabicNumToRoman(3487));
     }
+    
+    @Test
+    public void testArabicNumToRomanNumTable() {
+    	
+    	// every entry in the table should sum back to its index
+    	String romanNum;
+    	int val, next, sum;
+    	for (int i = 1; i <= 3999; i++) {
+    		romanNum = Translator.arabicNumToRoman(i);
+    		assertTrue(romanNum.length() <= Translator.MAX_ROMAN_LENGTH);
+    		sum = 0;
+    		for (int j = 0; j < romanNum.length(); j++) {
+    			val = Translator.RANK_TO_VAL[Translator.ROMAN_NUM_RANK.
+    			        get(romanNum.substring(j, j+1))];
+    			next = j+1 < romanNum.length() ? 
+    					Translator.RANK_TO_VAL[Translator.ROMAN_NUM_RANK.
+    					        get(romanNum.substring(j+1, j+2))] : 0;
+    			sum += val < next ? -val : val;
+    		}
+    		assertEquals(i, sum);
+    	}
+    	
+    	// same string instance each time
+    	assertTrue(Translator.arabicNumToRoman(1944) == 
+    			Translator.arabicNumToRoman(1944));
+    	
+    	// caller-supplied destinations
+    	StringBuilder sb = new StringBuilder("x");
+    	Translator.arabicNumToRoman(1944, sb);
+    	assertEquals("xMCMXLIV", sb.toString());
+    	
+    	char[] buf = new char[Translator.MAX_ROMAN_LENGTH+2];
+    	int len = Translator.arabicNumToRoman(3888, buf, 2);
+    	assertEquals("MMMDCCCLXXXVIII", new String(buf, 2, len));
+    	
+    	// invalid inputs
+    	try {
+    	    Translator.arabicNumToRoman(0);
+    	    fail( "Did not throw for 0" );
+    	} catch (IllegalArgumentException e) {
+    		
+    	}
+    	try {
+    	    Translator.arabicNumToRoman(4000);
+    	    fail( "Did not throw for 4000" );
+    	} catch (IllegalArgumentException e) {
+    		
+    	}
+    }
+    
+    @Test
+    public void testTryIntergalNumToArabic() {
+    	
+    	// a translator with its own symbol table, so ids start at 0
+    	Translator translator = new Translator(NumeralSystem.ROMAN, 
+    			new SymbolTable());
+    	translator.setIntergalToRomanValue("glob", "I");
+    	translator.setIntergalToRomanValue("prok", "V");
+    	translator.setIntergalToRomanValue("pish", "X");
+    	translator.putUnknownIntergalNum("blah");
+    	
+    	// valid numerals
+    	assertEquals(4, translator.tryIntergalNumToArabic("glob prok"));
+    	assertEquals(19, translator.tryIntergalNumToArabic("pish glob pish"));
+    	assertEquals(3, translator.tryIntergalNumToArabic("glob glob glob"));
+    	
+    	// invalid numerals report an error instead of throwing
+    	assertEquals(NumeralError.UNMAPPED_WORD, NumeralError.fromResult(
+    			translator.tryIntergalNumToArabic("glob tegj")));
+    	assertEquals(NumeralError.UNMAPPED_WORD, NumeralError.fromResult(
+    			translator.tryIntergalNumToArabic("blah")));
+    	assertEquals(NumeralError.REPEAT_VIOLATION, NumeralError.fromResult(
+    			translator.tryIntergalNumToArabic("glob glob glob glob")));
+    	assertEquals(NumeralError.REPEAT_VIOLATION, NumeralError.fromResult(
+    			translator.tryIntergalNumToArabic("prok prok")));
+    	assertEquals(NumeralError.BAD_SUBTRACTION, NumeralError.fromResult(
+    			translator.tryIntergalNumToArabic("glob pish glob pish")));
+    	assertEquals(NumeralError.EMPTY, NumeralError.fromResult(
+    			translator.tryIntergalNumToArabic("")));
+    	assertEquals(NumeralError.BAD_TOKEN, NumeralError.fromResult(
+    			Translator.tryRomanNumToArabic("XIZ")));
+    	assertNull(NumeralError.fromResult(42));
+    	
+    	// ids come from the symbol table in order, and translate 
+    	// without strings
+    	int glob = translator.getIntergalNumId("glob");
+    	int prok = translator.getIntergalNumId("prok");
+    	int pish = translator.getIntergalNumId("pish");
+    	assertEquals(0, glob);
+    	assertEquals(3, translator.getIntergalNumId("blah"));
+    	assertEquals(-1, translator.getIntergalNumId("tegj"));
+    	int[] ids = {pish, pish, glob, prok, -1};
+    	assertEquals(24, translator.tryIntergalNumToArabic(ids, 0, 4));
+    	assertEquals(4, translator.tryIntergalNumToArabic(ids, 2, 4));
+    	assertEquals(NumeralError.UNMAPPED_WORD, NumeralError.fromResult(
+    			translator.tryIntergalNumToArabic(ids, 2, 5)));
+    	
+    	// remapping a word keeps its id and updates its value
+    	translator.setIntergalToRomanValue("glob", "C");
+    	assertEquals(glob, translator.getIntergalNumId("glob"));
+    	assertEquals(120, translator.tryIntergalNumToArabic(ids, 0, 3));
+    	assertEquals(3, translator.getNumPairs());
+    	
+    	// throwing version still throws
+    	try {
+    	    translator.intergalNumToArabic("glob tegj");
+    	    fail( "Did not throw unmapped word" );
+    	} catch (IllegalArgumentException e) {
+    		
+    	}
+    }
+    
+    @Test
+    public void testNumeralIndex() throws InterruptedException {
+    	
+    	Translator translator = new Translator();
+    	translator.setUseNumeralIndex(true);
+    	String[] words = {"glob", "prok", "pish", "tegj", "blip", "zorp", 
+    			"quux"};
+    	String[] romans = {"I", "V", "X", "L", "C", "D", "M"};
+    	for (int i = 0; i < words.length - 1; i++)
+    		translator.setIntergalToRomanValue(words[i], romans[i]);
+    	
+    	// index only used once every roman numeral is paired
+    	assertFalse(translator.completeInfo());
+    	assertEquals(4, translator.tryIntergalNumToArabic("glob prok"));
+    	translator.setIntergalToRomanValue(words[6], romans[6]);
+    	assertTrue(translator.completeInfo());
+    	
+    	// canonical numerals, non-canonical ones, and ones that break rules
+    	assertEquals(1944, translator.tryIntergalNumToArabic(
+    			"quux blip quux pish tegj glob prok"));
+    	assertEquals(15, translator.tryIntergalNumToArabic("prok pish"));
+    	assertEquals(NumeralError.REPEAT_VIOLATION, NumeralError.fromResult(
+    			translator.tryIntergalNumToArabic("glob glob glob glob")));
+    	assertEquals(NumeralError.UNMAPPED_WORD, NumeralError.fromResult(
+    			translator.tryIntergalNumToArabic("glob blah")));
+    	
+    	// changing a pairing rebuilds the index
+    	translator.setIntergalToRomanValue("glob", "M");
+    	assertFalse(translator.completeInfo());
+    	assertEquals(2000, translator.tryIntergalNumToArabic("glob glob"));
+    	translator.setIntergalToRomanValue("quux", "I");
+    	assertEquals(2, translator.tryIntergalNumToArabic("quux quux"));
+    	assertEquals(2000, translator.tryIntergalNumToArabic("glob glob"));
+    	
+    	// readers racing to build the index each see a whole one
+    	final Translator shared = new Translator();
+    	shared.setUseNumeralIndex(true);
+    	for (int i = 0; i < romans.length; i++)
+    		shared.setIntergalToRomanValue(words[i], romans[i]);
+    	final String[] numerals = new String[Translator.MAX_ARABIC + 1];
+    	final int[] expected = new int[numerals.length];
+    	Translator unindexed = new Translator();
+    	for (int i = 0; i < romans.length; i++)
+    		unindexed.setIntergalToRomanValue(words[i], romans[i]);
+    	for (int i = 1; i < numerals.length; i++) {
+    		numerals[i] = shared.arabicNumToIntergal(i);
+    		expected[i] = unindexed.tryIntergalNumToArabic(numerals[i]);
+    	}
+    	final boolean[] wrong = {false};
+    	Thread[] readers = new Thread[4];
+    	for (int t = 0; t < readers.length; t++) {
+    		readers[t] = new Thread(() -> {
+    			for (int i = 1; i < numerals.length; i++)
+    				if (shared.tryIntergalNumToArabic(numerals[i]) != expected[i]) 
+    					wrong[0] = true;
+    		});
+    	}
+    	for (Thread reader : readers) reader.start();
+    	for (Thread reader : readers) reader.join();
+    	assertFalse(wrong[0]);
+    }
+    
+    @Test
+    public void testBatchTranslation() {
+    	
+    	Translator translator = new Translator(NumeralSystem.ROMAN, 
+    			new SymbolTable());
+    	String[] words = {"glob", "prok", "pish", "tegj", "blip", "zorp", 
+    			"quux"};
+    	String[] romans = {"I", "V", "X", "L", "C", "D", "M"};
+    	for (int i = 0; i < words.length - 1; i++)
+    		translator.setIntergalToRomanValue(words[i], romans[i]);
+    	
+    	// each slot gets a value or an error, and translations are counted
+    	List<String> numerals = Arrays.asList("glob prok", "pish glob pish", 
+    			"glob glob glob glob", "glob quux", "");
+    	int[] values = new int[numerals.size()];
+    	NumeralError[] errors = new NumeralError[numerals.size()];
+    	Arrays.fill(values, 42);
+    	Arrays.fill(errors, NumeralError.EMPTY);
+    	assertEquals(2, translator.tryIntergalNumsToArabic(numerals, values, 
+    			errors));
+    	assertArrayEquals(new int[] {4, 19, 0, 0, 0}, values);
+    	assertArrayEquals(new NumeralError[] {null, null, 
+    			NumeralError.REPEAT_VIOLATION, NumeralError.UNMAPPED_WORD, 
+    			NumeralError.EMPTY}, errors);
+    	
+    	// the same numerals packed as ids
+    	int glob = translator.getIntergalNumId("glob");
+    	int prok = translator.getIntergalNumId("prok");
+    	int pish = translator.getIntergalNumId("pish");
+    	int[] ids = {glob, prok, pish, glob, pish, glob, glob, glob, glob, 
+    			glob, -1};
+    	int[] offsets = {0, 2, 5, 9, 11, 11};
+    	Arrays.fill(values, 42);
+    	assertEquals(2, translator.tryIntergalNumsToArabic(ids, offsets, 5, 
+    			values, errors));
+    	assertArrayEquals(new int[] {4, 19, 0, 0, 0}, values);
+    	assertArrayEquals(new NumeralError[] {null, null, 
+    			NumeralError.REPEAT_VIOLATION, NumeralError.UNMAPPED_WORD, 
+    			NumeralError.EMPTY}, errors);
+    	
+    	// a batch large enough to use the index gives the same results
+    	translator.setIntergalToRomanValue("quux", "M");
+    	List<String> batch = new ArrayList<String>();
+    	for (int i = 1; i <= Translator.MAX_ARABIC; i++)
+    		batch.add(translator.arabicNumToIntergal(i));
+    	batch.add("glob glob glob glob");
+    	batch.add("prok pish");
+    	values = new int[batch.size()];
+    	errors = new NumeralError[batch.size()];
+    	int numTranslated = translator.tryIntergalNumsToArabic(batch, values, 
+    			errors);
+    	int expectedTranslated = 0, expected;
+    	for (int i = 0; i < batch.size(); i++) {
+    		expected = translator.tryIntergalNumToArabic(batch.get(i));
+    		if (expected >= 0) expectedTranslated++;
+    		assertEquals(Math.max(expected, 0), values[i]);
+    		assertEquals(NumeralError.fromResult(expected), errors[i]);
+    	}
+    	assertEquals(expectedTranslated, numTranslated);
+    	assertEquals(1944, values[1943]);
+    	assertEquals(15, values[Translator.MAX_ARABIC + 1]);
+    }
+    
+    @Test
+    public void testMappingDecoder() {
+    	
+    	Translator generic = new Translator();
+    	Translator decoder = new Translator();
+    	decoder.setUseMappingDecoder(true);
+    	
+    	// learn more words than there are roman numerals
+    	for (int i = 0; i < 10; i++) {
+    		generic.putUnknownIntergalNum("word" + i);
+    		decoder.putUnknownIntergalNum("word" + i);
+    	}
+    	String[] romans = {"I", "V", "X", "L", "C", "D", "M"};
+    	for (int i = 0; i < romans.length; i++) {
+    		generic.setIntergalToRomanValue("word" + (9-i), romans[i]);
+    		decoder.setIntergalToRomanValue("word" + (9-i), romans[i]);
+    	}
+    	
+    	String[] numerals = {"word9", "word9 word8", "word8 word9 word9", 
+    			"word3 word5 word3 word7 word6 word9 word8", "word2 word2", 
+    			"word9 word9 word9 word9", "word9 word7 word7", 
+    			"word9 word0", "word9  word9", " word9", "word9 ", ""};
+    	for (String numeral : numerals)
+    		assertEquals(numeral, generic.tryIntergalNumToArabic(numeral), 
+    				decoder.tryIntergalNumToArabic(numeral));
+    	assertEquals(1944, decoder.tryIntergalNumToArabic(
+    			"word3 word5 word3 word7 word6 word9 word8"));
+    	
+    	// a rule broken before an unmapped word is reported first
+    	assertEquals(NumeralError.REPEAT_VIOLATION, NumeralError.fromResult(
+    			decoder.tryIntergalNumToArabic("word8 word8 word0")));
+    	
+    	// random numerals over mapped and unmapped words give the same 
+    	// values and errors, with every roman numeral paired and with some
+    	Random random = new Random(7);
+    	StringBuilder numeral = new StringBuilder();
+    	for (int numMapped = 7; numMapped >= 5; numMapped -= 2) {
+    		if (numMapped < 7) {
+    			generic.decoupleIntergalNum("word3", 6);
+    			generic.decoupleIntergalNum("word4", 5);
+    			decoder.decoupleIntergalNum("word3", 6);
+    			decoder.decoupleIntergalNum("word4", 5);
+    		}
+    		for (int i = 0; i < 20000; i++) {
+    			numeral.setLength(0);
+    			int numWords = 1 + random.nextInt(8);
+    			for (int j = 0; j < numWords; j++) {
+    				if (j > 0) numeral.append(' ');
+    				numeral.append("word").append(random.nextInt(10));
+    			}
+    			assertEquals(numeral.toString(), 
+    					generic.tryIntergalNumToArabic(numeral.toString()), 
+    					decoder.tryIntergalNumToArabic(numeral.toString()));
+    		}
+    	}
+    	
+    	// the decoder follows pairing changes
+    	decoder.setIntergalToRomanValue("word0", "I");
+    	assertEquals(2, decoder.tryIntergalNumToArabic("word0 word0"));
+    	assertEquals(NumeralError.UNMAPPED_WORD, NumeralError.fromResult(
+    			decoder.tryIntergalNumToArabic("word9")));
+    }
+    
+    @Test
+    public void testTranslatorRegistry() {
+    	
+    	TranslatorRegistry registry = new TranslatorRegistry();
+    	
+    	Translator earth = registry.getOrCreateTranslator("earth");
+    	Translator mars = registry.getOrCreateTranslator("mars");
+    	assertSame(earth, registry.getOrCreateTranslator("earth"));
+    	assertEquals(2, registry.getNumDialects());
+    	assertNull(registry.getTranslator("venus"));
+    	
+    	// same words, different values in each dialect
+    	earth.setIntergalToRomanValue("glob", "I");
+    	mars.setIntergalToRomanValue("glob", "X");
+    	assertEquals(2, earth.tryIntergalNumToArabic("glob glob"));
+    	assertEquals(20, mars.tryIntergalNumToArabic("glob glob"));
+    	
+    	// roman numerals are shared, not copied per dialect
+    	earth.setIntergalToRomanValue("prok", new String("V"));
+    	mars.setIntergalToRomanValue("prok", new String("V"));
+    	assertSame(earth.getRankToRomanNum()[1], mars.getRankToRomanNum()[1]);
+    	
+    	assertSame(mars, registry.removeTranslator("mars"));
+    	assertFalse(registry.hasDialect("mars"));
+    	
+    	// each dialect holds slots only for its own words, so memory per 
+    	// dialect stays flat however many words all the dialects know
+    	String[] romanNums = {"I", "V", "X", "L"};
+    	int idCapacity = -1;
+    	Translator dialect = null;
+    	for (int d = 0; d < 2000; d++) {
+    		dialect = registry.getOrCreateTranslator("dialect" + d);
+    		for (int r = 0; r < romanNums.length; r++)
+    			dialect.setIntergalToRomanValue("d" + d + "w" + r, romanNums[r]);
+    		if (idCapacity < 0) idCapacity = dialect.getIdCapacity();
+    		assertEquals(idCapacity, dialect.getIdCapacity());
+    	}
+    	assertTrue(idCapacity <= 16);
+    	assertEquals(2001, registry.getNumDialects());
+    	assertEquals(4, dialect.getIntergalNumRank().size());
+    	assertEquals(66, dialect.tryIntergalNumToArabic("d1999w3 d1999w2 "
+    			+ "d1999w1 d1999w0"));
+    	assertEquals(NumeralError.UNMAPPED_WORD, NumeralError.fromResult(
+    			dialect.tryIntergalNumToArabic("d0w0")));
+    }
+    
+    @Test
+    public void testArabicNumToIntergal() {
+    	
+    	Translator translator = new Translator();
+    	translator.setIntergalToRomanValue("glob", "I");
+    	translator.setIntergalToRomanValue("prok", "V");
+    	translator.setIntergalToRomanValue("pish", "X");
+    	long generation = translator.getGeneration();
+    	
+    	// words are separated, and repeats give the same instance
+    	assertEquals("pish glob prok", translator.arabicNumToIntergal(14));
+    	assertSame(translator.arabicNumToIntergal(14), 
+    			translator.arabicNumToIntergal(14));
+    	
+    	// numerals needing unpaired roman numerals can't be translated
+    	assertNull(translator.tryArabicNumToIntergal(50));
+    	assertNull(translator.tryArabicNumToIntergal(0));
+    	try {
+    	    translator.arabicNumToIntergal(50);
+    	    fail( "Did not throw unpaired roman numeral" );
+    	} catch (IllegalArgumentException e) {
+    		
+    	}
+    	
+    	// a pairing change starts a new generation
+    	translator.setIntergalToRomanValue("tegj", "X");
+    	assertTrue(translator.getGeneration() > generation);
+    	assertEquals("tegj glob prok", translator.arabicNumToIntergal(14));
+    	assertEquals("tegj glob prok", translator.romanNumToIntergal("XIV"));
+    }
+    
+    @Test
+    public void testNumeralSystem() {
+    	
+    	// roman numerals are one compiled system
+    	NumeralSystem roman = NumeralSystem.ROMAN;
+    	assertEquals(Translator.MAX_ARABIC, roman.getMaxValue());
+    	assertEquals(Translator.MAX_ROMAN_LENGTH, roman.getMaxLength());
+    	assertEquals(1984, roman.decode("MCMLXXXIV", 0, 9));
+    	assertEquals("MCMLXXXIV", roman.encode(1984));
+    	assertEquals(NumeralError.BAD_SUBTRACTION.getCode(), 
+    			roman.decode("IL", 0, 2));
+    	
+    	// ones, fives, and tens, with no subtraction
+    	NumeralSystem tally = NumeralSystem.compile("o 1 4; f 5 1; t 10 4");
+    	assertEquals(49, tally.getMaxValue());
+    	assertEquals("ttttfoooo", tally.encode(49));
+    	assertEquals(17, tally.decode("tfoo", 0, 4));
+    	assertEquals(NumeralError.REPEAT_VIOLATION.getCode(), 
+    			tally.decode("ooooo", 0, 5));
+    	
+    	Translator translator = new Translator(tally);
+    	translator.setIntergalToRomanValue("glob", "o");
+    	translator.setIntergalToRomanValue("prok", "f");
+    	translator.setIntergalToRomanValue("pish", "t");
+    	assertTrue(translator.completeInfo());
+    	assertEquals(16, translator.intergalNumToArabic("pish prok glob"));
+    	assertEquals("pish prok glob", translator.arabicNumToIntergal(16));
+    	assertNull(translator.tryArabicNumToIntergal(50));
+    	
+    	// unit prices are checked against the range of the system
+    	NoteParser parser = new NoteParser();
+    	parser.parseNotes(Arrays.asList("glob Tallium is 40 Credits", 
+    			"glob Tallium is 100 Credits"));
+    	Ledger ledger = new Ledger(translator);
+    	ledger.recordCommDecl(parser.getCommodityDecs().get(0), true);
+    	assertEquals("pish pish pish pish", ledger.getIntergalPrice("Tallium"));
+    	ledger.recordCommDecl(parser.getCommodityDecs().get(1), true);
+    	assertEquals("unit price outside valid range of intergal numerals", 
+    			ledger.getIntergalPrice("Tallium"));
+    	
+    	try {
+    		translator.setIntergalToRomanValue("tegj", "I");
+    	    fail( "Did not throw base numeral of another system" );
+    	} catch (IllegalArgumentException e) {
+    		
+    	}
+    	
+    	try {
+    		NumeralSystem.compile("I 1 3 V; V 5 1; X 1 3");
+    	    fail( "Did not throw values out of order" );
+    	} catch (IllegalArgumentException e) {
+    		
+    	}
+    }
 }
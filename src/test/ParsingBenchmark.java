@@ -0,0 +1,202 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import app.NoteParser;
+import app.ParseCache;
+import notes.ParsedNote;
+
+/**
+ * Rough timings for parsing large numbers of notes.
+ *
+ * Not a unit test; run from the command line with the number of
+ * notes to parse as the only argument (default 1000000), e.g.
+ * java test.ParsingBenchmark 100000000
+ *
+ * Notes are drawn from a pool of at most a million, which is parsed
+ * as many times as needed to reach the requested number. The pool mixes
+ * every kind of note, plus about one note in ten that is nonsense.
+ *
+ * @author ryanwilliamconnor
+ *
+ */
+public class ParsingBenchmark {
+
+	private static final String[] WORDS =
+		{"glob", "prok", "pish", "tegj", "blip", "zorp", "quux"};
+	private static final String ROMAN_BASES = "IVXLCDM";
+	private static final String[] COMMODITIES = {"Silver", "Gold", "Iron"};
+	private static final int MAX_POOL = 1000000;
+	private static final int ROUNDS = 3;
+
+	private NoteParser parser;
+	private NoteParser cachingParser;
+	private List<String> notes;
+
+	/**
+	 * Create a benchmark with a pool of random notes.
+	 *
+	 * @param poolSize is an int: the number of notes in the pool
+	 */
+	public ParsingBenchmark(int poolSize) {
+
+		parser = new NoteParser();
+		cachingParser = new NoteParser();
+		cachingParser.setParseCache(new ParseCache());
+		Random random = new Random(42);
+		notes = new ArrayList<String>(poolSize);
+
+		for (int i = 0; i < poolSize; i++) {
+			switch (random.nextInt(10)) {
+				case 0:
+					notes.add(WORDS[random.nextInt(WORDS.length)] + " is " +
+							ROMAN_BASES.charAt(random.nextInt(7)));
+					break;
+				case 1:
+					notes.add("how much is " + intergalNum(random) + " ?");
+					break;
+				case 2:
+				case 3:
+					notes.add("how many Credits is " + intergalNum(random) +
+							" " + COMMODITIES[random.nextInt(3)] + " ?");
+					break;
+				case 4:
+					notes.add("how much wood could a woodchuck chuck if a "
+							+ "woodchuck could chuck wood ?");
+					break;
+				default:
+					notes.add(intergalNum(random) + " " +
+							COMMODITIES[random.nextInt(3)] + " is " +
+							random.nextInt(100000) + " Credits");
+			}
+		}
+	}
+
+	/**
+	 * Make a random intergal numeral of one to eight words.
+	 */
+	private static String intergalNum(Random random) {
+		StringBuilder intergalNum = new StringBuilder();
+		int numWords = 1 + random.nextInt(8);
+		for (int i = 0; i < numWords; i++) {
+			if (i > 0) intergalNum.append(' ');
+			intergalNum.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return intergalNum.toString();
+	}
+
+	public static void main(String[] args) {
+
+		long total = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		int poolSize = (int)Math.min(total, MAX_POOL);
+		long passes = (total + poolSize - 1) / poolSize;
+
+		ParsingBenchmark bench = new ParsingBenchmark(poolSize);
+		System.out.println("Parsing " + passes*poolSize + " notes, " +
+				ROUNDS + " rounds");
+
+		for (int round = 0; round < ROUNDS; round++) {
+			bench.report("parse ", bench.parse(passes), passes*poolSize);
+			bench.report("stream", bench.stream(passes), passes*poolSize);
+			bench.report("cached", bench.cached(passes), passes*poolSize);
+			System.out.println();
+		}
+		System.out.println("shapes " + bench.parser.getShapeTable().getNumShapes()
+				+ ", hits " + bench.parser.getShapeHits() + ", misses " +
+				bench.parser.getShapeMisses());
+		System.out.printf("cache hit rate %.3f, evictions %d%n", 
+				bench.cachingParser.getParseCache().getHitRate(),
+				bench.cachingParser.getParseCache().getEvictions());
+		System.out.println();
+
+		// the whole pool through parseNotes, in sequence then in parallel
+		int threads = Runtime.getRuntime().availableProcessors();
+		System.out.println("parseNotes on " + poolSize + " notes, " +
+				threads + " threads");
+		for (int round = 0; round < ROUNDS; round++) {
+			bench.report("sequential", bench.parseNotes(Integer.MAX_VALUE),
+					poolSize);
+			bench.report("parallel  ", bench.parseNotes(1), poolSize);
+			bench.report("built     ", bench.parseAndBuild(), poolSize);
+			System.out.println();
+		}
+	}
+
+	private long parse(long passes) {
+		long start = System.nanoTime();
+		long checksum = 0;
+		ParsedNote pNote;
+		for (long p = 0; p < passes; p++) {
+			for (String note : notes) {
+				pNote = parser.parse(note);
+				checksum += pNote.getNumComponents();
+			}
+		}
+		return finish(start, checksum);
+	}
+
+	private long cached(long passes) {
+		long start = System.nanoTime();
+		long checksum = 0;
+		ParsedNote pNote;
+		for (long p = 0; p < passes; p++) {
+			for (String note : notes) {
+				pNote = cachingParser.parse(note);
+				checksum += pNote.getNumComponents();
+			}
+		}
+		return finish(start, checksum);
+	}
+
+	private long stream(long passes) {
+		long start = System.nanoTime();
+		final long[] checksum = {0};
+		for (long p = 0; p < passes; p++) {
+			parser.parseNotes(notes.iterator(),
+					pNote -> checksum[0] += pNote.getNumComponents());
+		}
+		return finish(start, checksum[0]);
+	}
+
+	private long parseNotes(int parallelThreshold) {
+		NoteParser notesParser = new NoteParser();
+		notesParser.setParallelThreshold(parallelThreshold);
+		long start = System.nanoTime();
+		notesParser.parseNotes(notes);
+		return finish(start, notesParser.getQueries().size());
+	}
+
+	/**
+	 * Parse the whole pool in sequence, then build every typed note, as 
+	 * a caller using every type of note would.
+	 */
+	private long parseAndBuild() {
+		NoteParser notesParser = new NoteParser();
+		notesParser.setParallelThreshold(Integer.MAX_VALUE);
+		long start = System.nanoTime();
+		notesParser.parseNotes(notes);
+		long checksum = 0;
+		for (List<? extends ParsedNote> typed : 
+				notesParser.getParsedNotes().values()) {
+			for (ParsedNote pNote : typed) checksum += pNote.getNumComponents();
+		}
+		return finish(start, checksum);
+	}
+
+	/**
+	 * Get the time elapsed since start, using the checksum so the
+	 * timed work can't be skipped.
+	 */
+	private long finish(long start, long checksum) {
+		long elapsed = System.nanoTime() - start;
+		if (checksum == Long.MIN_VALUE) System.out.println(checksum);
+		return elapsed;
+	}
+
+	private void report(String name, long nanos, long count) {
+		System.out.printf("%s %8.1f ns/note %10.1f ms%n", name,
+				(double)nanos / count, nanos / 1e6);
+	}
+}
@@ -0,0 +1,383 @@
+package test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import notes.SymbolTable;
+import utility.Ledger;
+import utility.NumeralError;
+import utility.Translator;
+
+/**
+ * Rough timings for translating large numbers of intergal numerals.
+ * 
+ * Not a unit test; run from the command line with the number of
+ * numerals to translate as the only argument (default 1000000), e.g.
+ * java test.TranslationBenchmark 100000000
+ * 
+ * Numerals are drawn from a pool of at most a million, which is
+ * translated as many times as needed to reach the requested number.
+ * About one numeral in ten is not well formed.
+ * 
+ * @author ryanwilliamconnor
+ * 
+ */
+public class TranslationBenchmark {
+	
+	private static final String[] WORDS =
+		{"glob", "prok", "pish", "tegj", "blip", "zorp", "quux"};
+	private static final String ROMAN_BASES = "IVXLCDM";
+	private static final int MAX_POOL = 1000000;
+	private static final int ROUNDS = 3;
+	
+	// word matching specialised to WORDS, as a constant chain (what a 
+	// generated class per set of pairings would give) and as a chain 
+	// held in a field (what Translator could keep without one)
+	private static final MethodHandle CONSTANT_CHAIN = 
+			matchingChain(WORDS);
+	
+	private MethodHandle fieldChain;
+	
+	// the paired words as the mapping decoder holds them
+	private String[] rankToWord;
+	private int[] rankToLength;
+	private char[] rankToFirst;
+	
+	private Translator translator;
+	private List<String> numerals;
+	private int[] ids;
+	private int[] offsets;
+	
+	/**
+	 * Create a benchmark with a pool of random intergal numerals.
+	 * 
+	 * @param poolSize is an int: the number of numerals in the pool
+	 */
+	public TranslationBenchmark(int poolSize) {
+		
+		translator = new Translator();
+		for (int i = 0; i < WORDS.length; i++)
+			translator.setIntergalToRomanValue(WORDS[i],
+					ROMAN_BASES.substring(i, i+1));
+		
+		Random random = new Random(42);
+		numerals = new ArrayList<String>(poolSize);
+		offsets = new int[poolSize+1];
+		List<Integer> idList = new ArrayList<Integer>();
+		
+		String romanNum;
+		StringBuilder numeral = new StringBuilder();
+		for (int i = 0; i < poolSize; i++) {
+			if (random.nextInt(10) == 0) {
+				// random words, almost never well formed
+				romanNum = "";
+				for (int j = 0; j < 2+random.nextInt(6); j++)
+					romanNum += ROMAN_BASES.charAt(random.nextInt(7));
+			}
+			else {
+				romanNum = Translator.arabicNumToRoman(1+random.nextInt(3999));
+			}
+			
+			numeral.setLength(0);
+			offsets[i] = idList.size();
+			for (int j = 0; j < romanNum.length(); j++) {
+				if (j > 0) numeral.append(' ');
+				String word = WORDS[ROMAN_BASES.indexOf(romanNum.charAt(j))];
+				numeral.append(word);
+				idList.add(translator.getIntergalNumId(word));
+			}
+			numerals.add(numeral.toString());
+		}
+		offsets[poolSize] = idList.size();
+		
+		ids = new int[idList.size()];
+		for (int i = 0; i < ids.length; i++) ids[i] = idList.get(i);
+		
+		fieldChain = matchingChain(WORDS);
+		rankToWord = WORDS.clone();
+		rankToLength = new int[WORDS.length];
+		rankToFirst = new char[WORDS.length];
+		for (int i = 0; i < WORDS.length; i++) {
+			rankToLength[i] = WORDS[i].length();
+			rankToFirst[i] = WORDS[i].charAt(0);
+		}
+	}
+	
+	/**
+	 * Build a MethodHandle that gets the rank of a word of a string by 
+	 * testing it against each of the given words in turn.
+	 * 
+	 * @param rankToWord is a string array: the word paired with each rank
+	 * @return a MethodHandle of type (String, int, int)int: given a string
+	 * and the start and end of a word in it, the rank of the word, or -1
+	 */
+	private static MethodHandle matchingChain(String[] rankToWord) {
+		
+		MethodHandle matches;
+		try {
+			matches = MethodHandles.lookup().findStatic(
+					TranslationBenchmark.class, "matches",
+					MethodType.methodType(boolean.class, String.class,
+							int.class, int.class, String.class));
+		}
+		catch (ReflectiveOperationException ex) {
+			throw new IllegalStateException(ex);
+		}
+		
+		Class<?>[] wordArgs = {String.class, int.class, int.class};
+		MethodHandle chain = MethodHandles.dropArguments(
+				MethodHandles.constant(int.class, -1), 0, wordArgs);
+		for (int i = rankToWord.length-1; i >= 0; i--) {
+			chain = MethodHandles.guardWithTest(
+					MethodHandles.insertArguments(matches, 3, rankToWord[i]),
+					MethodHandles.dropArguments(
+							MethodHandles.constant(int.class, i), 0, wordArgs),
+					chain);
+		}
+		return chain;
+	}
+	
+	/**
+	 * Check a word of a string against a paired word the way the 
+	 * mapping decoder does: by length, first char, then the rest.
+	 */
+	private static boolean matches(String str, int start, int end, 
+			String word) {
+		int len = end - start;
+		return len == word.length() && len > 0 &&
+				str.charAt(start) == word.charAt(0) &&
+				str.regionMatches(start+1, word, 1, len-1);
+	}
+	
+	public static void main(String[] args) {
+		
+		long total = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		int poolSize = (int)Math.min(total, MAX_POOL);
+		long passes = (total + poolSize - 1) / poolSize;
+		
+		TranslationBenchmark bench = new TranslationBenchmark(poolSize);
+		System.out.println("Translating " + passes*poolSize +
+				" intergal numerals, " + ROUNDS + " rounds");
+		
+		for (int round = 0; round < ROUNDS; round++) {
+			bench.translator.setUseMappingDecoder(false);
+			bench.report("scalar strings", bench.scalarStrings(passes),
+					passes*poolSize);
+			bench.translator.setUseMappingDecoder(true);
+			bench.report("mapping decoder", bench.scalarStrings(passes),
+					passes*poolSize);
+			bench.translator.setUseMappingDecoder(false);
+			bench.report("batch strings  ", bench.batchStrings(passes),
+					passes*poolSize);
+			bench.report("scalar ids     ", bench.scalarIds(passes),
+					passes*poolSize);
+			bench.report("batch ids      ", bench.batchIds(passes),
+					passes*poolSize);
+			bench.reportWordMatching(passes);
+			bench.reportPairingChanges(false);
+			bench.reportPairingChanges(true);
+			bench.reportPricing();
+			System.out.println();
+		}
+	}
+	
+	/**
+	 * Time getting the rank of every word of the numerals, with the 
+	 * array loop of the mapping decoder and with MethodHandle chains.
+	 * This is the only part of decoding a chain specialised to the 
+	 * pairings could change; applying groups is the same either way.
+	 * 
+	 * @param passes is a long: the number of times to match the pool
+	 */
+	private void reportWordMatching(long passes) {
+		
+		long words = passes * (offsets[numerals.size()] + 0L);
+		
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (long p = 0; p < passes; p++)
+			for (String numeral : numerals)
+				checksum += matchWords(numeral);
+		System.out.printf("match, array loop    %8.1f ns/word%n",
+				(double)finish(start, checksum) / words);
+		
+		start = System.nanoTime();
+		checksum = 0;
+		for (long p = 0; p < passes; p++)
+			for (String numeral : numerals)
+				checksum += matchWords(CONSTANT_CHAIN, numeral);
+		System.out.printf("match, constant chain %7.1f ns/word%n",
+				(double)finish(start, checksum) / words);
+		
+		start = System.nanoTime();
+		checksum = 0;
+		for (long p = 0; p < passes; p++)
+			for (String numeral : numerals)
+				checksum += matchWords(fieldChain, numeral);
+		System.out.printf("match, field chain   %8.1f ns/word%n",
+				(double)finish(start, checksum) / words);
+	}
+	
+	/**
+	 * Sum the ranks of the words of a numeral, found by an array loop.
+	 */
+	private int matchWords(String numeral) {
+		int sum = 0, wordStart = 0, wordEnd, len, rank;
+		int end = numeral.length();
+		while (wordStart <= end) {
+			wordEnd = numeral.indexOf(' ', wordStart);
+			if (wordEnd < 0) wordEnd = end;
+			len = wordEnd - wordStart;
+			rank = -1;
+			for (int i = 0; i < rankToLength.length; i++) {
+				if (rankToLength[i] == len && 
+					rankToFirst[i] == numeral.charAt(wordStart) &&
+					numeral.regionMatches(wordStart+1, rankToWord[i], 1, 
+							len-1)) {
+					rank = i;
+					break;
+				}
+			}
+			sum += rank;
+			wordStart = wordEnd+1;
+		}
+		return sum;
+	}
+	
+	/**
+	 * Sum the ranks of the words of a numeral, found by a matching chain.
+	 */
+	private static int matchWords(MethodHandle chain, String numeral) {
+		int sum = 0, wordStart = 0, wordEnd;
+		int end = numeral.length();
+		try {
+			while (wordStart <= end) {
+				wordEnd = numeral.indexOf(' ', wordStart);
+				if (wordEnd < 0) wordEnd = end;
+				sum += (int)chain.invokeExact(numeral, wordStart, wordEnd);
+				wordStart = wordEnd+1;
+			}
+		}
+		catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+		return sum;
+	}
+	
+	/**
+	 * Time changing a pairing and translating right after, which is 
+	 * what it costs to rebuild the mapping decoder when pairings change.
+	 * 
+	 * @param useMappingDecoder is a boolean: whether to use the decoder
+	 */
+	private void reportPairingChanges(boolean useMappingDecoder) {
+		int changes = 100000;
+		translator.setUseMappingDecoder(useMappingDecoder);
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (int i = 0; i < changes; i++) {
+			translator.setIntergalToRomanValue(WORDS[0], "I");
+			checksum += translator.tryIntergalNumToArabic(numerals.get(0));
+		}
+		long elapsed = finish(start, checksum);
+		System.out.printf("pairing change, decoder %-5s %8.1f ns/change%n",
+				useMappingDecoder, (double)elapsed / changes);
+		translator.setUseMappingDecoder(false);
+	}
+	
+	/**
+	 * Time pricing an amount of a commodity the way answers to queries 
+	 * do, with exact prices on longs and, for comparison, with a 
+	 * BigDecimal made from a double and a DecimalFormat.
+	 */
+	private void reportPricing() {
+		int prices = 1000000;
+		Ledger ledger = new Ledger(translator);
+		ledger.setCreditPrice("Iron", new BigDecimal("195.5"));
+		int iron = SymbolTable.GLOBAL.idOf("Iron");
+		
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (int i = 0; i < prices; i++)
+			checksum += ledger.formatCreditPrice(iron, 1 + i % 3999).length();
+		long elapsed = finish(start, checksum);
+		System.out.printf("price, exact longs       %8.1f ns/price%n",
+				(double)elapsed / prices);
+		
+		NumberFormat format = new DecimalFormat("#.##");
+		BigDecimal unitPrice = new BigDecimal((double)3910 / 20);
+		start = System.nanoTime();
+		checksum = 0;
+		for (int i = 0; i < prices; i++)
+			checksum += format.format(unitPrice.multiply(
+					new BigDecimal(1 + i % 3999))).length();
+		elapsed = finish(start, checksum);
+		System.out.printf("price, double BigDecimal %8.1f ns/price%n",
+				(double)elapsed / prices);
+	}
+	
+	private long scalarStrings(long passes) {
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (long p = 0; p < passes; p++)
+			for (String numeral : numerals)
+				checksum += translator.tryIntergalNumToArabic(numeral);
+		return finish(start, checksum);
+	}
+	
+	private long batchStrings(long passes) {
+		int[] values = new int[numerals.size()];
+		NumeralError[] errors = new NumeralError[numerals.size()];
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (long p = 0; p < passes; p++)
+			checksum += translator.tryIntergalNumsToArabic(numerals, values,
+					errors);
+		return finish(start, checksum);
+	}
+	
+	private long scalarIds(long passes) {
+		int count = numerals.size();
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (long p = 0; p < passes; p++)
+			for (int k = 0; k < count; k++)
+				checksum += translator.tryIntergalNumToArabic(ids,
+						offsets[k], offsets[k+1]);
+		return finish(start, checksum);
+	}
+	
+	private long batchIds(long passes) {
+		int count = numerals.size();
+		int[] values = new int[count];
+		NumeralError[] errors = new NumeralError[count];
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (long p = 0; p < passes; p++)
+			checksum += translator.tryIntergalNumsToArabic(ids, offsets,
+					count, values, errors);
+		return finish(start, checksum);
+	}
+	
+	/**
+	 * Get the time elapsed since start, using the checksum so the
+	 * timed work can't be skipped.
+	 */
+	private long finish(long start, long checksum) {
+		long elapsed = System.nanoTime() - start;
+		if (checksum == Long.MIN_VALUE) System.out.println(checksum);
+		return elapsed;
+	}
+	
+	private void report(String name, long nanos, long count) {
+		System.out.printf("%s %8.1f ns/numeral %10.1f ms%n", name,
+				(double)nanos / count, nanos / 1e6);
+	}
+}
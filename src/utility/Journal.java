@@ -0,0 +1,823 @@
+package utility;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import notes.SymbolTable;
+
+/**
+ * Keep a Ledger and its Translator on disk, as a journal of every change
+ * made to them, so what they learn outlives the program.
+ * 
+ * Once a journal is opened on a ledger and translator, every commodity
+ * declaration the ledger records and every change to the translator's
+ * pairings of intergal numerals with roman numerals is appended to the
+ * journal as a fixed-size binary record. Opening the journal again
+ * (e.g. the next time the program runs) replays the records into a new
+ * ledger and translator, leaving them as they were.
+ * 
+ * Records are RECORD_SIZE bytes, written to segment files of the journal
+ * directory that are mapped into memory, so appending one is a few
+ * stores, and replaying reads the files straight from memory. Records
+ * refer to commodities and intergal numerals by symbol table id; the
+ * word of an id is written to a segment before the first record in it
+ * that uses the id, so each segment can be replayed on its own.
+ * 
+ * Records are in memory as soon as they are appended, so survive the
+ * program crashing, and are forced to disk in groups: every so many
+ * records, or every so many milliseconds, whichever comes first (see
+ * setGroupCommit). If the machine crashes, the records since the last
+ * commit may be lost or torn. Every record carries a checksum, and
+ * replay stops at the first record that is missing or torn and
+ * truncates the journal there.
+ * 
+ * So that opening the journal does not take longer the longer it is
+ * kept, the journal snapshots the ledger's price book and the
+ * translator's pairings every so many records (see setSnapshotRecords
+ * and snapshot), and deletes the segments and snapshots before each new
+ * snapshot. Opening the journal restores the newest snapshot and
+ * replays only the segments after it. Only the translator's pairings 
+ * are copied while the journal is held; the price book is copied, and
+ * the snapshot written to disk, in the background, so writers are not
+ * held up by either (see Snapshot). Price history kept by the ledger
+ * is not in snapshots, so only the declarations since the newest
+ * snapshot are replayed into it.
+ * 
+ * Prices set on the ledger directly (e.g. setCreditPrice) are not
+ * journaled. While a ledger is journaled, its writers record
+ * declarations one at a time, holding the journal.
+ * 
+ * @author ryanwilliamconnor
+ * 
+ */
+public class Journal implements Closeable {
+	
+	public static final int RECORD_SIZE = 32;
+	public static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+	public static final int DEFAULT_GROUP_RECORDS = 1024;
+	public static final long DEFAULT_GROUP_MILLIS = 10;
+	public static final long DEFAULT_SNAPSHOT_RECORDS =
+			4L * DEFAULT_SEGMENT_RECORDS;
+	
+	// record types; 0 is an empty slot. A record is the type, a byte,
+	// a short and four ints, with the checksum in the last int; a
+	// symbol record holds the id in the first int and up to
+	// CHARS_PER_RECORD chars of the word after it, with more records
+	// of type SYMBOL_PART before the last part of a long word
+	private static final byte SYMBOL_PART = 1, SYMBOL = 2, PAIR = 3,
+			DECOUPLE = 4, KNOW = 5, PRICE = 6;
+	private static final int CHARS_PER_RECORD = 10;
+	private static final int CHECKSUM = RECORD_SIZE - 4;
+	// the symbol tables records refer to: the ledger's is the global one
+	private static final int LEDGER_TABLE = 0, TRANSLATOR_TABLE = 1;
+	
+	private static final String PREFIX = "journal-";
+	private static final String SUFFIX = ".log";
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final String SNAPSHOT_SUFFIX = ".snap";
+	
+	private final File directory;
+	private final Ledger ledger;
+	private final Translator translator;
+	private final int segmentRecords;
+	
+	// the segment being appended to: the number of its first record in
+	// the journal, its records mapped into memory, and its next slot
+	private long segmentStart;
+	private MappedByteBuffer segment;
+	private int capacity, slot;
+	// the ids of each table whose words are in the segment
+	private final BitSet[] journaled;
+	
+	private int groupRecords;
+	private long groupMillis;
+	private int uncommitted;
+	private Timer committer;
+	
+	// the records between snapshots, the position of the newest
+	// snapshot written, the position of the newest snapshot started 
+	// (written or not, so the next is due by it), and the snapshot 
+	// being written in the background
+	private long snapshotRecords;
+	private long snapshotPosition;
+	private long snapshotStarted;
+	private ExecutorService snapshotter;
+	private Future<File> pendingSnapshot;
+	
+	private long numReplayed, numTruncated;
+	private boolean closed;
+	
+	/**
+	 * Open the journal in a directory, replay it into a ledger and its
+	 * translator, and journal their changes from then on. Segments hold
+	 * DEFAULT_SEGMENT_RECORDS records.
+	 * 
+	 * @param directory is a File: the directory of the journal, made if
+	 * it does not exist
+	 * @param ledger is a Ledger: the ledger to keep, with no prices yet
+	 * @param translator is a Translator: the ledger's translator, with
+	 * no pairings yet
+	 * @throws IOException if the journal can't be read or written, or
+	 * holds a record that does not fit the translator
+	 */
+	public Journal(File directory, Ledger ledger, Translator translator)
+			throws IOException {
+		this(directory, ledger, translator, DEFAULT_SEGMENT_RECORDS);
+	}
+	
+	/**
+	 * Open the journal in a directory, replay it into a ledger and its
+	 * translator, and journal their changes from then on.
+	 * 
+	 * @param directory is a File: the directory of the journal, made if
+	 * it does not exist
+	 * @param ledger is a Ledger: the ledger to keep, with no prices yet
+	 * @param translator is a Translator: the ledger's translator, with
+	 * no pairings yet
+	 * @param segmentRecords is an int: the number of records in each new
+	 * segment file
+	 * @throws NullPointerException if any argument is null, and
+	 * IllegalArgumentException if the ledger does not use the translator,
+	 * either is already journaled, or segmentRecords is less than 16 or
+	 * too big for a file to map
+	 * @throws IOException if the journal can't be read or written, or
+	 * holds a record that does not fit the translator
+	 */
+	public Journal(File directory, Ledger ledger, Translator translator,
+			int segmentRecords) throws IOException {
+		
+		if (directory == null)
+			throw new NullPointerException("Directory can't be null");
+		if (ledger == null || translator == null)
+			throw new NullPointerException("Ledger and translator can't be null");
+		if (ledger.translator != translator)
+			throw new IllegalArgumentException("Ledger must use the translator");
+		if (ledger.journal != null || translator.journal != null)
+			throw new IllegalArgumentException("Already journaled");
+		if (segmentRecords < 16 || segmentRecords > Integer.MAX_VALUE/RECORD_SIZE)
+			throw new IllegalArgumentException("Segments can't hold " +
+					segmentRecords + " records");
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Can't make directory " + directory);
+		
+		this.directory = directory;
+		this.ledger = ledger;
+		this.translator = translator;
+		this.segmentRecords = segmentRecords;
+		this.journaled = new BitSet[] {new BitSet(), new BitSet()};
+		this.numReplayed = 0;
+		this.numTruncated = 0;
+		this.closed = false;
+		this.snapshotRecords = DEFAULT_SNAPSHOT_RECORDS;
+		this.snapshotPosition = -1;
+		this.snapshotStarted = -1;
+		this.snapshotter = null;
+		this.pendingSnapshot = null;
+		
+		restore();
+		replay();
+		
+		ledger.journal = this;
+		translator.journal = this;
+		setGroupCommit(DEFAULT_GROUP_RECORDS, DEFAULT_GROUP_MILLIS);
+	}
+	
+	/**
+	 * Restore the newest snapshot, if there is one, and delete the
+	 * segments and snapshots before it and any snapshot left half
+	 * written.
+	 * 
+	 * @throws IOException if the newest snapshot can't be read or does
+	 * not fit the translator
+	 */
+	private void restore() throws IOException {
+		
+		for (File file : directory.listFiles()) {
+			if (file.getName().startsWith(SNAPSHOT_PREFIX) &&
+				file.getName().endsWith(".tmp"))
+				file.delete();
+		}
+		
+		List<Long> positions = fileNumbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+		if (positions.isEmpty()) return;
+		
+		long newest = positions.get(positions.size()-1);
+		Snapshot snapshot = Snapshot.read(snapshotFile(newest));
+		if (snapshot.getPosition() != newest)
+			throw new IOException(snapshotFile(newest) + " is misnamed");
+		snapshot.restore(ledger, translator);
+		snapshotPosition = newest;
+		snapshotStarted = newest;
+		compact(newest);
+	}
+	
+	/**
+	 * Replay every segment of the journal in order, and make the last
+	 * one the segment to append to. Drop everything from the first
+	 * missing or torn record on.
+	 */
+	private void replay() throws IOException {
+		
+		List<Long> starts = segmentStarts();
+		long next = snapshotPosition >= 0 ? snapshotPosition :
+			starts.isEmpty() ? 0 : starts.get(0);
+		// skip segments in the snapshot that could not be deleted
+		int i = 0;
+		while (i < starts.size() && starts.get(i) < next) i++;
+		for (; i < starts.size(); i++) {
+			
+			// a gap means the records after it follow lost ones
+			long start = starts.get(i);
+			if (start != next) break;
+			
+			MappedByteBuffer records = map(start, -1);
+			int numRecords = records.capacity() / RECORD_SIZE;
+			int valid = replay(records, start);
+			numReplayed += valid;
+			numTruncated += clear(records, valid, numRecords);
+			next = start + valid;
+			
+			// a segment is left short when the next record would not fit,
+			// and the next segment starts right after its last record
+			boolean last = i+1 == starts.size() || starts.get(i+1) != next;
+			if (last && valid < numRecords) {
+				segmentStart = start;
+				segment = records;
+				capacity = numRecords;
+				slot = valid;
+			}
+			if (last) {
+				i++;
+				break;
+			}
+		}
+		
+		// the rest are past the end of the journal
+		for (; i < starts.size(); i++) {
+			MappedByteBuffer records = map(starts.get(i), -1);
+			numTruncated += clear(records, 0, records.capacity() / RECORD_SIZE);
+			if (!segmentFile(starts.get(i)).delete())
+				throw new IOException("Can't truncate " + segmentFile(starts.get(i)));
+		}
+		
+		if (segment == null) startSegment(next);
+	}
+	
+	/**
+	 * Replay the records of one segment, up to the first one missing or
+	 * torn.
+	 * 
+	 * @param records is a MappedByteBuffer: the segment
+	 * @param start is a long: the number of the first record of the
+	 * segment in the journal
+	 * @throws IOException if a record does not fit the translator
+	 * @return an int: the number of records replayed
+	 */
+	private int replay(MappedByteBuffer records, long start)
+			throws IOException {
+		
+		SymbolTable[] tables = {SymbolTable.GLOBAL, translator.getSymbols()};
+		// the live id of each journaled id of each table, in this segment
+		int[][] ids = {new int[64], new int[64]};
+		StringBuilder word = new StringBuilder();
+		int numRecords = records.capacity() / RECORD_SIZE;
+		
+		int r, at, table, id;
+		byte type;
+		for (r = 0; r < numRecords; r++) {
+			
+			at = r * RECORD_SIZE;
+			type = records.get(at);
+			if (type == 0 ||
+				records.getInt(at + CHECKSUM) != checksum(records, at, start + r))
+				break;
+			
+			table = records.get(at + 1);
+			id = records.getInt(at + 4);
+			try {
+				switch (type) {
+				case SYMBOL_PART:
+				case SYMBOL:
+					for (int c = 0; c < records.getShort(at + 2); c++)
+						word.append(records.getChar(at + 8 + 2*c));
+					if (type == SYMBOL_PART) break;
+					if (id >= ids[table].length)
+						ids[table] = Arrays.copyOf(ids[table],
+								Math.max(id+1, 2*ids[table].length));
+					// 0 means unknown, so keep ids one up
+					ids[table][id] = tables[table].intern(word) + 1;
+					word.setLength(0);
+					break;
+				case PAIR:
+					translator.pair(liveId(ids, table, id), records.getInt(at + 8));
+					break;
+				case DECOUPLE:
+					translator.decouple(liveId(ids, table, id), records.getInt(at + 8));
+					break;
+				case KNOW:
+					translator.knowId(liveId(ids, table, id));
+					break;
+				case PRICE:
+					ledger.recordPrices(liveId(ids, LEDGER_TABLE, id),
+							records.getInt(at + 8), records.getInt(at + 12),
+							records.get(at + 1) != 0);
+					break;
+				default:
+					throw new IOException("Unknown record type " + type);
+				}
+			}
+			catch (RuntimeException ex) {
+				throw new IOException("Record " + (start + r) + " of the "
+						+ "journal does not fit the translator", ex);
+			}
+		}
+		
+		return r;
+	}
+	
+	private static int liveId(int[][] ids, int table, int id) {
+		if (id < 0 || id >= ids[table].length || ids[table][id] == 0)
+			throw new IllegalArgumentException("Symbol " + id + " undefined");
+		return ids[table][id] - 1;
+	}
+	
+	/**
+	 * Zero the records of a segment from one slot on, forcing them to
+	 * disk if any were not empty.
+	 * 
+	 * @return an int: the number of records that were not empty
+	 */
+	private static int clear(MappedByteBuffer records, int from, int to) {
+		
+		int numCleared = 0;
+		for (int r = from; r < to; r++) {
+			if (records.getLong(r * RECORD_SIZE) == 0 &&
+				records.getLong(r * RECORD_SIZE + CHECKSUM - 4) == 0) continue;
+			for (int b = 0; b < RECORD_SIZE; b += 8)
+				records.putLong(r * RECORD_SIZE + b, 0);
+			numCleared++;
+		}
+		if (numCleared > 0) records.force();
+		
+		return numCleared;
+	}
+	
+	/**
+	 * Journal that the translator paired an intergal numeral with a
+	 * roman numeral.
+	 * 
+	 * @param symbols is a SymbolTable: the translator's table
+	 * @param id is an int: the id of the intergal numeral
+	 * @param rank is an int: the rank of the roman numeral
+	 */
+	synchronized void logPair(SymbolTable symbols, int id, int rank) {
+		// a translator may log after reading the journal just before it
+		// was closed; it is no longer journaled then
+		if (!closed) append(PAIR, tableOf(symbols), id, rank, 0);
+	}
+	
+	synchronized void logDecouple(SymbolTable symbols, int id, int rank) {
+		if (!closed) append(DECOUPLE, tableOf(symbols), id, rank, 0);
+	}
+	
+	synchronized void logKnow(SymbolTable symbols, int id) {
+		if (!closed) append(KNOW, tableOf(symbols), id, 0, 0);
+	}
+	
+	/**
+	 * Journal that the ledger recorded a commodity declaration. Callers
+	 * hold the journal while recording the prices and journaling them,
+	 * so the journal has the declarations in the order they were made.
+	 * 
+	 * @param commodityId is an int: the id of the commodity
+	 * @param aPrice is an int: the Credits paid
+	 * @param aAmnt is an int: the units bought
+	 * @param overwrite is a boolean: whether the prices overwrote any
+	 * prices in the ledger
+	 */
+	void logPrices(int commodityId, int aPrice, int aAmnt,
+			boolean overwrite) {
+		append(PRICE, overwrite ? 1 : 0, commodityId, aPrice, aAmnt);
+	}
+	
+	/**
+	 * Determine whether the journal is closed. A caller holding the 
+	 * journal can rely on the answer until it lets go.
+	 * 
+	 * @return a boolean: true if the journal is closed
+	 */
+	synchronized boolean isClosed() {
+		return closed;
+	}
+	
+	private int tableOf(SymbolTable symbols) {
+		return symbols == SymbolTable.GLOBAL ? LEDGER_TABLE : TRANSLATOR_TABLE;
+	}
+	
+	/**
+	 * Append a record, after the word of the id it refers to if the
+	 * word is not in the segment yet, and commit if a group is complete.
+	 */
+	private void append(byte type, int flag, int id, int first, int second) {
+		
+		if (closed) throw new IllegalStateException("Journal is closed");
+		
+		int table = type == PRICE ? LEDGER_TABLE : flag;
+		String word = (table == LEDGER_TABLE ? 
+				SymbolTable.GLOBAL : translator.getSymbols()).symbolOf(id);
+		int numParts = (word.length() + CHARS_PER_RECORD - 1) / CHARS_PER_RECORD;
+		if (numParts + 1 > capacity)
+			throw new IllegalArgumentException("Word " + word + 
+					" is too long to journal");
+		
+		// keep a word and the record using it in one segment
+		if (slot + numParts + 1 > capacity) startNextSegment();
+		
+		int at;
+		if (!journaled[table].get(id)) {
+			for (int from = 0, count; from < word.length(); from += count) {
+				count = Math.min(CHARS_PER_RECORD, word.length() - from);
+				at = slot++ * RECORD_SIZE;
+				segment.put(at, from + count < word.length() ? SYMBOL_PART : SYMBOL);
+				segment.put(at + 1, (byte)table);
+				segment.putShort(at + 2, (short)count);
+				segment.putInt(at + 4, id);
+				for (int c = 0; c < count; c++)
+					segment.putChar(at + 8 + 2*c, word.charAt(from + c));
+				seal(at);
+			}
+			journaled[table].set(id);
+		}
+		
+		at = slot++ * RECORD_SIZE;
+		segment.put(at, type);
+		segment.put(at + 1, (byte)flag);
+		segment.putInt(at + 4, id);
+		segment.putInt(at + 8, first);
+		segment.putInt(at + 12, second);
+		seal(at);
+		
+		if (++uncommitted >= groupRecords) {
+			uncommitted = 0;
+			segment.force();
+		}
+		
+		// snapshot when due, unless the last is still being written
+		if (snapshotRecords > 0 &&
+			segmentStart + slot - Math.max(snapshotStarted, 0) >= snapshotRecords &&
+			(pendingSnapshot == null || pendingSnapshot.isDone()))
+			snapshot();
+	}
+	
+	/**
+	 * Force the segment to disk, and start the next one after its last
+	 * record, leaving any free slots of this one empty.
+	 */
+	private void startNextSegment() {
+		
+		segment.force();
+		try {
+			startSegment(segmentStart + slot);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+	
+	/**
+	 * Write the checksum of a record, last, so a torn record fails it.
+	 */
+	private void seal(int at) {
+		segment.putInt(at + CHECKSUM,
+				checksum(segment, at, segmentStart + at / RECORD_SIZE));
+	}
+	
+	/**
+	 * Map a new, empty segment and append to it from then on.
+	 * 
+	 * @param start is a long: the number of its first record in the
+	 * journal
+	 */
+	private void startSegment(long start) throws IOException {
+		segment = map(start, segmentRecords);
+		segmentStart = start;
+		capacity = segment.capacity() / RECORD_SIZE;
+		slot = 0;
+		journaled[LEDGER_TABLE].clear();
+		journaled[TRANSLATOR_TABLE].clear();
+	}
+	
+	/**
+	 * Hash a record's bytes before its checksum and its number in the
+	 * journal, so a record left over from another place does not pass.
+	 */
+	private static int checksum(MappedByteBuffer records, int at, long number) {
+		long h = (number + 1) * 0x9E3779B97F4A7C15L;
+		h = (h ^ records.getLong(at)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ records.getLong(at + 8)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ records.getLong(at + 16)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ records.getInt(at + 24)) * 0x94D049BB133111EBL;
+		return (int)(h ^ (h >>> 32));
+	}
+	
+	/**
+	 * Map a segment file into memory, making it if it does not exist.
+	 * 
+	 * @param start is a long: the number of its first record
+	 * @param numRecords is an int: the number of records to make it
+	 * hold, or -1 to map it at the size it is
+	 */
+	private MappedByteBuffer map(long start, int numRecords)
+			throws IOException {
+		
+		FileChannel channel = FileChannel.open(segmentFile(start).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			long size = numRecords < 0 ? channel.size() :
+				(long)numRecords * RECORD_SIZE;
+			size = Math.min(size - size % RECORD_SIZE,
+					(long)(Integer.MAX_VALUE / RECORD_SIZE) * RECORD_SIZE);
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		finally {
+			// the mapping stays valid after the channel is closed
+			channel.close();
+		}
+	}
+	
+	File segmentFile(long start) {
+		return new File(directory, String.format("%s%019d%s", PREFIX, start, SUFFIX));
+	}
+	
+	/**
+	 * Get the numbers of the first records of the segment files in the
+	 * journal directory, in order.
+	 */
+	List<Long> segmentStarts() {
+		return fileNumbers(PREFIX, SUFFIX);
+	}
+	
+	/**
+	 * Get the numbers of the files in the journal directory named with
+	 * a prefix, a number and a suffix, in order.
+	 */
+	private List<Long> fileNumbers(String prefix, String suffix) {
+		
+		List<Long> numbers = new ArrayList<Long>();
+		String[] names = directory.list();
+		if (names == null) return numbers;
+		for (String name : names) {
+			if (!name.startsWith(prefix) || !name.endsWith(suffix)) continue;
+			try {
+				numbers.add(Long.parseLong(name.substring(prefix.length(),
+						name.length() - suffix.length())));
+			}
+			catch (NumberFormatException ex) {
+				// not one of ours
+			}
+		}
+		Collections.sort(numbers);
+		
+		return numbers;
+	}
+	
+	File snapshotFile(long position) {
+		return new File(directory, String.format("%s%019d%s",
+				SNAPSHOT_PREFIX, position, SNAPSHOT_SUFFIX));
+	}
+	
+	/**
+	 * Snapshot the ledger and translator in the background, then delete
+	 * the segments and snapshots the snapshot makes unneeded.
+	 * 
+	 * The snapshot is of every record journaled so far: the journal
+	 * starts a new segment, and copies the translator's pairings before
+	 * it returns, so the translator must not be changed by another thread
+	 * meanwhile. Copying the price book and writing the snapshot are done
+	 * in the background, without holding the journal.
+	 * 
+	 * @throws IllegalStateException if the journal is closed
+	 * @return a Future of File: the snapshot file, once written
+	 */
+	public synchronized Future<File> snapshot() {
+		
+		if (closed) throw new IllegalStateException("Journal is closed");
+		
+		if (slot > 0) startNextSegment();
+		final Snapshot pairings = new Snapshot(segmentStart, translator);
+		snapshotStarted = segmentStart;
+		
+		if (snapshotter == null) {
+			snapshotter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "Journal snapshot");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		pendingSnapshot = snapshotter.submit(new Callable<File>() {
+			@Override
+			public File call() throws IOException {
+				Snapshot snapshot = pairings.withPrices(ledger);
+				File file = snapshotFile(snapshot.getPosition());
+				snapshot.write(file);
+				// only a snapshot on disk moves the position
+				synchronized (Journal.this) {
+					snapshotPosition = 
+							Math.max(snapshotPosition, snapshot.getPosition());
+				}
+				compact(snapshot.getPosition());
+				return file;
+			}
+		});
+		
+		return pendingSnapshot;
+	}
+	
+	/**
+	 * Delete the segments and snapshots before a snapshot. A file that
+	 * can't be deleted now (e.g. a segment still mapped, on some
+	 * systems) is deleted when the journal is next opened.
+	 * 
+	 * @param position is a long: the position of the snapshot
+	 */
+	private void compact(long position) {
+		
+		for (long start : fileNumbers(PREFIX, SUFFIX))
+			if (start < position) segmentFile(start).delete();
+		for (long older : fileNumbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX))
+			if (older < position) snapshotFile(older).delete();
+	}
+	
+	/**
+	 * Set how often to snapshot the ledger and translator.
+	 * 
+	 * If writing a snapshot fails, the journal keeps the segments it
+	 * would have made unneeded, and the next snapshot tries again.
+	 * 
+	 * @param records is a long: the number of records to journal between
+	 * snapshots, or 0 to snapshot only when snapshot is called
+	 * @throws IllegalArgumentException if records is negative
+	 */
+	public synchronized void setSnapshotRecords(long records) {
+		if (records < 0)
+			throw new IllegalArgumentException("Can't snapshot every " +
+					records + " records");
+		this.snapshotRecords = records;
+	}
+	
+	public synchronized long getSnapshotRecords() {
+		return snapshotRecords;
+	}
+	
+	/**
+	 * Get the position of the newest snapshot written: the number of the
+	 * first record not in it. A snapshot still being written, or that 
+	 * failed to be written, does not count.
+	 * 
+	 * @return a long: the position, or -1 if there is no snapshot
+	 */
+	public synchronized long getSnapshotPosition() {
+		return snapshotPosition;
+	}
+	
+	/**
+	 * Set how often records are forced to disk: after every so many
+	 * records, and every so many milliseconds if any were appended.
+	 * 
+	 * @param records is an int: the number of records in a group; 1
+	 * forces every record to disk before it is recorded
+	 * @param millis is a long: the milliseconds between commits, or 0 to
+	 * commit only by the number of records
+	 * @throws IllegalArgumentException if records is less than 1 or
+	 * millis is negative
+	 */
+	public synchronized void setGroupCommit(int records, long millis) {
+		
+		if (records < 1 || millis < 0)
+			throw new IllegalArgumentException("Can't commit every " +
+					records + " records or " + millis + " ms");
+		
+		this.groupRecords = records;
+		this.groupMillis = millis;
+		if (committer != null) committer.cancel();
+		committer = null;
+		if (millis == 0 || closed) return;
+		
+		committer = new Timer("Journal commit", true);
+		committer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				commit();
+			}
+		}, millis, millis);
+	}
+	
+	public int getGroupRecords() {
+		return groupRecords;
+	}
+	
+	public long getGroupMillis() {
+		return groupMillis;
+	}
+	
+	/**
+	 * Force every record appended so far to disk.
+	 */
+	public void commit() {
+		
+		MappedByteBuffer records;
+		synchronized (this) {
+			if (closed || uncommitted == 0) return;
+			uncommitted = 0;
+			records = segment;
+		}
+		// appending can go on while the pages are written
+		records.force();
+	}
+	
+	/**
+	 * Commit the journal, finish writing any snapshot, and stop
+	 * journaling the ledger and translator.
+	 */
+	@Override
+	public void close() {
+		
+		ExecutorService snapshotter;
+		synchronized (this) {
+			if (closed) return;
+			if (committer != null) committer.cancel();
+			segment.force();
+			ledger.journal = null;
+			translator.journal = null;
+			closed = true;
+			snapshotter = this.snapshotter;
+		}
+		
+		// wait without holding the journal, which a snapshot being 
+		// written takes to move the snapshot position
+		if (snapshotter == null) return;
+		snapshotter.shutdown();
+		try {
+			snapshotter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException ex) {
+			// the snapshot is written, or is not, all at once
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Get the number of records in the journal.
+	 * 
+	 * @return a long: the number of records, including those holding
+	 * words
+	 */
+	public synchronized long getNumRecords() {
+		return segmentStart + slot;
+	}
+	
+	/**
+	 * Get the number of records replayed when the journal was opened.
+	 * 
+	 * @return a long: the number of records replayed
+	 */
+	public long getNumReplayed() {
+		return numReplayed;
+	}
+	
+	/**
+	 * Get the number of records dropped when the journal was opened
+	 * because they were torn or came after a torn or missing record.
+	 * 
+	 * @return a long: the number of records dropped
+	 */
+	public long getNumTruncated() {
+		return numTruncated;
+	}
+	
+	public File getDirectory() {
+		return directory;
+	}
+}
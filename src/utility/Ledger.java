@@ -1,23 +1,71 @@
 package utility;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import notes.CommodityDecl;
+import notes.SymbolTable;
 
 /**
  * Bookkeep information about prices of various commodities.
  * 
  * Prices are reported in credits and/or intergalactic currency.
  * 
+ * Commodities are kept by their ids in the global symbol table, so the
+ * price book is an array indexed by id, and a commodity declaration or
+ * query finds its prices without hashing the commodity's name.
+ * 
+ * Credit prices are kept exactly, as a fraction of two longs (the 
+ * Credits paid over the units bought), so a price is never rounded 
+ * until it is formatted, and pricing an amount of a commodity for a 
+ * query is done on longs.
+ * 
+ * A Ledger is safe to use from any number of threads at once. The prices
+ * of a commodity are one immutable PricePair, swapped in whole with a
+ * compare-and-set, so readers never lock or wait and never see the 
+ * credit price of one declaration with the intergal price of another.
+ * Writers of an unjournaled ledger never lock, only retry when another
+ * writer changed the same commodity first. While the ledger is 
+ * journaled, recordCommDecl holds the journal to record and journal 
+ * each declaration, so writers record declarations one at a time (see
+ * Journal); readers still never lock. The translator must not be 
+ * changed while prices are being recorded.
+ * 
+ * A Ledger can also keep the history of every price declared for each 
+ * commodity (see setKeepHistory and PriceHistory), numbered in the order
+ * declarations are recorded.
+ * 
  * @author ryanwilliamconnor
  *
  */
 public class Ledger {
 
-	private Map<String, PricePair> priceBook;
+	// the prices of each commodity by its id, in chunks of CHUNK_SIZE ids
+	// made on first write, so the book never has to be copied to grow;
+	// a chunk or slot is null for no entry
+	private volatile AtomicReferenceArray<AtomicReferenceArray<PricePair>> 
+		priceBook;
 	Translator translator;
+	// the price history of each commodity by its id, chunked the same way
+	private final AtomicReferenceArray<AtomicReferenceArray<PriceHistory>> 
+		histories;
+	private volatile boolean keepHistory;
+	// the sequence number of the last declaration recorded in a history
+	private final AtomicLong sequence;
+	// the journal keeping the ledger on disk, if any; see Journal
+	volatile Journal journal;
+	
+	private static final int CHUNK_BITS = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int MAX_CHUNKS = 1 << 14;
+	// the highest commodity id a ledger can hold prices for
+	public static final int MAX_COMMODITY_ID = MAX_CHUNKS*CHUNK_SIZE - 1;
 	
 	/**
 	 * Create a new Ledger.
@@ -26,42 +74,255 @@ public class Ledger {
 	 * knowledge and services to associate with this Ledger
 	 */
 	public Ledger(Translator translator) {
-		this.priceBook = new HashMap<String, PricePair>();
+		this.priceBook = 
+				new AtomicReferenceArray<AtomicReferenceArray<PricePair>>(MAX_CHUNKS);
 		this.translator = translator;
+		this.histories = 
+				new AtomicReferenceArray<AtomicReferenceArray<PriceHistory>>(MAX_CHUNKS);
+		this.keepHistory = false;
+		this.sequence = new AtomicLong();
+		this.journal = null;
 	}
 	
+	/**
+	 * Get the prices of every commodity in the ledger.
+	 * 
+	 * Each commodity's prices are as of some moment, but the book as a 
+	 * whole is not, if prices are being recorded while it is copied.
+	 * 
+	 * @return a map of string to PricePair: a copy of the price book,
+	 * keyed by the canonical string of each commodity
+	 */
 	public Map<String, PricePair> getPriceBook() {
-		return priceBook;
+		
+		Map<String, PricePair> book = new HashMap<String, PricePair>();
+		AtomicReferenceArray<AtomicReferenceArray<PricePair>> chunks = priceBook;
+		AtomicReferenceArray<PricePair> chunk;
+		PricePair pair;
+		for (int c = 0; c < MAX_CHUNKS; c++) {
+			if ((chunk = chunks.get(c)) == null) continue;
+			for (int slot = 0; slot < CHUNK_SIZE; slot++) {
+				if ((pair = chunk.get(slot)) != null) 
+					book.put(SymbolTable.GLOBAL.symbolOf(c*CHUNK_SIZE + slot), pair);
+			}
+		}
+		
+		return book;
 	}
 	
 	public void createLedgerEntry(String commodity) {
-		priceBook.put(commodity, new PricePair(null, null));
+		putEntry(SymbolTable.GLOBAL.intern(commodity), new PricePair((BigDecimal)null, null));
 	}
 	
+	/**
+	 * Replace the price book with the given prices, all at once. Prices
+	 * being recorded at the same time may go to the old book.
+	 * 
+	 * @param priceBook is a map of string to PricePair: the prices of 
+	 * each commodity
+	 */
 	public void setPriceBook(Map<String, PricePair> priceBook) {
-		this.priceBook = priceBook;
+		
+		AtomicReferenceArray<AtomicReferenceArray<PricePair>> chunks = 
+				new AtomicReferenceArray<AtomicReferenceArray<PricePair>>(MAX_CHUNKS);
+		for (Map.Entry<String, PricePair> entry : priceBook.entrySet()) {
+			int id = SymbolTable.GLOBAL.intern(entry.getKey());
+			chunkOf(chunks, id).set(id & CHUNK_MASK, entry.getValue());
+		}
+		
+		this.priceBook = chunks;
 	}
 	
 	public void setCreditPrice(String commodity, BigDecimal price) {
-		if (!priceBook.containsKey(commodity)) createLedgerEntry(commodity);
-		PricePair pair = priceBook.get(commodity);
-		pair.setCreditPrice(price);
-		priceBook.put(commodity, pair);
+		
+		int id = SymbolTable.GLOBAL.intern(commodity);
+		AtomicReferenceArray<PricePair> chunk = chunkOf(priceBook, id);
+		int slot = id & CHUNK_MASK;
+		PricePair pair, updated;
+		do {
+			pair = chunk.get(slot);
+			updated = new PricePair(price, 
+					pair == null ? null : pair.getIntergalPrice());
+		} while (!chunk.compareAndSet(slot, pair, updated));
 	}
 	
 	public void setIntergalPrice(String commodity, String price) {
-		if (!priceBook.containsKey(commodity)) createLedgerEntry(commodity);
-		PricePair pair = priceBook.get(commodity);
-		pair.setIntergalPrice(price);
-		priceBook.put(commodity, pair);
+		
+		int id = SymbolTable.GLOBAL.intern(commodity);
+		AtomicReferenceArray<PricePair> chunk = chunkOf(priceBook, id);
+		int slot = id & CHUNK_MASK;
+		PricePair pair, updated;
+		do {
+			pair = chunk.get(slot);
+			updated = pair == null ? 
+					new PricePair((BigDecimal)null, price) : 
+					pair.withIntergalPrice(price);
+		} while (!chunk.compareAndSet(slot, pair, updated));
 	}
 	
 	public BigDecimal getCreditPrice(String commodity) {
-		return priceBook.get(commodity).getCreditPrice();
+		return getCreditPrice(SymbolTable.GLOBAL.idOf(commodity));
+	}
+	
+	/**
+	 * Get the unit price of a commodity in Credits by its id.
+	 * 
+	 * @param commodityId is an int: the id of the commodity in the global
+	 * symbol table
+	 * @return a BigDecimal: the unit price, or null if there is none
+	 */
+	public BigDecimal getCreditPrice(int commodityId) {
+		PricePair pair = getEntry(commodityId);
+		return pair == null ? null : pair.getCreditPrice();
+	}
+	
+	/**
+	 * Get the price of an amount of a commodity in Credits, formatted 
+	 * as answers to queries report it. See formatCredits.
+	 * 
+	 * @param commodityId is an int: the id of the commodity in the global
+	 * symbol table
+	 * @param amount is a long: the amount of the commodity
+	 * @return a string: the price of the amount, or null if the commodity
+	 * has no credit price
+	 */
+	public String formatCreditPrice(int commodityId, long amount) {
+		
+		PricePair pair = getEntry(commodityId);
+		if (pair == null || !pair.hasCreditPrice()) return null;
+		
+		long numerator = pair.getCreditNumerator();
+		long denominator = pair.getCreditDenominator();
+		long product;
+		try {
+			product = Math.multiplyExact(numerator, amount);
+		}
+		catch (ArithmeticException ex) {
+			return formatCredits(BigDecimal.valueOf(numerator).multiply(
+					BigDecimal.valueOf(amount)), denominator);
+		}
+		
+		return formatCredits(product, denominator);
+	}
+	
+	/**
+	 * Format a number of Credits given as a fraction, rounded half even 
+	 * to at most two decimals, without trailing zeros (like the pattern 
+	 * '#.##' of a DecimalFormat, but exact, and never '-0').
+	 * 
+	 * @param numerator is a long: the numerator of the number of Credits
+	 * @param denominator is a long: the denominator, more than 0
+	 * @throws IllegalArgumentException if the denominator is not more than 0
+	 * @return a string: the formatted number of Credits
+	 */
+	public static String formatCredits(long numerator, long denominator) {
+		
+		if (denominator <= 0)
+			throw new IllegalArgumentException("Denominator must be more "
+					+ "than 0, not " + denominator);
+		// hundredths of the remainder could overflow
+		if (denominator > Long.MAX_VALUE / 100 || numerator == Long.MIN_VALUE)
+			return formatCredits(BigDecimal.valueOf(numerator), denominator);
+		
+		boolean negative = numerator < 0;
+		if (negative) numerator = -numerator;
+		
+		long whole = numerator / denominator;
+		long scaledRem = (numerator % denominator) * 100;
+		long hundredths = scaledRem / denominator;
+		long twiceLeft = 2 * (scaledRem % denominator);
+		if (twiceLeft > denominator || 
+			(twiceLeft == denominator && (hundredths & 1) == 1))
+			hundredths++;
+		if (hundredths == 100) {
+			whole++;
+			hundredths = 0;
+		}
+		
+		StringBuilder credits = new StringBuilder(24);
+		if (negative && (whole != 0 || hundredths != 0)) credits.append('-');
+		credits.append(whole);
+		if (hundredths != 0) {
+			credits.append('.').append((char)('0' + hundredths / 10));
+			if (hundredths % 10 != 0) 
+				credits.append((char)('0' + hundredths % 10));
+		}
+		
+		return credits.toString();
+	}
+	
+	/**
+	 * Format a number of Credits too big to work on as longs. See 
+	 * formatCredits(long, long).
+	 */
+	private static String formatCredits(BigDecimal numerator, 
+			long denominator) {
+		
+		BigDecimal credits = numerator.divide(BigDecimal.valueOf(denominator), 
+				2, RoundingMode.HALF_EVEN).stripTrailingZeros();
+		if (credits.signum() == 0) return "0";
+		
+		return credits.scale() < 0 ? 
+				credits.setScale(0).toPlainString() : credits.toPlainString();
 	}
 	
 	public String getIntergalPrice(String commodity) {
-		return priceBook.get(commodity).getIntergalPrice();
+		PricePair pair = getEntry(SymbolTable.GLOBAL.idOf(commodity));
+		return pair == null ? null : pair.getIntergalPrice();
+	}
+	
+	/**
+	 * Determine whether the ledger has an entry for a commodity.
+	 * 
+	 * @param commodityId is an int: the id of the commodity in the global
+	 * symbol table, or -1 for a commodity that was never interned
+	 * @return a boolean: true if the commodity has an entry
+	 */
+	public boolean hasEntry(int commodityId) {
+		return getEntry(commodityId) != null;
+	}
+	
+	private PricePair getEntry(int commodityId) {
+		
+		if (commodityId < 0 || commodityId > MAX_COMMODITY_ID) return null;
+		
+		AtomicReferenceArray<PricePair> chunk = 
+				priceBook.get(commodityId >>> CHUNK_BITS);
+		return chunk == null ? null : chunk.get(commodityId & CHUNK_MASK);
+	}
+	
+	private void putEntry(int commodityId, PricePair pair) {
+		chunkOf(priceBook, commodityId).set(commodityId & CHUNK_MASK, pair);
+	}
+	
+	/**
+	 * Get the chunk of a price book holding a commodity id, making the 
+	 * chunk if it has not been made.
+	 * 
+	 * @param chunks is an AtomicReferenceArray: the chunks of the book
+	 * (or of the histories)
+	 * @param commodityId is an int: the id of the commodity
+	 * @throws IllegalArgumentException if the id is over MAX_COMMODITY_ID
+	 * @return an AtomicReferenceArray: the chunk with the id's slot
+	 */
+	private static <T> AtomicReferenceArray<T> chunkOf(
+			AtomicReferenceArray<AtomicReferenceArray<T>> chunks, 
+			int commodityId) {
+		
+		if (commodityId < 0 || commodityId > MAX_COMMODITY_ID)
+			throw new IllegalArgumentException("Commodity id " + commodityId 
+					+ " is outside 0 to " + MAX_COMMODITY_ID);
+		
+		int c = commodityId >>> CHUNK_BITS;
+		AtomicReferenceArray<T> chunk = chunks.get(c);
+		if (chunk == null) {
+			// another writer may make it first; everyone uses the one set
+			chunks.compareAndSet(c, null, 
+					new AtomicReferenceArray<T>(CHUNK_SIZE));
+			chunk = chunks.get(c);
+		}
+		
+		return chunk;
 	}
 	
 	/**
@@ -87,108 +348,362 @@ public class Ledger {
 	 * information to record in the ledger.
 	 * @throws IllegalArgumentException if cDec is null
 	 * @param overwrite is a boolean: pass true to overwrite any existing
-	 * prices, false to overwrite only null prices
+	 * prices, false to overwrite only null prices. Either way, if the 
+	 * ledger keeps history, the declared price is added to the history.
+	 * If the ledger is journaled, the declaration is journaled too.
+	 * @return true if the prices were recorded, false if the intergal 
+	 * numeral in the declaration could not be translated
 	 */
-	public void recordCommDecl(CommodityDecl cDec, boolean overwrite) {
+	public boolean recordCommDecl(CommodityDecl cDec, boolean overwrite) {
 		
 		if (cDec == null)
 			throw new IllegalArgumentException("cDec cannot be null");
 		
-		PricePair prices = calculateUnitPrices(cDec);
-		writeUnitPrices(cDec.getCommodity(), prices, overwrite);
+		int aAmnt = translator.tryIntergalNumToArabic(cDec.getIntergalNum());
+		if (aAmnt < 0) return false;
+		
+		int id = cDec.getCommodityId();
+		int aPrice = cDec.getArabicNum();
+		Journal journal = this.journal;
+		if (journal == null) {
+			recordPrices(id, aPrice, aAmnt, overwrite);
+			return true;
+		}
+		
+		// record and journal together, so the journal has declarations 
+		// in the order they were recorded
+		synchronized (journal) {
+			// the journal may have been closed since it was read, and
+			// then the ledger is no longer journaled
+			if (!journal.isClosed()) {
+				recordPrices(id, aPrice, aAmnt, overwrite);
+				journal.logPrices(id, aPrice, aAmnt, overwrite);
+				return true;
+			}
+		}
+		
+		recordPrices(id, aPrice, aAmnt, overwrite);
+		return true;
+	}
+	
+	/**
+	 * Record the price of an amount of a commodity, as declared.
+	 * 
+	 * @param commodityId is an int: the id of the commodity
+	 * @param aPrice is an int: the Credits paid
+	 * @param aAmnt is an int: the units bought
+	 * @param overwrite is a boolean: pass true to overwrite any existing
+	 * prices, false to overwrite only null prices
+	 */
+	void recordPrices(int commodityId, int aPrice, int aAmnt, 
+			boolean overwrite) {
+		
+		writeUnitPrices(commodityId, calculateUnitPrices(aPrice, aAmnt), 
+				overwrite);
+		if (keepHistory && aPrice >= 0 && aAmnt > 0)
+			recordHistory(commodityId, aPrice, aAmnt);
+	}
+	
+	/**
+	 * Add a declared price to the history of a commodity, numbered after
+	 * every declaration recorded in a history before it.
+	 * 
+	 * @param commodityId is an int: the id of the commodity
+	 * @param aPrice is an int: the Credits paid
+	 * @param aAmnt is an int: the units bought
+	 */
+	private void recordHistory(int commodityId, int aPrice, int aAmnt) {
+		
+		AtomicReferenceArray<PriceHistory> chunk = 
+				chunkOf(histories, commodityId);
+		int slot = commodityId & CHUNK_MASK;
+		PriceHistory history = chunk.get(slot);
+		if (history == null) {
+			chunk.compareAndSet(slot, null, new PriceHistory());
+			history = chunk.get(slot);
+		}
+		
+		// number the declaration while holding the history, so each
+		// history's sequence numbers are in order
+		synchronized (history) {
+			history.append(sequence.incrementAndGet(), aPrice, aAmnt);
+		}
+	}
+	
+	/**
+	 * Set whether to keep the history of every price declared for each
+	 * commodity. Only declarations recorded while history is kept are in
+	 * it; turning it off keeps the history already recorded.
+	 * 
+	 * @param keepHistory is a boolean: true to keep price history
+	 */
+	public void setKeepHistory(boolean keepHistory) {
+		this.keepHistory = keepHistory;
+	}
+	
+	public boolean isKeepHistory() {
+		return keepHistory;
+	}
+	
+	/**
+	 * Get the sequence number of the last declaration added to a price
+	 * history, to bound windows of history by.
+	 * 
+	 * @return a long: the sequence number, or 0 if there is none
+	 */
+	public long getSequence() {
+		return sequence.get();
+	}
+	
+	public PriceHistory getPriceHistory(String commodity) {
+		return getPriceHistory(SymbolTable.GLOBAL.idOf(commodity));
+	}
+	
+	/**
+	 * Get the price history of a commodity by its id.
+	 * 
+	 * @param commodityId is an int: the id of the commodity in the global
+	 * symbol table
+	 * @return a PriceHistory: the prices declared for the commodity while 
+	 * history was kept, or null if there are none
+	 */
+	public PriceHistory getPriceHistory(int commodityId) {
+		
+		if (commodityId < 0 || commodityId > MAX_COMMODITY_ID) return null;
+		
+		AtomicReferenceArray<PriceHistory> chunk = 
+				histories.get(commodityId >>> CHUNK_BITS);
+		return chunk == null ? null : chunk.get(commodityId & CHUNK_MASK);
 	}
 	
 	/**
 	 * Write unit prices of a commodity to the ledger.
 	 * 
-	 * @param commodity is a string: the commodity to write prices for
+	 * @param commodityId is an int: the id of the commodity to write 
+	 * prices for
 	 * @param prices is a PricePair: the unit price of the commodity in
 	 * both Credits and intergalactic numerals
 	 * @param overwrite is a boolean: whether to overwrite a price
 	 * if one is already in the ledger for this commodity
 	 */
-	private void writeUnitPrices(String commodity, 
+	private void writeUnitPrices(int commodityId, 
 			PricePair unitPrices, boolean overwrite) {
 		
+		AtomicReferenceArray<PricePair> chunk = 
+				chunkOf(priceBook, commodityId);
+		int slot = commodityId & CHUNK_MASK;
+		
 		if (overwrite) {
-			priceBook.put(commodity, unitPrices);
-		}
-		else {
-			// only add if book price null
-			PricePair bookPrices = priceBook.get(commodity);
-			if (bookPrices.getCreditPrice() == null)
-				bookPrices.setCreditPrice(unitPrices.getCreditPrice());
-			if (bookPrices.getIntergalPrice() == null)
-				bookPrices.setIntergalPrice(unitPrices.getIntergalPrice());
-			priceBook.put(commodity, bookPrices);
+			chunk.set(slot, unitPrices);
+			return;
 		}
+		
+		// only fill in book prices that are null, retrying if another 
+		// writer changed the prices in between
+		PricePair bookPrices, filled;
+		do {
+			bookPrices = chunk.get(slot);
+			filled = bookPrices == null ? 
+					unitPrices : bookPrices.fillIn(unitPrices);
+		} while (filled != bookPrices && 
+				!chunk.compareAndSet(slot, bookPrices, filled));
 	}
 	
 	/**
-	 * Calculate the unit prices of the commodity in the given commodity
-	 * declaration.
+	 * Calculate the unit prices of a commodity from the price of an 
+	 * amount of it, as given in a commodity declaration.
 	 * 
-	 * @param cDec is a CommodityDecl: a statement about the price of
-	 * a certain amount of a commodity
-	 * @return a PricePair: the unit price of the given commodity in both
-	 * intergalactic numerals and Credits
+	 * @param aPrice is an int: the Credits paid
+	 * @param aAmnt is an int: the units bought
+	 * @return a PricePair: the unit price of the commodity in both
+	 * intergalactic numerals and Credits. The intergal price is null if 
+	 * the translator does not know every intergal numeral it needs.
 	 */
-	private PricePair calculateUnitPrices(CommodityDecl cDec) {
+	private PricePair calculateUnitPrices(int aPrice, int aAmnt) {
 	
-		int aPrice = cDec.getArabicNum();
-		String iAmnt = cDec.getIntergalNum();
-		int aAmnt = translator.intergalNumToArabic(iAmnt);
-		BigDecimal aUnitPrice = new BigDecimal((double)aPrice / aAmnt);
-		
 		String iUnitPrice;
-		try {
-			iUnitPrice = translator.arabicNumToIntergal(aUnitPrice.intValue());	
-		}
-		catch (IllegalArgumentException e) {
+		int aUnitPriceInt = aPrice / aAmnt;
+		if (aUnitPriceInt < 1 || 
+			aUnitPriceInt > translator.getSystem().getMaxValue())
 			iUnitPrice = "unit price outside valid range of intergal numerals";
-		}
+		else
+			iUnitPrice = translator.tryArabicNumToIntergal(aUnitPriceInt);
 		
-		return new PricePair(aUnitPrice, iUnitPrice);
+		return new PricePair(aPrice, aAmnt, iUnitPrice);
 	}
 	
 	/**
-	 * A tuple of (BigDecimal:credit price, String:intergalactice price). 
+	 * An immutable tuple of (credit price, String:intergalactice price),
+	 * with the credit price kept exactly as a fraction in lowest terms.
 	 */
-	class PricePair {
+	static final class PricePair {
 		
-		private BigDecimal creditPrice;
-		private String intergalPrice;
+		// the credit price is creditNumerator / creditDenominator, or 
+		// there is none if creditDenominator is 0
+		private final long creditNumerator;
+		private final long creditDenominator;
+		private final String intergalPrice;
+		
+		// the most significant digits, and decimals, of a credit price 
+		// held as a fraction of longs
+		private static final int MAX_PRICE_DIGITS = 18;
+		private static final MathContext PRICE_CONTEXT = 
+				new MathContext(MAX_PRICE_DIGITS, RoundingMode.HALF_EVEN);
 		
 		/**
 		 * Create a new price pair.
 		 * 
-		 * @param creditPrice is a BigDecimal: the credit price
+		 * @param creditPrice is a BigDecimal: the credit price, or null 
+		 * for none
 		 * @param intergalPrice is a string: the intergal numeral price
+		 * @throws IllegalArgumentException if the credit price is too big
+		 * to be held as a fraction of longs
 		 */
 		public PricePair(BigDecimal creditPrice, String intergalPrice) {
-			this.creditPrice = creditPrice;
+			this(fractionOf(creditPrice), intergalPrice);
+		}
+		
+		/**
+		 * Create a new price pair with the credit price as a fraction.
+		 * 
+		 * @param creditNumerator is a long: the Credits paid
+		 * @param creditDenominator is a long: the units bought, more than 0
+		 * @param intergalPrice is a string: the intergal numeral price
+		 * @throws IllegalArgumentException if creditDenominator is not
+		 * more than 0
+		 */
+		public PricePair(long creditNumerator, long creditDenominator, 
+				String intergalPrice) {
+			this(fractionOf(creditNumerator, creditDenominator), intergalPrice);
+		}
+		
+		private PricePair(long[] creditFraction, String intergalPrice) {
+			this.creditNumerator = creditFraction[0];
+			this.creditDenominator = creditFraction[1];
 			this.intergalPrice = intergalPrice;
 		}
 		
+		/**
+		 * Get a credit price as a fraction in lowest terms.
+		 * 
+		 * @param numerator is a long: the Credits paid
+		 * @param denominator is a long: the units bought, more than 0
+		 * @throws IllegalArgumentException if the denominator is not more
+		 * than 0
+		 * @return a long array: the numerator and denominator
+		 */
+		private static long[] fractionOf(long numerator, long denominator) {
+			
+			if (denominator <= 0)
+				throw new IllegalArgumentException("Denominator must be more "
+						+ "than 0, not " + denominator);
+			
+			long gcd = gcd(Math.abs(numerator), denominator);
+			return new long[] {numerator / gcd, denominator / gcd};
+		}
+		
+		/**
+		 * Get a credit price given as a BigDecimal as a fraction in lowest
+		 * terms. A price with more than MAX_PRICE_DIGITS significant digits 
+		 * (like a BigDecimal made from a double), or more than that many 
+		 * decimals, is rounded half even to fit, so it is held approximately.
+		 * 
+		 * @param price is a BigDecimal: the credit price, or null for none
+		 * @throws IllegalArgumentException if the price is too big to be
+		 * held as a fraction of longs
+		 * @return a long array: the numerator and denominator, both 0 if
+		 * the price is null
+		 */
+		private static long[] fractionOf(BigDecimal price) {
+			
+			if (price == null) return new long[2];
+			
+			price = price.round(PRICE_CONTEXT);
+			if (price.scale() > MAX_PRICE_DIGITS)
+				price = price.setScale(MAX_PRICE_DIGITS, RoundingMode.HALF_EVEN);
+			price = price.stripTrailingZeros();
+			if (price.precision() - price.scale() > MAX_PRICE_DIGITS)
+				throw new IllegalArgumentException("Credit price " + price + 
+						" is too big");
+			if (price.scale() < 0) price = price.setScale(0);
+			
+			return fractionOf(price.unscaledValue().longValue(), 
+					Math.round(Math.pow(10, price.scale())));
+		}
+		
+		/**
+		 * Get the credit price as a BigDecimal, exact if it has a finite 
+		 * decimal expansion and rounded to 16 digits if not.
+		 * 
+		 * @return a BigDecimal: the credit price, or null if there is none
+		 */
 		public BigDecimal getCreditPrice() {
-			return creditPrice;
+			if (creditDenominator == 0) return null;
+			return BigDecimal.valueOf(creditNumerator).divide(
+					BigDecimal.valueOf(creditDenominator), MathContext.DECIMAL64);
+		}
+		
+		public boolean hasCreditPrice() {
+			return creditDenominator != 0;
+		}
+		
+		public long getCreditNumerator() {
+			return creditNumerator;
 		}
 		
-		public void setCreditPrice(BigDecimal price) {
-			this.creditPrice = price;			
+		public long getCreditDenominator() {
+			return creditDenominator;
 		}
 		
 		public String getIntergalPrice() {
 			return intergalPrice;
 		}
 		
-		public void setIntergalPrice(String intergalPrice) {
-			this.intergalPrice = intergalPrice;			
+		/**
+		 * Get a pair with this pair's credit price and the given intergal
+		 * price.
+		 * 
+		 * @param intergalPrice is a string: the intergal numeral price
+		 * @return a PricePair: the new pair
+		 */
+		public PricePair withIntergalPrice(String intergalPrice) {
+			return new PricePair(
+					new long[] {creditNumerator, creditDenominator}, intergalPrice);
+		}
+		
+		/**
+		 * Get a pair with this pair's prices, and the other pair's prices
+		 * in place of any this pair does not have.
+		 * 
+		 * @param prices is a PricePair: the prices to fill in from
+		 * @return a PricePair: this pair if it has nothing to fill in, or
+		 * the new pair
+		 */
+		PricePair fillIn(PricePair prices) {
+			
+			boolean fillCredit = !hasCreditPrice() && prices.hasCreditPrice();
+			boolean fillIntergal = 
+					intergalPrice == null && prices.intergalPrice != null;
+			if (!fillCredit && !fillIntergal) return this;
+			
+			PricePair credit = fillCredit ? prices : this;
+			return new PricePair(
+					new long[] {credit.creditNumerator, credit.creditDenominator},
+					fillIntergal ? prices.intergalPrice : intergalPrice);
 		}
 		
 		public String toString() {
 			return "(Intergal: " + intergalPrice + ", Credits: " + 
-					creditPrice + ")";
+					getCreditPrice() + ")";
+		}
+	}
+	
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
 		}
+		return a == 0 ? 1 : Math.abs(a);
 	}
 }
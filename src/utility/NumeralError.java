@@ -0,0 +1,52 @@
+package utility;
+
+/**
+ * Reasons a numeral can fail to translate.
+ *
+ * The Translator's "try" methods report a failure as a negative int
+ * rather than throwing an exception, since valid numerals always
+ * translate to positive ints. Use fromResult to recover the reason.
+ *
+ * @author ryanwilliamconnor
+ *
+ */
+public enum NumeralError {
+
+	EMPTY(-1, "the numeral is empty."),
+	BAD_TOKEN(-2, "contains a char that is not a base roman numeral."),
+	REPEAT_VIOLATION(-3, "a base roman numeral appears too many times."),
+	BAD_SUBTRACTION(-4, "a subtraction breaks the subtraction rules."),
+	UNMAPPED_WORD(-5, "contains a word with no known roman numeral.");
+
+	private static final NumeralError[] BY_CODE =
+		{null, EMPTY, BAD_TOKEN, REPEAT_VIOLATION, BAD_SUBTRACTION,
+		 UNMAPPED_WORD};
+
+	private final int code;
+	private final String description;
+
+	private NumeralError(int code, String description) {
+		this.code = code;
+		this.description = description;
+	}
+
+	/**
+	 * Get the error for the result of a translation.
+	 *
+	 * @param result is an int: the result of a "try" translation
+	 * @return the NumeralError the result stands for, or null if the
+	 * result is a translated value rather than an error
+	 */
+	public static NumeralError fromResult(int result) {
+		if (result >= 0 || -result >= BY_CODE.length) return null;
+		return BY_CODE[-result];
+	}
+
+	public int getCode() {
+		return code;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+}
@@ -0,0 +1,462 @@
+package utility;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An additive-subtractive numeral system (like roman numerals), compiled
+ * from a spec into the tables used to decode and encode its numerals.
+ *
+ * A spec has one line per base numeral, in order of increasing value:
+ *
+ *   symbol value maxInRow [minuend ...]
+ *
+ * where symbol is a single char, maxInRow is how many times the base
+ * numeral may appear in a row, and the minuends are the bigger base
+ * numerals it may be subtracted from (a base numeral with minuends is a
+ * subtractor). Lines may also be separated by ';', and blank lines and
+ * lines starting with '#' are ignored. ROMAN is compiled from ROMAN_SPEC.
+ *
+ * Numerals are decoded under the same strict rules for every system: a
+ * base numeral may be used in at most one addition group and at most one
+ * subtraction, and a subtraction may only use a legal subtractor-minuend
+ * pair. Numerals are encoded greedily from the biggest value down, using
+ * subtractive pairs where they fit, for every value from 1 up to the
+ * first value whose greedy encoding repeats a base numeral too many times.
+ *
+ * A NumeralSystem is immutable, so one can be shared by many Translators.
+ *
+ * @author ryanwilliamconnor
+ *
+ */
+public final class NumeralSystem {
+
+	// the decoder state holds two bits per base numeral in an int
+	public static final int MAX_BASES = 15;
+	// don't build encoding tables bigger than this
+	public static final int MAX_VALUE_LIMIT = 1 << 20;
+
+	public static final String ROMAN_SPEC =
+			"I 1 3 V X\n" +
+			"V 5 1\n" +
+			"X 10 3 L C\n" +
+			"L 50 1\n" +
+			"C 100 3 D M\n" +
+			"D 500 1\n" +
+			"M 1000 3\n";
+	public static final NumeralSystem ROMAN = compile(ROMAN_SPEC);
+
+	// indexed by rank, which orders base numerals by value
+	private final String[] rankToSymbol;
+	private final int[] rankToVal;
+	private final int[] maxInRow;
+	private final boolean[] isSubtractor;
+	// indexed by subtractor rank * numBases + minuend rank
+	private final boolean[] legalSubtraction;
+	// indexed by char
+	private final byte[] charToRank;
+	private final Map<String, Integer> symbolRank;
+	private final int numBases;
+
+	// encoding: numeral tokens (base numerals and subtractive pairs)
+	// from biggest to smallest value
+	private final String[] tokens;
+	private final int[] tokenVals;
+	private final int maxValue;
+	private final int maxLength;
+	private volatile String[] valueToNumeral;
+
+	/**
+	 * Create a numeral system from its parsed spec.
+	 *
+	 * @param symbols is a list of the base numeral chars, by rank
+	 * @param values is a list of the base numeral values, by rank
+	 * @param maxInRows is a list of the repeat limits, by rank
+	 * @param minuends is a list of the minuend chars of each base numeral,
+	 * by rank
+	 * @throws IllegalArgumentException if the spec is not consistent
+	 */
+	private NumeralSystem(List<Character> symbols, List<Integer> values,
+			List<Integer> maxInRows, List<String> minuends) {
+
+		numBases = symbols.size();
+		if (numBases < 1 || numBases > MAX_BASES)
+			throw new IllegalArgumentException("A numeral system needs "
+					+ "between 1 and " + MAX_BASES + " base numerals");
+
+		rankToSymbol = new String[numBases];
+		rankToVal = new int[numBases];
+		maxInRow = new int[numBases];
+		isSubtractor = new boolean[numBases];
+		legalSubtraction = new boolean[numBases*numBases];
+		Map<String, Integer> ranks = new HashMap<String, Integer>();
+
+		char maxChar = 0;
+		for (int i = 0; i < numBases; i++) {
+			rankToSymbol[i] = String.valueOf(symbols.get(i));
+			rankToVal[i] = values.get(i);
+			maxInRow[i] = maxInRows.get(i);
+			if (ranks.put(rankToSymbol[i], i) != null)
+				throw new IllegalArgumentException("Base numeral " +
+						rankToSymbol[i] + " is declared twice");
+			if (rankToVal[i] < 1 || (i > 0 && rankToVal[i] <= rankToVal[i-1]))
+				throw new IllegalArgumentException("Base numeral values must "
+						+ "be positive and increasing");
+			if (maxInRow[i] < 1)
+				throw new IllegalArgumentException("Base numeral " +
+						rankToSymbol[i] + " must be allowed at least once");
+			maxChar = (char)Math.max(maxChar, symbols.get(i));
+		}
+		symbolRank = Collections.unmodifiableMap(ranks);
+
+		charToRank = new byte[maxChar+1];
+		Arrays.fill(charToRank, (byte)-1);
+		for (int i = 0; i < numBases; i++)
+			charToRank[symbols.get(i)] = (byte)i;
+
+		List<String> tokenList = new ArrayList<String>();
+		List<Integer> tokenValList = new ArrayList<Integer>();
+		Integer minuend;
+		for (int i = 0; i < numBases; i++) {
+			for (char c : minuends.get(i).toCharArray()) {
+				minuend = ranks.get(String.valueOf(c));
+				if (minuend == null || minuend <= i)
+					throw new IllegalArgumentException("Minuend " + c + " of "
+							+ rankToSymbol[i] + " is not a bigger base numeral");
+				isSubtractor[i] = true;
+				legalSubtraction[i*numBases + minuend] = true;
+				tokenList.add(rankToSymbol[i] + c);
+				tokenValList.add(rankToVal[minuend] - rankToVal[i]);
+			}
+			tokenList.add(rankToSymbol[i]);
+			tokenValList.add(rankToVal[i]);
+		}
+
+		// sort tokens by decreasing value; base numerals win ties
+		Integer[] order = new Integer[tokenList.size()];
+		for (int i = 0; i < order.length; i++) order[i] = i;
+		final List<Integer> vals = tokenValList;
+		final List<String> toks = tokenList;
+		Arrays.sort(order, (a, b) -> vals.get(a).equals(vals.get(b)) ?
+				toks.get(a).length() - toks.get(b).length() :
+				vals.get(b) - vals.get(a));
+		tokens = new String[order.length];
+		tokenVals = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			tokens[i] = tokenList.get(order[i]);
+			tokenVals[i] = tokenValList.get(order[i]);
+		}
+
+		int max = 0, longest = 0;
+		String numeral;
+		while (max < MAX_VALUE_LIMIT) {
+			numeral = buildNumeral(max+1);
+			if (numeral == null) break;
+			longest = Math.max(longest, numeral.length());
+			max++;
+		}
+		if (max == 0)
+			throw new IllegalArgumentException("The numeral system can't "
+					+ "write 1");
+		maxValue = max;
+		maxLength = longest;
+		valueToNumeral = null;
+	}
+
+	/**
+	 * Compile a numeral system from a spec.
+	 *
+	 * @param spec is a string: the spec, as described for the class
+	 * @throws IllegalArgumentException if the spec is not well formed, and
+	 * NullPointerException if it is null
+	 * @return the compiled numeral system
+	 */
+	public static NumeralSystem compile(String spec) {
+
+		if (spec == null)
+			throw new NullPointerException("Numeral system spec can't be null");
+
+		List<Character> symbols = new ArrayList<Character>();
+		List<Integer> values = new ArrayList<Integer>();
+		List<Integer> maxInRows = new ArrayList<Integer>();
+		List<String> minuends = new ArrayList<String>();
+
+		String[] words;
+		StringBuilder lineMinuends;
+		for (String line : spec.split("[\n;]")) {
+			line = line.trim();
+			if (line.length() < 1 || line.startsWith("#")) continue;
+
+			words = line.split("\\s+");
+			if (words.length < 3 || words[0].length() != 1)
+				throw new IllegalArgumentException("Numeral system spec line '"
+						+ line + "' is not 'symbol value maxInRow [minuend ...]'");
+
+			lineMinuends = new StringBuilder();
+			for (int i = 3; i < words.length; i++) {
+				if (words[i].length() != 1)
+					throw new IllegalArgumentException("Minuend " + words[i] +
+							" is not a single char");
+				lineMinuends.append(words[i]);
+			}
+
+			try {
+				values.add(Integer.parseInt(words[1]));
+				maxInRows.add(Integer.parseInt(words[2]));
+			}
+			catch (NumberFormatException ex) {
+				throw new IllegalArgumentException("Numeral system spec line '"
+						+ line + "' has a value or maxInRow that is not an int");
+			}
+			symbols.add(words[0].charAt(0));
+			minuends.add(lineMinuends.toString());
+		}
+
+		return new NumeralSystem(symbols, values, maxInRows, minuends);
+	}
+
+	/**
+	 * Load and compile a numeral system from a spec, for example a file.
+	 *
+	 * @param reader is a BufferedReader: where to read the spec from
+	 * @throws IOException if the spec can't be read, and
+	 * IllegalArgumentException if it is not well formed
+	 * @return the compiled numeral system
+	 */
+	public static NumeralSystem load(BufferedReader reader)
+			throws IOException {
+
+		StringBuilder spec = new StringBuilder();
+		String line;
+		while ((line = reader.readLine()) != null)
+			spec.append(line).append('\n');
+
+		return compile(spec.toString());
+	}
+
+	/**
+	 * Convert a portion of a character sequence holding a numeral to
+	 * its value in a single pass, without allocating.
+	 *
+	 * @param numeral is a CharSequence holding the numeral
+	 * @param start is an int: the index of the first char of the numeral
+	 * @param end is an int: the index after the last char of the numeral
+	 * @return an int: the value of the numeral if it is well formed,
+	 * or the negative code of a NumeralError if it is not
+	 */
+	public int decode(CharSequence numeral, int start, int end) {
+
+		if (end - start < 1) return NumeralError.EMPTY.getCode();
+
+		int state = 0;
+		int total = 0;
+		int i = start;
+		char base;
+		int rank, nextRank, numInRow;
+
+		while (i < end) {
+
+			base = numeral.charAt(i);
+			rank = rankOfChar(base);
+			if (rank < 0) return NumeralError.BAD_TOKEN.getCode();
+
+			// get number of this numeral in a row
+			numInRow = 1;
+			while (i+numInRow < end && numeral.charAt(i+numInRow) == base)
+				numInRow++;
+
+			nextRank = numInRow == 1 && i+1 < end ?
+					rankOfChar(numeral.charAt(i+1)) : -1;
+
+			state = applyGroup(state, rank, numInRow, nextRank);
+			if (state < 0) return state;
+
+			if (isSubtraction(rank, numInRow, nextRank)) {
+				total += rankToVal[nextRank] - rankToVal[rank];
+				i += 2;
+			}
+			else {
+				total += numInRow * rankToVal[rank];
+				i += numInRow;
+			}
+		}
+
+		return total;
+	}
+
+	/**
+	 * Check one group of a numeral against the state of the numeral
+	 * so far, and apply it to the state if it follows the rules.
+	 *
+	 * A group is either a run of one base numeral (an addition) or a lone
+	 * subtractor followed by a bigger numeral (a subtraction). The state
+	 * is a bitmask recording which base numerals have been used in an
+	 * addition (bit rank) and in a subtraction (bit rank + number of base
+	 * numerals). A numeral starts from state 0.
+	 *
+	 * @param state is an int: the state before the group
+	 * @param rank is an int: the rank of the first numeral of the group
+	 * @param numInRow is an int: the number of times that numeral repeats
+	 * @param nextRank is an int: the rank of the numeral right after a
+	 * lone numeral, or -1 if the numeral repeats or there is no next
+	 * numeral
+	 * @return an int: the state after the group, or the negative code
+	 * of a NumeralError if the group breaks the rules
+	 */
+	public int applyGroup(int state, int rank, int numInRow, int nextRank) {
+
+		if (numInRow > maxInRow[rank])
+			return NumeralError.REPEAT_VIOLATION.getCode();
+
+		if (isSubtraction(rank, numInRow, nextRank)) {
+			if ((state & (1 << (numBases+rank))) != 0 ||
+				(state & (1 << (numBases+nextRank))) != 0 ||
+				!legalSubtraction[rank*numBases + nextRank])
+				return NumeralError.BAD_SUBTRACTION.getCode();
+
+			return state | (1 << (numBases+rank)) |
+					(1 << (numBases+nextRank)) | (1 << nextRank);
+		}
+
+		if ((state & (1 << rank)) != 0)
+			return NumeralError.REPEAT_VIOLATION.getCode();
+
+		return state | (1 << rank);
+	}
+
+	/**
+	 * Determine whether a group of a numeral is a subtraction.
+	 *
+	 * @param rank is an int: the rank of the first numeral of the group
+	 * @param numInRow is an int: the number of times that numeral repeats
+	 * @param nextRank is an int: the rank of the next numeral, or -1
+	 * @return true if the group is a subtraction, false otherwise
+	 */
+	public boolean isSubtraction(int rank, int numInRow, int nextRank) {
+		return numInRow == 1 && isSubtractor[rank] && nextRank > rank;
+	}
+
+	/**
+	 * Get the rank of a base numeral char.
+	 *
+	 * @param base is a char: the char to check
+	 * @return an int: the rank, or -1 if the char is not a base numeral
+	 */
+	public int rankOfChar(char base) {
+		return base < charToRank.length ? charToRank[base] : -1;
+	}
+
+	/**
+	 * Get the rank of a base numeral.
+	 *
+	 * @param symbol is a string: the base numeral to check
+	 * @return an int: the rank, or -1 if the string is not a base numeral
+	 */
+	public int rankOfSymbol(String symbol) {
+		Integer rank = symbolRank.get(symbol);
+		return rank == null ? -1 : rank;
+	}
+
+	/**
+	 * Convert a value to a numeral.
+	 *
+	 * Looks the numeral up in a table of every value's numeral, built on
+	 * first use, so no strings are built per call.
+	 *
+	 * @param value is an int: the value to convert
+	 * @throws IllegalArgumentException if the value is less than 1 or
+	 * greater than getMaxValue()
+	 * @return a string: the numeral for the value
+	 */
+	public String encode(int value) {
+
+		if (value < 1 || value > maxValue)
+			throw new IllegalArgumentException("Given int '" + value + "' is "
+					+ "outside valid range. The numeral system can only write "
+					+ "values from 1 to " + maxValue + ".");
+
+		// build on first use; racing readers may each build it
+		String[] table = valueToNumeral;
+		if (table == null) {
+			table = new String[maxValue+1];
+			for (int i = 1; i <= maxValue; i++)
+				table[i] = buildNumeral(i);
+			valueToNumeral = table;
+		}
+
+		return table[value];
+	}
+
+	/**
+	 * Build the greedy numeral for a value token by token.
+	 *
+	 * Only used to fill the table; use encode to look numerals up.
+	 *
+	 * @param value is a positive int: the value to convert
+	 * @return a string: the numeral, or null if the greedy numeral
+	 * repeats a base numeral more times than allowed or can't be built
+	 */
+	private String buildNumeral(int value) {
+
+		StringBuilder numeral = new StringBuilder();
+		int remaining = value;
+		int numInRow;
+		for (int i = 0; i < tokens.length && remaining > 0; i++) {
+			numInRow = 0;
+			while (remaining >= tokenVals[i]) {
+				numeral.append(tokens[i]);
+				remaining -= tokenVals[i];
+				numInRow++;
+			}
+			if (numInRow > 1 && (tokens[i].length() > 1 ||
+					numInRow > maxInRow[rankOfChar(tokens[i].charAt(0))]))
+				return null;
+		}
+
+		return remaining == 0 ? numeral.toString() : null;
+	}
+
+	public int getNumBases() {
+		return numBases;
+	}
+
+	public String getSymbol(int rank) {
+		return rankToSymbol[rank];
+	}
+
+	public int getValue(int rank) {
+		return rankToVal[rank];
+	}
+
+	public int getMaxInRow(int rank) {
+		return maxInRow[rank];
+	}
+
+	public boolean isSubtractor(int rank) {
+		return isSubtractor[rank];
+	}
+
+	/**
+	 * Get the biggest value the system can write.
+	 *
+	 * @return an int: the value of the biggest numeral
+	 */
+	public int getMaxValue() {
+		return maxValue;
+	}
+
+	/**
+	 * Get the length of the longest numeral the system writes.
+	 *
+	 * @return an int: the number of chars in the longest numeral
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+}
@@ -0,0 +1,492 @@
+package utility;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * Keep every price observed for one commodity, in the order observed.
+ * 
+ * Each observation is a sequence number (or timestamp) and the price of
+ * some units of the commodity, as in a commodity declaration: the
+ * Credits paid and the units bought, so the unit price is exact. They
+ * are kept in two columns of longs, the sequence numbers and the price
+ * and units packed together, grown a chunk at a time, so an observation
+ * takes 16 bytes however many there are (the first chunk grows from a
+ * few observations, so a short history is small too).
+ * 
+ * The latest observation is one read away. Observations are also
+ * summarized in blocks of blockSize observations, and blocks in
+ * superblocks of blockSize blocks: the min and max unit price of each,
+ * and running totals of Credits, units and unit prices up to each block.
+ * So the min, max, mean and volume weighted average unit price over any
+ * window of observations scan at most a few blocks' worth of summaries
+ * and observations, not the whole window. The summaries take about
+ * 40/blockSize bytes per observation.
+ * 
+ * Observations are only ever appended. Appending is safe from any
+ * number of threads (one at a time); reading is safe while appending,
+ * without locking, and sees every observation appended before the read
+ * began.
+ * 
+ * @author ryanwilliamconnor
+ * 
+ */
+public final class PriceHistory {
+	
+	public static final int DEFAULT_BLOCK_SIZE = 1024;
+	
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	
+	// observation i is at [i >>> CHUNK_BITS][i & CHUNK_MASK]; price i is
+	// the Credits paid in the high 32 bits and the units in the low 32
+	private volatile long[][] seqs;
+	private volatile long[][] prices;
+	// the number of observations; written last, so a reader that reads
+	// it first sees everything it counts
+	private volatile long size;
+	
+	private final int blockBits;
+	private final int blockSize;
+	// the min and max price of each complete block and superblock, and
+	// the totals of every observation before each complete block
+	private volatile long[] blockMin, blockMax, superMin, superMax;
+	private volatile long[] creditsBefore, unitsBefore;
+	private volatile double[] unitPriceBefore;
+	// the summary of the block being filled
+	private long min, max, credits, units;
+	private double unitPrices;
+	
+	/**
+	 * Create an empty PriceHistory, summarizing DEFAULT_BLOCK_SIZE
+	 * observations per block.
+	 */
+	public PriceHistory() {
+		this(DEFAULT_BLOCK_SIZE);
+	}
+	
+	/**
+	 * Create an empty PriceHistory.
+	 * 
+	 * @param blockSize is an int: the number of observations to summarize
+	 * together, a power of two; smaller blocks answer windows faster and
+	 * take more memory
+	 * @throws IllegalArgumentException if blockSize is not a power of two
+	 * from 2 to CHUNK_SIZE
+	 */
+	public PriceHistory(int blockSize) {
+		
+		if (blockSize < 2 || blockSize > CHUNK_SIZE ||
+			Integer.bitCount(blockSize) != 1)
+			throw new IllegalArgumentException("Block size must be a power "
+					+ "of two from 2 to " + CHUNK_SIZE + ", not " + blockSize);
+		
+		this.blockBits = Integer.numberOfTrailingZeros(blockSize);
+		this.blockSize = blockSize;
+		this.seqs = new long[0][];
+		this.prices = new long[0][];
+		this.blockMin = new long[16];
+		this.blockMax = new long[16];
+		this.superMin = new long[16];
+		this.superMax = new long[16];
+		this.creditsBefore = new long[17];
+		this.unitsBefore = new long[17];
+		this.unitPriceBefore = new double[17];
+	}
+	
+	/**
+	 * Record an observed price.
+	 * 
+	 * @param seq is a long: the sequence number or time of the
+	 * observation, no less than that of the one before
+	 * @param credits is an int: the Credits paid, not negative
+	 * @param units is an int: the units bought, more than 0
+	 * @throws IllegalArgumentException if seq is less than the last
+	 * observation's, credits is negative or units is not more than 0
+	 */
+	public synchronized void append(long seq, int credits, int units) {
+		
+		long n = size;
+		if (n > 0 && seq < seqAt(n-1))
+			throw new IllegalArgumentException("Sequence " + seq + " is "
+					+ "before the last observation's, " + seqAt(n-1));
+		if (credits < 0 || units <= 0)
+			throw new IllegalArgumentException("Price of " + credits +
+					" Credits for " + units + " units is invalid");
+		
+		int chunk = (int)(n >>> CHUNK_BITS);
+		int slot = (int)(n & CHUNK_MASK);
+		if (chunk == seqs.length || slot == seqs[chunk].length) {
+			// the first chunk starts small and doubles, so short histories
+			// stay small; publish the chunk before the size that uses it
+			int length = chunk > 0 ? CHUNK_SIZE : Math.max(16, 2*slot);
+			long[][] grownSeqs = Arrays.copyOf(seqs, chunk+1);
+			long[][] grownPrices = Arrays.copyOf(prices, chunk+1);
+			grownSeqs[chunk] = slot == 0 ? 
+					new long[length] : Arrays.copyOf(seqs[chunk], length);
+			grownPrices[chunk] = slot == 0 ? 
+					new long[length] : Arrays.copyOf(prices[chunk], length);
+			seqs = grownSeqs;
+			prices = grownPrices;
+		}
+		long price = pack(credits, units);
+		seqs[chunk][slot] = seq;
+		prices[chunk][slot] = price;
+		
+		summarize(n, price);
+		size = n+1;
+	}
+	
+	/**
+	 * Add an observation to the summary of its block, and when the block
+	 * (or superblock) is complete, store its summary.
+	 * 
+	 * @param index is a long: the index of the observation
+	 * @param price is a long: the packed price of the observation
+	 */
+	private void summarize(long index, long price) {
+		
+		int inBlock = (int)(index & (blockSize-1));
+		if (inBlock == 0 || compare(price, min) < 0) min = price;
+		if (inBlock == 0 || compare(price, max) > 0) max = price;
+		if (inBlock == 0) {
+			credits = 0;
+			units = 0;
+			unitPrices = 0;
+		}
+		credits += creditsOf(price);
+		units += unitsOf(price);
+		unitPrices += (double)creditsOf(price) / unitsOf(price);
+		if (inBlock != blockSize-1) return;
+		
+		int block = (int)(index >>> blockBits);
+		if (block+1 == blockMin.length) {
+			int grown = 2*blockMin.length;
+			blockMin = Arrays.copyOf(blockMin, grown);
+			blockMax = Arrays.copyOf(blockMax, grown);
+			creditsBefore = Arrays.copyOf(creditsBefore, grown+1);
+			unitsBefore = Arrays.copyOf(unitsBefore, grown+1);
+			unitPriceBefore = Arrays.copyOf(unitPriceBefore, grown+1);
+		}
+		blockMin[block] = min;
+		blockMax[block] = max;
+		creditsBefore[block+1] = creditsBefore[block] + credits;
+		unitsBefore[block+1] = unitsBefore[block] + units;
+		unitPriceBefore[block+1] = unitPriceBefore[block] + unitPrices;
+		
+		if ((block & (blockSize-1)) != blockSize-1) return;
+		
+		int superblock = block >>> blockBits;
+		int first = superblock << blockBits;
+		if (superblock == superMin.length) {
+			superMin = Arrays.copyOf(superMin, 2*superMin.length);
+			superMax = Arrays.copyOf(superMax, 2*superMax.length);
+		}
+		superMin[superblock] = extreme(blockMin, first, first+blockSize, -1);
+		superMax[superblock] = extreme(blockMax, first, first+blockSize, 1);
+	}
+	
+	/**
+	 * Get the number of observations.
+	 * 
+	 * @return a long: the number of observations
+	 */
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * Get the sequence number of the latest observation.
+	 * 
+	 * @throws IllegalStateException if there are no observations
+	 * @return a long: the sequence number
+	 */
+	public long getLatestSeq() {
+		return seqAt(latest());
+	}
+	
+	/**
+	 * Get the unit price of the latest observation.
+	 * 
+	 * @return a BigDecimal: the unit price, exact if it has a finite
+	 * decimal expansion and rounded to 16 digits if not, or null if there
+	 * are no observations
+	 */
+	public BigDecimal getLatestPrice() {
+		long n = size;
+		return n == 0 ? null : unitPrice(priceAt(n-1));
+	}
+	
+	/**
+	 * Get the Credits paid in the latest observation.
+	 * 
+	 * @throws IllegalStateException if there are no observations
+	 * @return an int: the Credits paid
+	 */
+	public int getLatestCredits() {
+		return creditsOf(priceAt(latest()));
+	}
+	
+	/**
+	 * Get the units bought in the latest observation.
+	 * 
+	 * @throws IllegalStateException if there are no observations
+	 * @return an int: the units bought
+	 */
+	public int getLatestUnits() {
+		return unitsOf(priceAt(latest()));
+	}
+	
+	private long latest() {
+		long n = size;
+		if (n == 0) throw new IllegalStateException("No observations");
+		return n-1;
+	}
+	
+	/**
+	 * Summarize the observations with sequence numbers from fromSeq to
+	 * toSeq, inclusive.
+	 * 
+	 * @param fromSeq is a long: the first sequence number of the window
+	 * @param toSeq is a long: the last sequence number of the window
+	 * @return a Window: the summary of the observations in the window
+	 */
+	public Window getWindow(long fromSeq, long toSeq) {
+		long n = size;
+		long to = toSeq == Long.MAX_VALUE ? n : indexOf(toSeq+1, n);
+		return summarize(indexOf(fromSeq, n), to, n);
+	}
+	
+	/**
+	 * Summarize the observations from one index up to another.
+	 * 
+	 * @param from is a long: the index of the first observation
+	 * @param to is a long: the index after the last observation
+	 * @throws IndexOutOfBoundsException if the indexes are not a run of
+	 * observations
+	 * @return a Window: the summary of the observations in the run
+	 */
+	public Window getWindowByIndex(long from, long to) {
+		long n = size;
+		if (from < 0 || to > n || from > to)
+			throw new IndexOutOfBoundsException("Observations " + from + "-"
+					+ to + " are not in a history of " + n);
+		return summarize(from, to, n);
+	}
+	
+	/**
+	 * Get the index of the first observation with a sequence number of
+	 * at least the given one.
+	 * 
+	 * @param seq is a long: the sequence number
+	 * @param n is a long: the number of observations to search
+	 * @return a long: the index, or n if every observation is before seq
+	 */
+	private long indexOf(long seq, long n) {
+		
+		long low = 0, high = n;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (seqAt(mid) < seq) low = mid+1;
+			else high = mid;
+		}
+		
+		return low;
+	}
+	
+	/**
+	 * Summarize a run of observations: the complete blocks in the run 
+	 * from their summaries, and the observations at its ends one by one.
+	 * 
+	 * @param from is a long: the index of the first observation
+	 * @param to is a long: the index after the last observation
+	 * @param n is a long: the number of observations when the read began
+	 * @return a Window: the summary of the run
+	 */
+	private Window summarize(long from, long to, long n) {
+		
+		if (from >= to) return new Window(0, 0, 0, 0, 0, 0);
+		
+		long firstBlock = (from + blockSize - 1) >>> blockBits;
+		long endBlock = to >>> blockBits;
+		long credits = 0, units = 0, min = 0, max = 0;
+		double unitPrices = 0;
+		// observations before the first complete block and after the last
+		long skipFrom = to, skipTo = to;
+		if (firstBlock < endBlock) {
+			skipFrom = firstBlock << blockBits;
+			skipTo = endBlock << blockBits;
+			credits = creditsBefore[(int)endBlock] - creditsBefore[(int)firstBlock];
+			units = unitsBefore[(int)endBlock] - unitsBefore[(int)firstBlock];
+			unitPrices = unitPriceBefore[(int)endBlock] - 
+					unitPriceBefore[(int)firstBlock];
+			min = blockExtreme(blockMin, superMin, firstBlock, endBlock, -1);
+			max = blockExtreme(blockMax, superMax, firstBlock, endBlock, 1);
+		}
+		long price;
+		for (long i = from == skipFrom ? skipTo : from; i < to; 
+				i = i+1 == skipFrom ? skipTo : i+1) {
+			price = priceAt(i);
+			credits += creditsOf(price);
+			units += unitsOf(price);
+			unitPrices += (double)creditsOf(price) / unitsOf(price);
+			min = better(min, price, -1);
+			max = better(max, price, 1);
+		}
+		
+		return new Window(to - from, min, max, credits, units, unitPrices);
+	}
+	
+	/**
+	 * Get the min or max price of a run of complete blocks, from the 
+	 * summaries of the complete superblocks in the run and of the blocks
+	 * at its ends.
+	 * 
+	 * @param blocks is a long array: the min or max of each block
+	 * @param supers is a long array: the min or max of each superblock
+	 * @param firstBlock is a long: the first block of the run
+	 * @param endBlock is a long: the block after the last block of the run
+	 * @param sign is an int: -1 for the min, 1 for the max
+	 * @return a long: the packed min or max price
+	 */
+	private long blockExtreme(long[] blocks, long[] supers, long firstBlock, 
+			long endBlock, int sign) {
+		
+		long firstSuper = (firstBlock + blockSize - 1) >>> blockBits;
+		long endSuper = endBlock >>> blockBits;
+		if (firstSuper >= endSuper)
+			return extreme(blocks, (int)firstBlock, (int)endBlock, sign);
+		
+		long best = extreme(supers, (int)firstSuper, (int)endSuper, sign);
+		best = better(best, extreme(blocks, (int)firstBlock, 
+				(int)(firstSuper << blockBits), sign), sign);
+		return better(best, extreme(blocks, (int)(endSuper << blockBits), 
+				(int)endBlock, sign), sign);
+	}
+	
+	private static long extreme(long[] summaries, int from, int to, int sign) {
+		long best = 0;
+		for (int i = from; i < to; i++) best = better(best, summaries[i], sign);
+		return best;
+	}
+	
+	/**
+	 * Pick the lower or higher of two packed prices, where 0 is no price.
+	 */
+	private static long better(long price, long other, int sign) {
+		if (other == 0) return price;
+		if (price == 0) return other;
+		return compare(other, price) * sign > 0 ? other : price;
+	}
+	
+	private long seqAt(long index) {
+		return seqs[(int)(index >>> CHUNK_BITS)][(int)(index & CHUNK_MASK)];
+	}
+	
+	private long priceAt(long index) {
+		return prices[(int)(index >>> CHUNK_BITS)][(int)(index & CHUNK_MASK)];
+	}
+	
+	private static long pack(int credits, int units) {
+		return (long)credits << 32 | units;
+	}
+	
+	private static int creditsOf(long price) {
+		return (int)(price >>> 32);
+	}
+	
+	private static int unitsOf(long price) {
+		return (int)price;
+	}
+	
+	/**
+	 * Compare the unit prices of two packed prices, exactly.
+	 */
+	private static int compare(long price, long other) {
+		return Long.compare((long)creditsOf(price) * unitsOf(other),
+				(long)creditsOf(other) * unitsOf(price));
+	}
+	
+	private static BigDecimal unitPrice(long price) {
+		return BigDecimal.valueOf(creditsOf(price)).divide(
+				BigDecimal.valueOf(unitsOf(price)), MathContext.DECIMAL64);
+	}
+	
+	/**
+	 * A summary of the observations in a window of a price history.
+	 */
+	public static final class Window {
+		
+		private final long count;
+		private final long min, max; // packed prices
+		private final long credits, units;
+		private final double unitPrices;
+		
+		private Window(long count, long min, long max, long credits,
+				long units, double unitPrices) {
+			this.count = count;
+			this.min = min;
+			this.max = max;
+			this.credits = credits;
+			this.units = units;
+			this.unitPrices = unitPrices;
+		}
+		
+		public long getCount() {
+			return count;
+		}
+		
+		/**
+		 * @return a BigDecimal: the lowest unit price in the window, or
+		 * null if the window is empty
+		 */
+		public BigDecimal getMin() {
+			return count == 0 ? null : unitPrice(min);
+		}
+		
+		/**
+		 * @return a BigDecimal: the highest unit price in the window, or
+		 * null if the window is empty
+		 */
+		public BigDecimal getMax() {
+			return count == 0 ? null : unitPrice(max);
+		}
+		
+		/**
+		 * @return a double: the mean of the unit prices in the window, or
+		 * NaN if the window is empty
+		 */
+		public double getMean() {
+			return count == 0 ? Double.NaN : unitPrices / count;
+		}
+		
+		/**
+		 * Get the volume weighted average unit price: the Credits paid in
+		 * the window over the units bought.
+		 * 
+		 * @return a BigDecimal: the average, exact if it has a finite
+		 * decimal expansion and rounded to 16 digits if not, or null if
+		 * the window is empty
+		 */
+		public BigDecimal getVwap() {
+			return count == 0 ? null : BigDecimal.valueOf(credits).divide(
+					BigDecimal.valueOf(units), MathContext.DECIMAL64);
+		}
+		
+		public long getCredits() {
+			return credits;
+		}
+		
+		public long getUnits() {
+			return units;
+		}
+		
+		public String toString() {
+			return "(Count: " + count + ", Min: " + getMin() + ", Max: " +
+					getMax() + ", Mean: " + getMean() + ", VWAP: " +
+					getVwap() + ")";
+		}
+	}
+}
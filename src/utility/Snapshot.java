@@ -0,0 +1,235 @@
+package utility;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import notes.SymbolTable;
+import utility.Ledger.PricePair;
+
+/**
+ * A copy of a ledger's price book and its translator's pairings as of
+ * some record of their journal, to save in a file, so opening the
+ * journal replays only the records after it.
+ * 
+ * The translator's pairings are copied with the journal held, as of the
+ * snapshot's record exactly. The ledger's price book is copied after, 
+ * without holding the journal, so it may also hold the prices of some
+ * declarations journaled after that record; replaying them again over 
+ * the snapshot leaves the same prices, since each declaration either 
+ * overwrites a price or only fills in a missing one. A snapshot is
+ * immutable, so it can be written while the ledger and translator go
+ * on changing.
+ * 
+ * A snapshot file is, in order: MAGIC, the VERSION of the format, the
+ * number of the first journal record not in the snapshot, the number
+ * of base numerals of the translator's system, each intergal numeral
+ * the translator knows with its rank (-1 if unpaired), each commodity
+ * with its credit price (as a fraction; a denominator of 0 for none)
+ * and intergal price, and last the CRC32 of all that. Strings are
+ * written as by DataOutputStream.writeUTF.
+ * 
+ * @author ryanwilliamconnor
+ * 
+ */
+final class Snapshot {
+	
+	static final int MAGIC = 0x4C444753;
+	static final short VERSION = 1;
+	
+	private final long position;
+	private final int numBases;
+	private final Map<String, Integer> intergalNumRank;
+	private final Map<String, PricePair> priceBook;
+	
+	/**
+	 * Copy the pairings of a translator, with no prices yet. The caller 
+	 * holds the journal, and the translator must not be changing.
+	 * 
+	 * @param position is a long: the number of the first journal record
+	 * not reflected in the pairings
+	 * @param translator is a Translator: the translator to copy
+	 */
+	Snapshot(long position, Translator translator) {
+		this(position, translator.getSystem().getNumBases(), 
+				translator.getIntergalNumRank(), null);
+	}
+	
+	private Snapshot(long position, int numBases,
+			Map<String, Integer> intergalNumRank,
+			Map<String, PricePair> priceBook) {
+		this.position = position;
+		this.numBases = numBases;
+		this.intergalNumRank = intergalNumRank;
+		this.priceBook = priceBook;
+	}
+	
+	/**
+	 * Write the snapshot to a file, all at once: it is written to a
+	 * temporary file, forced to disk and then renamed.
+	 * 
+	 * @param file is a File: the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	void write(File file) throws IOException {
+		
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream fileOut = new FileOutputStream(temp);
+		try {
+			CheckedOutputStream checked =
+					new CheckedOutputStream(fileOut, new CRC32());
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(checked, 1 << 16));
+			
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeLong(position);
+			out.writeInt(numBases);
+			
+			out.writeInt(intergalNumRank.size());
+			for (Map.Entry<String, Integer> entry : intergalNumRank.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeInt(entry.getValue() == null ? -1 : entry.getValue());
+			}
+			
+			out.writeInt(priceBook.size());
+			PricePair prices;
+			for (Map.Entry<String, PricePair> entry : priceBook.entrySet()) {
+				prices = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(prices.getCreditNumerator());
+				out.writeLong(prices.getCreditDenominator());
+				out.writeBoolean(prices.getIntergalPrice() != null);
+				if (prices.getIntergalPrice() != null)
+					out.writeUTF(prices.getIntergalPrice());
+			}
+			
+			out.flush();
+			new DataOutputStream(fileOut).writeLong(
+					checked.getChecksum().getValue());
+			fileOut.getFD().sync();
+		}
+		finally {
+			fileOut.close();
+		}
+		
+		Files.move(temp.toPath(), file.toPath(),
+				StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Read a snapshot from a file.
+	 * 
+	 * @param file is a File: the file to read
+	 * @throws IOException if the file can't be read, is not a snapshot,
+	 * is of a newer version of the format, or is corrupt
+	 * @return a Snapshot: the snapshot in the file
+	 */
+	static Snapshot read(File file) throws IOException {
+		
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		DataInputStream in = 
+				new DataInputStream(new ByteArrayInputStream(bytes));
+		if (bytes.length < 14 || in.readInt() != MAGIC)
+			throw new IOException(file + " is not a snapshot");
+		short version = in.readShort();
+		if (version < 1 || version > VERSION)
+			throw new IOException(file + " is of snapshot version " + 
+					version + "; only up to " + VERSION + " is supported");
+		
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 8);
+		in.skipBytes(bytes.length - 14);
+		if (in.readLong() != crc.getValue())
+			throw new IOException(file + " is corrupt");
+		
+		in = new DataInputStream(new ByteArrayInputStream(bytes, 6, 
+				bytes.length - 14));
+		try {
+			long position = in.readLong();
+			int numBases = in.readInt();
+			
+			int numNumerals = in.readInt();
+			Map<String, Integer> intergalNumRank = 
+					new HashMap<String, Integer>();
+			for (int i = 0; i < numNumerals; i++) {
+				String intergalNum = in.readUTF();
+				int rank = in.readInt();
+				if (rank >= numBases)
+					throw new IllegalArgumentException("Rank " + rank);
+				intergalNumRank.put(intergalNum, rank < 0 ? null : rank);
+			}
+			
+			int numCommodities = in.readInt();
+			Map<String, PricePair> priceBook = new HashMap<String, PricePair>();
+			for (int i = 0; i < numCommodities; i++) {
+				String commodity = in.readUTF();
+				long numerator = in.readLong();
+				long denominator = in.readLong();
+				String intergalPrice = in.readBoolean() ? in.readUTF() : null;
+				priceBook.put(commodity, denominator == 0 ? 
+						new PricePair((BigDecimal)null, intergalPrice) : 
+						new PricePair(numerator, denominator, intergalPrice));
+			}
+			
+			return new Snapshot(position, numBases, intergalNumRank, priceBook);
+		}
+		catch (IOException | IllegalArgumentException ex) {
+			throw new IOException(file + " is corrupt", ex);
+		}
+	}
+	
+	/**
+	 * Restore the state in the snapshot to a ledger and its translator,
+	 * which have no prices or pairings yet.
+	 * 
+	 * @param ledger is a Ledger: the ledger to restore
+	 * @param translator is a Translator: the ledger's translator
+	 * @throws IOException if the snapshot is of a translator of another
+	 * numeral system
+	 */
+	void restore(Ledger ledger, Translator translator) throws IOException {
+		
+		if (numBases != translator.getSystem().getNumBases())
+			throw new IOException("Snapshot is of a numeral system with " +
+					numBases + " base numerals, not " +
+					translator.getSystem().getNumBases());
+		
+		SymbolTable symbols = translator.getSymbols();
+		for (Map.Entry<String, Integer> entry : intergalNumRank.entrySet()) {
+			if (entry.getValue() == null)
+				translator.knowId(symbols.intern(entry.getKey()));
+			else
+				translator.pair(symbols.intern(entry.getKey()), entry.getValue());
+		}
+		ledger.setPriceBook(priceBook);
+	}
+	
+	/**
+	 * Get a snapshot with this snapshot's pairings and a copy of a 
+	 * ledger's price book, which need not be still.
+	 * 
+	 * @param ledger is a Ledger: the ledger whose price book to copy
+	 * @return a Snapshot: the snapshot with the prices
+	 */
+	Snapshot withPrices(Ledger ledger) {
+		return new Snapshot(position, numBases, intergalNumRank, 
+				ledger.getPriceBook());
+	}
+	
+	long getPosition() {
+		return position;
+	}
+}
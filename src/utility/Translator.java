@@ -1,13 +1,18 @@
 package utility;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import notes.BaseIntergalNumDecl;
 import notes.CompIntergalNumDecl;
+import notes.SymbolTable;
 
 import java.util.HashSet;
 
@@ -18,21 +23,66 @@ import java.util.HashSet;
  * Needs to learn Roman <-> intergalactic numerals and 
  * arabic <-> intergalactic numerals.
  * 
+ * Intergalactic numerals follow roman numerals by default, but a 
+ * translator can be built over any NumeralSystem; the "roman numerals"
+ * of such a translator are the base numerals of its system.
+ * 
+ * See TranslatorRegistry for keeping translators for many intergalactic 
+ * dialects.
+ * 
  * @author ryanwilliamconnor
- *
+ * 
  */
 public class Translator {
 	
-	// keep intergalNum-romanNum translations as a 
-	// simulated bi-directional hashmap (two arrays of numStrings
-	// and two maps of {numString: Integer rank/arrayIndex})
+	// the numeral system intergalNums are paired with
+	private final NumeralSystem system;
+	
+	// keep intergalNum-romanNum translations as a bi-directional map
+	// between rank and the intergalNum's id in the symbol table, with 
+	// the canonical strings of the paired numerals by rank
+	private final SymbolTable symbols;
 	private String[] rankToIntergalNum;
-	private Map<String, Integer> intergalNumRank;
+	private int[] rankToId;
 	private String[] rankToRomanNum;
 	private int numPairs;
 	
-	// static final for roman numeral vals
+	// the rank of each intergalNum by its id in the symbol table, so 
+	// translations can work on arrays of ids instead of strings; 
+	// UNPAIRED for intergalNums with no known romanNum, and UNKNOWN for 
+	// ids the translator has not been told of. Holds only the ids the 
+	// translator knows, so its size does not depend on the symbol table
+	private IdRanks idRanks;
+	private static final int UNPAIRED = -1;
+	private static final int UNKNOWN = -2;
+	private static final int INITIAL_ID_CAPACITY = 16;
+	
+	// optional index of {intergalNum: arabic value} for every canonical
+	// numeral, built on demand once every romanNum has a pairing and 
+	// dropped whenever a pairing changes; built by whichever reader needs
+	// it first, and published whole (never modified)
+	private boolean useNumeralIndex;
+	private volatile Map<String, Integer> numeralIndex;
+	
+	// optional decoder specialised to the current pairings, replaced
+	// (never modified) whenever a pairing changes
+	private boolean useMappingDecoder;
+	private volatile MappingDecoder mappingDecoder;
+	
+	// bumped on every pairing change; the reverse cache holds the 
+	// arabic to intergalNum translations of one generation
+	private volatile long generation;
+	private volatile ReverseCache reverseCache;
+	
+	// the journal keeping the pairings on disk, if any; see Journal
+	volatile Journal journal;
+	
+	// static final for roman numeral vals; the compiled roman numeral 
+	// tables (NumeralSystem.ROMAN) are shared by every Translator, so a 
+	// translator only holds its own intergalNum pairings
 	public static final Map<String, Integer> ROMAN_NUM_RANK;
+	private static final String[] RANK_TO_ROMAN = 
+		{"I", "V", "X", "L", "C", "D", "M"};
 	public static final int[] RANK_TO_VAL = {1, 5, 10, 50, 100, 500, 1000};
 	public static final String[] NO_REPEATS = {"V", "L", "D"};
 	public static final Set<String> NO_REPEAT_SET = 
@@ -41,28 +91,34 @@ public class Translator {
 	public static final Set<String> SUBTRACTOR_SET = 
 			new HashSet<String>(Arrays.asList(SUBTRACTORS));
 	public static final Map<String, Set<String>> MINUENDS;
-		
+	
+	// strict roman numerals can only represent 1-3999, and
+	// the longest of these (MMMDCCCLXXXVIII) is 15 chars
+	public static final int MIN_ARABIC = 1;
+	public static final int MAX_ARABIC = 3999;
+	public static final int MAX_ROMAN_LENGTH = 15;
+	
 	// initialization for static final maps
 	static {
         Map<String, Integer> numMap = new HashMap<String, Integer>();
-        String[] nums = {"I", "V", "X", "L", "C", "D", "M"};
+        String[] nums = RANK_TO_ROMAN;
         for (int i = 0; i < nums.length; i++)
             numMap.put(nums[i], i);
         ROMAN_NUM_RANK = Collections.unmodifiableMap(numMap);
-        
+
         Map<String, Set<String>> minuends = 
         		new HashMap<String, Set<String>>();
         Set<String> i = new HashSet<String>();
         Set<String> x = new HashSet<String>();
         Set<String> c = new HashSet<String>();
-        
+
         i.add("V");
         i.add("X");
         x.add("L");
         x.add("C");
         c.add("D");
         c.add("M");
-        
+
         minuends.put("I", i);
         minuends.put("X", x);
         minuends.put("C", c);
@@ -74,10 +130,52 @@ public class Translator {
 	 * intergalactic to roman numeral conversions.
 	 */
 	public Translator() {
-		this.rankToIntergalNum = new String[ROMAN_NUM_RANK.size()];
-		this.intergalNumRank = new HashMap<String, Integer>();
-		this.rankToRomanNum = new String[ROMAN_NUM_RANK.size()];
+		this(NumeralSystem.ROMAN);
+	}
+	
+	/**
+	 * Create a new Translator for the given numeral system with no 
+	 * knowledge of any intergalactic to base numeral conversions.
+	 * 
+	 * @param system is a NumeralSystem: the numeral system to pair
+	 * intergal numerals with
+	 * @throws NullPointerException if system is null
+	 */
+	public Translator(NumeralSystem system) {
+		this(system, SymbolTable.GLOBAL);
+	}
+	
+	/**
+	 * Create a new Translator for the given numeral system with no 
+	 * knowledge of any intergalactic to base numeral conversions, 
+	 * keeping intergal numerals by their ids in the given symbol table.
+	 * 
+	 * @param system is a NumeralSystem: the numeral system to pair
+	 * intergal numerals with
+	 * @param symbols is a SymbolTable: where to intern intergal numerals
+	 * @throws NullPointerException if system or symbols is null
+	 */
+	public Translator(NumeralSystem system, SymbolTable symbols) {
+		if (system == null)
+			throw new NullPointerException("Numeral system can't be null");
+		if (symbols == null)
+			throw new NullPointerException("Symbol table can't be null");
+		
+		this.system = system;
+		this.symbols = symbols;
+		this.rankToIntergalNum = new String[system.getNumBases()];
+		this.rankToId = new int[system.getNumBases()];
+		Arrays.fill(rankToId, -1);
+		this.rankToRomanNum = new String[system.getNumBases()];
 		this.numPairs = 0;
+		this.idRanks = new IdRanks(INITIAL_ID_CAPACITY);
+		this.useNumeralIndex = false;
+		this.numeralIndex = null;
+		this.useMappingDecoder = false;
+		this.mappingDecoder = null;
+		this.generation = 0;
+		this.reverseCache = new ReverseCache(system, rankToIntergalNum);
+		this.journal = null;
 	}
 	
 	/**
@@ -92,10 +190,20 @@ public class Translator {
 	 * string, and NullPointerException if either of these are null	
 	 */
 	public void setIntergalToRomanValue(BaseIntergalNumDecl bDec) {
-		setIntergalToRomanValue(bDec.getBaseIntergalNum(), 
-				bDec.getBaseRomanNum());
+		
+		if (symbols != SymbolTable.GLOBAL) {
+			setIntergalToRomanValue(bDec.getBaseIntergalNum(), 
+					bDec.getBaseRomanNum());
+			return;
+		}
+		
+		int rank = system.rankOfSymbol(bDec.getBaseRomanNum());
+		if (rank < 0)
+			throw new IllegalArgumentException("Base roman numeral invalid");
+		
+		pair(bDec.getBaseIntergalNumId(), rank);
 	}
-
+	
 	/**
 	 * Set the value of an intergalactic unit to a base roman numeral.
 	 * 
@@ -114,10 +222,23 @@ public class Translator {
 			throw new NullPointerException("Composite declaration "
 					+ "can't be null");
 		
-		String[] bases = compDec.getIntergalNum().split(" ");
 		String romanNum = compDec.getRomanNum();
-		for (int i = 0; i < bases.length; i++)
-			setIntergalToRomanValue(bases[i], romanNum.substring(i, i+1));
+		
+		if (symbols != SymbolTable.GLOBAL) {
+			String[] bases = compDec.getIntergalNum().split(" ");
+			for (int i = 0; i < bases.length; i++)
+				setIntergalToRomanValue(bases[i], romanNum.substring(i, i+1));
+			return;
+		}
+		
+		int[] ids = compDec.getIntergalNumIds();
+		int rank;
+		for (int i = 0; i < ids.length; i++) {
+			rank = system.rankOfSymbol(romanNum.substring(i, i+1));
+			if (rank < 0)
+				throw new IllegalArgumentException("Base roman numeral invalid");
+			pair(ids[i], rank);
+		}
 	}
 	
 	/**
@@ -141,18 +262,40 @@ public class Translator {
 		if (baseRomanNum == null)
 			throw new NullPointerException("Base roman num can't be null");
 		
-		Integer rank = ROMAN_NUM_RANK.get(baseRomanNum);
+		int rank = system.rankOfSymbol(baseRomanNum);
 		
-		if (rank == null)
+		if (rank < 0)
 			throw new IllegalArgumentException("Base roman numeral invalid");
 		
-		String previous = rankToIntergalNum[rank];
-		if (previous != null) decoupleIntergalNum(previous, rank);
+		pair(symbols.intern(baseIntergalNum), rank);
+	}
+	
+	/**
+	 * Pair an intergal numeral with a base roman numeral, undoing any 
+	 * pairing either had before, and journal the pairing if the 
+	 * translator is journaled.
+	 * 
+	 * @param id is an int: the id of the intergal numeral in the symbol 
+	 * table
+	 * @param rank is an int: the rank of the base roman numeral
+	 */
+	void pair(int id, int rank) {
+		
+		int previous = rankToId[rank];
+		if (previous >= 0) decouple(previous, rank);
+		
+		// keep the mapping one-to-one if the intergalNum had another rank
+		int previousRank = rankOfId(idRanks, id);
+		if (previousRank >= 0) decouple(id, previousRank);
 		
-		rankToIntergalNum[rank] = baseIntergalNum;
-		intergalNumRank.put(baseIntergalNum, rank);
-		rankToRomanNum[rank] = baseRomanNum;
+		rankToIntergalNum[rank] = symbols.symbolOf(id);
+		rankToId[rank] = id;
+		rankToRomanNum[rank] = system.getSymbol(rank);
+		setRankOfId(id, rank);
 		numPairs++;
+		pairingsChanged();
+		Journal journal = this.journal;
+		if (journal != null) journal.logPair(symbols, id, rank);
 	}
 	
 	/**
@@ -183,12 +326,72 @@ public class Translator {
 			throw new NullPointerException("Intergal num can't be null");
 		if (intergalNum.length() < 1) 
 			throw new IllegalArgumentException("Intergal num can't be empty");
-			
-		if (intergalNumRank.containsKey(intergalNum)) 
+		
+		int id = symbols.intern(intergalNum);
+		if (isKnownId(id)) 
 			throw new IllegalArgumentException(intergalNum + 
 					" already known");
 		
-		intergalNumRank.put(intergalNum, null);
+		knowId(id);
+		Journal journal = this.journal;
+		if (journal != null) journal.logKnow(symbols, id);
+	}
+	
+	/**
+	 * Make the translator know of an intergal numeral id, with no 
+	 * pairing if it had none.
+	 * 
+	 * @param id is an int: the id of the intergal numeral
+	 */
+	void knowId(int id) {
+		if (idRanks.get(id) == UNKNOWN) setRankOfId(id, UNPAIRED);
+	}
+	
+	/**
+	 * Set the rank of an intergal numeral id, growing the id table first
+	 * if the id is new and does not fit, so the id is known afterwards.
+	 * 
+	 * @param id is an int: the id of the intergal numeral
+	 * @param rank is an int: the rank of its roman numeral, or UNPAIRED
+	 */
+	private void setRankOfId(int id, int rank) {
+		idRanks = idRanks.put(id, rank);
+	}
+	
+	private boolean isKnownId(int id) {
+		return idRanks.get(id) != UNKNOWN;
+	}
+	
+	/**
+	 * Get the id of the given base intergal numeral.
+	 * 
+	 * Ids come from the translator's symbol table (the global one unless
+	 * another was given), so are shared with notes and other translators
+	 * using the table. An intergal numeral keeps its id even if its 
+	 * roman numeral changes or is decoupled.
+	 * 
+	 * @param intergalNum is a CharSequence: a base intergal numeral
+	 * @return an int: the id of the intergal numeral, or -1 if the 
+	 * translator does not know of it
+	 */
+	public int getIntergalNumId(CharSequence intergalNum) {
+		int id = symbols.idOf(intergalNum);
+		return isKnownId(id) ? id : -1;
+	}
+	
+	/**
+	 * Get the id of a base intergal numeral held in part of a character
+	 * sequence, without copying it. See getIntergalNumId(CharSequence).
+	 * 
+	 * @param str is a CharSequence holding the base intergal numeral
+	 * @param start is an int: the index of the first char of the numeral
+	 * @param end is an int: the index after the last char of the numeral
+	 * @return an int: the id of the intergal numeral, or -1 if the 
+	 * translator does not know of it
+	 */
+	public int getIntergalNumId(CharSequence str, int start, int end) {
+		int id = symbols.idOf(str, start, end);
+		return isKnownId(id) ? id : -1;
 	}
 	
 	/**
@@ -201,11 +404,39 @@ public class Translator {
 	 * @param intergalNum
 	 */
 	public void decoupleIntergalNum(String intergalNum, int rank) {
+		int id = symbols.intern(intergalNum);
+		decouple(id, rank);
+		Journal journal = this.journal;
+		if (journal != null) journal.logDecouple(symbols, id, rank);
+	}
+	
+	/**
+	 * Remove an intergalNum-romanNum pairing by the id of the intergalNum,
+	 * leaving the intergalNum known.
+	 * 
+	 * @param id is an int: the id of the intergal numeral
+	 * @param rank is an int: the rank of the roman numeral it is paired with
+	 */
+	void decouple(int id, int rank) {
 		
 		rankToIntergalNum[rank] = null;
+		rankToId[rank] = -1;
 		rankToRomanNum[rank] = null;
-		intergalNumRank.put(intergalNum, null);
+		setRankOfId(id, UNPAIRED);
 		numPairs--;
+		pairingsChanged();
+	}
+	
+	/**
+	 * Drop or replace everything derived from the intergalNum-romanNum 
+	 * pairings after they change.
+	 */
+	private void pairingsChanged() {
+		numeralIndex = null;
+		mappingDecoder = useMappingDecoder ? 
+				new MappingDecoder(system, rankToIntergalNum) : null;
+		generation++;
+		reverseCache = new ReverseCache(system, rankToIntergalNum);
 	}
 	
 	/**
@@ -217,22 +448,308 @@ public class Translator {
 	 * given intergal numeral.
 	 */
 	public int intergalNumToArabic(String intergalNum) {
-
-		String romanNum = intergalNumToRoman(intergalNum);
-		return romanNumToArabic(romanNum);
+		
+		int value = tryIntergalNumToArabic(intergalNum);
+		if (value < 0)
+			throw new IllegalArgumentException("Intergal numeral '" + 
+					intergalNum + "' can't be translated: " + 
+					NumeralError.fromResult(value).getDescription());
+		
+		return value;
+	}
+	
+	/**
+	 * Convert an intergal numeral to an arabic numeral without
+	 * throwing an exception if the translation fails.
+	 * 
+	 * @param intergalNum is a string: the intergal numeral to convert,
+	 * with base intergal numerals separated by spaces
+	 * @throws NullPointerException if intergalNum is null
+	 * @return an int: the arabic numeral representing the given intergal
+	 * numeral, or the negative code of a NumeralError if a word has no
+	 * known roman numeral or the numeral is not well formed
+	 */
+	public int tryIntergalNumToArabic(String intergalNum) {
+		
+		if (intergalNum == null)
+			throw new NullPointerException("Intergal num can't be null");
+		
+		if (useNumeralIndex && completeInfo()) {
+			Integer value = getNumeralIndex().get(intergalNum);
+			if (value != null) return value;
+		}
+		
+		MappingDecoder decoder = mappingDecoder;
+		if (decoder != null) return decoder.tryDecode(intergalNum);
+		
+		// like split(" "), ignore trailing separators
+		int end = intergalNum.length();
+		while (end > 0 && intergalNum.charAt(end-1) == ' ') end--;
+		if (end == 0) return NumeralError.EMPTY.getCode();
+		
+		int numWords = 1;
+		for (int i = 0; i < end; i++)
+			if (intergalNum.charAt(i) == ' ') numWords++;
+		
+		int[] ids = new int[numWords];
+		int wordStart = 0, wordEnd;
+		for (int i = 0; i < numWords; i++) {
+			wordEnd = intergalNum.indexOf(' ', wordStart);
+			if (wordEnd < 0 || wordEnd > end) wordEnd = end;
+			ids[i] = getIntergalNumId(intergalNum, wordStart, wordEnd);
+			wordStart = wordEnd+1;
+		}
+		
+		return tryIntergalNumToArabic(ids, 0, numWords);
+	}
+	
+	/**
+	 * Convert an intergal numeral given as intergal numeral ids to an 
+	 * arabic numeral, without building the roman numeral and without
+	 * throwing an exception if the translation fails.
+	 * 
+	 * @param ids is an int array holding ids from getIntergalNumId
+	 * @param start is an int: the index in ids of the first base numeral
+	 * @param end is an int: the index in ids after the last base numeral
+	 * @throws NullPointerException if ids is null
+	 * @return an int: the arabic numeral representing the given intergal
+	 * numeral, or the negative code of a NumeralError if an id has no
+	 * known roman numeral or the numeral is not well formed
+	 */
+	public int tryIntergalNumToArabic(int[] ids, int start, int end) {
+		
+		if (ids == null)
+			throw new NullPointerException("Intergal num ids can't be null");
+		if (end - start < 1) return NumeralError.EMPTY.getCode();
+		
+		// read the id table once rather than once per id
+		NumeralSystem sys = system;
+		IdRanks ranks = idRanks;
+		
+		int state = 0;
+		int total = 0;
+		int i = start;
+		int rank, nextRank, numInRow;
+		
+		while (i < end) {
+			
+			rank = rankOfId(ranks, ids[i]);
+			if (rank < 0) return NumeralError.UNMAPPED_WORD.getCode();
+			
+			numInRow = 1;
+			while (i+numInRow < end && 
+			       rankOfId(ranks, ids[i+numInRow]) == rank)
+				numInRow++;
+			
+			nextRank = numInRow == 1 && i+1 < end ? 
+					rankOfId(ranks, ids[i+1]) : -1;
+			
+			state = sys.applyGroup(state, rank, numInRow, nextRank);
+			if (state < 0) return state;
+			
+			if (sys.isSubtraction(rank, numInRow, nextRank)) {
+				total += sys.getValue(nextRank) - sys.getValue(rank);
+				i += 2;
+			}
+			else {
+				total += numInRow * sys.getValue(rank);
+				i += numInRow;
+			}
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Convert many intergal numerals to arabic numerals at once,
+	 * without throwing an exception if a translation fails.
+	 * 
+	 * If every roman numeral has a pairing, uses the index of canonical 
+	 * numerals when it is turned on, or when the batch holds at least as
+	 * many intergal numerals as the index, since such a batch pays for 
+	 * building it.
+	 * 
+	 * @param intergalNums is a list of strings: the intergal numerals 
+	 * to convert, with base intergal numerals separated by spaces
+	 * @param values is an int array: where to write the arabic numeral 
+	 * for each intergal numeral, or 0 if it can't be translated
+	 * @param errors is a NumeralError array: where to write why each 
+	 * intergal numeral can't be translated, or null if it can
+	 * @throws NullPointerException if any argument or intergal numeral 
+	 * is null, and IndexOutOfBoundsException if values or errors is 
+	 * shorter than intergalNums
+	 * @return an int: the number of intergal numerals translated
+	 */
+	public int tryIntergalNumsToArabic(List<String> intergalNums, 
+			int[] values, NumeralError[] errors) {
+		
+		boolean indexed = completeInfo() && (useNumeralIndex || 
+				intergalNums.size() >= system.getMaxValue());
+		Map<String, Integer> index = indexed ? getNumeralIndex() : null;
+		
+		int numTranslated = 0;
+		int i = 0;
+		Integer indexValue;
+		int value;
+		for (String intergalNum : intergalNums) {
+			indexValue = index == null ? null : index.get(intergalNum);
+			value = indexValue != null ? indexValue : 
+				tryIntergalNumToArabic(intergalNum);
+			numTranslated += recordResult(value, i++, values, errors);
+		}
+		
+		return numTranslated;
+	}
+	
+	/**
+	 * Convert many intergal numerals given as packed intergal numeral
+	 * ids to arabic numerals at once, without throwing an exception if a
+	 * translation fails.
+	 * 
+	 * Intergal numeral k is held in ids[offsets[k]] up to, but not 
+	 * including, ids[offsets[k+1]].
+	 * 
+	 * @param ids is an int array holding ids from getIntergalNumId
+	 * @param offsets is an int array: the start of each intergal numeral
+	 * in ids, followed by the end of the last one
+	 * @param count is an int: the number of intergal numerals
+	 * @param values is an int array: where to write the arabic numeral 
+	 * for each intergal numeral, or 0 if it can't be translated
+	 * @param errors is a NumeralError array: where to write why each 
+	 * intergal numeral can't be translated, or null if it can
+	 * @throws NullPointerException if any argument is null, and
+	 * IndexOutOfBoundsException if offsets is shorter than count+1 or 
+	 * values or errors is shorter than count
+	 * @return an int: the number of intergal numerals translated
+	 */
+	public int tryIntergalNumsToArabic(int[] ids, int[] offsets, int count,
+			int[] values, NumeralError[] errors) {
+		
+		int numTranslated = 0;
+		for (int k = 0; k < count; k++)
+			numTranslated += recordResult(
+					tryIntergalNumToArabic(ids, offsets[k], offsets[k+1]), 
+					k, values, errors);
+		
+		return numTranslated;
 	}
 	
 	/**
-	 * Convert an arabic numeral to a Roman numeral.
+	 * Write the result of one translation in a batch.
 	 * 
-	 * @param arabicNum is an int, the arabic numeral to conver
+	 * @param result is an int: the result of a "try" translation
+	 * @param i is an int: the index of the translation in the batch
+	 * @param values is an int array: where to write the value
+	 * @param errors is a NumeralError array: where to write the error
+	 * @return an int: 1 if the translation succeeded, 0 otherwise
+	 */
+	private static int recordResult(int result, int i, int[] values, 
+			NumeralError[] errors) {
+		
+		if (result < 0) {
+			values[i] = 0;
+			errors[i] = NumeralError.fromResult(result);
+			return 0;
+		}
+		
+		values[i] = result;
+		errors[i] = null;
+		return 1;
+	}
+	
+	/**
+	 * Get the index of {intergalNum: arabic value} for the current
+	 * pairings, building it if needed.
+	 * 
+	 * The index holds the canonical intergal numeral, with base numerals
+	 * separated by single spaces, for every arabic numeral the numeral
+	 * system can write (1 to 3999 for roman numerals) that the translator
+	 * accepts. Other well formed numerals (like "VX") 
+	 * are not in the index, so a miss still needs a full translation.
+	 * 
+	 * WARNING: Assumes completeInfo() is true.
+	 * 
+	 * @return a map from intergal numeral to arabic value
+	 */
+	private Map<String, Integer> getNumeralIndex() {
+		
+		Map<String, Integer> built = numeralIndex;
+		if (built != null) return built;
+		
+		int maxValue = system.getMaxValue();
+		Map<String, Integer> index = 
+				new HashMap<String, Integer>(2*maxValue);
+		ReverseCache cache = reverseCache;
+		String romanNum;
+		for (int i = 1; i <= maxValue; i++) {
+			romanNum = system.encode(i);
+			// some canonical numerals don't pass the strict rules here
+			if (system.decode(romanNum, 0, romanNum.length()) != i) continue;
+			index.put(cache.get(i), i);
+		}
+		
+		// threads building it at once each publish a whole, equal index
+		numeralIndex = index;
+		return index;
+	}
+	
+	/**
+	 * Get the rank of the roman numeral paired with an intergal numeral id.
+	 * 
+	 * @param ranks is an IdRanks: the id to rank table
+	 * @param id is an int: the intergal numeral id
+	 * @return an int: the rank, or -1 if the id is unknown or unpaired
+	 */
+	private static int rankOfId(IdRanks ranks, int id) {
+		int rank = ranks.get(id);
+		return rank >= 0 ? rank : -1;
+	}
+	
+	/**
+	 * Convert an arabic numeral to an intergal numeral.
+	 * 
+	 * Returns the same string instance for the same arabic numeral until
+	 * the pairings change.
+	 * 
+	 * @param arabicNum is an int, the arabic numeral to convert
+	 * @throws IllegalArgumentException if the given int is less than 1
+	 * or greater than 3999, or if the translator does not know the 
+	 * intergal numeral for a base roman numeral it needs
 	 * @return a string: the intergal numeral representing the given
-	 * arabic numeral.
+	 * arabic numeral, with base intergal numerals separated by spaces
 	 */
 	public String arabicNumToIntergal(int arabicNum) {
-
-		String romanNum = arabicNumToRoman(arabicNum);
-		return romanNumToIntergal(romanNum);
+		
+		// the system's encode checks the range of other systems
+		if (system == NumeralSystem.ROMAN) checkArabicRange(arabicNum);
+		String romanNum = system.encode(arabicNum);
+		String intergalNum = reverseCache.get(arabicNum);
+		if (intergalNum == null)
+			throw new IllegalArgumentException("Arabic numeral to intergal "
+					+ "numeral translation failed: not every base roman "
+					+ "numeral in " + romanNum + " has a known intergal "
+					+ "numeral");
+		
+		return intergalNum;
+	}
+	
+	/**
+	 * Convert an arabic numeral to an intergal numeral without throwing
+	 * an exception if the translation fails.
+	 * 
+	 * Returns the same string instance for the same arabic numeral until
+	 * the pairings change.
+	 * 
+	 * @param arabicNum is an int, the arabic numeral to convert
+	 * @return a string: the intergal numeral representing the given
+	 * arabic numeral, or null if the arabic numeral is outside 1-3999 (or
+	 * the range of the translator's numeral system) or the translator 
+	 * does not know the intergal numeral for a base roman numeral it needs
+	 */
+	public String tryArabicNumToIntergal(int arabicNum) {
+		
+		if (arabicNum < 1 || arabicNum > system.getMaxValue()) return null;
+		return reverseCache.get(arabicNum);
 	}
 	
 	/**
@@ -256,10 +773,10 @@ public class Translator {
 		String romanNum = "";
 		String[] baseIGnums = intergalNum.split(" ");
 		
-		Integer rank;
+		int rank;
 		for (int i = 0; i < baseIGnums.length; i++) {
-			rank = intergalNumRank.get(baseIGnums[i]);
-			if (rank == null) 
+			rank = rankOfId(idRanks, symbols.idOf(baseIGnums[i]));
+			if (rank < 0) 
 				throw new IllegalArgumentException("Intergal numeral to Roman"
 						+ " numeral translation failed: the Roman numeral for"
 						+ baseIGnums[i] + " is not recorded.");
@@ -286,322 +803,616 @@ public class Translator {
 	 * given roman numeral.
 	 */
 	public String romanNumToIntergal(String romanNum) {
-	
-		String intergalNum = "";
 		
-		Integer rank;
-		String baseR;
 		for (int i = 0; i < romanNum.length(); i++) {
-			baseR = romanNum.substring(i, i+1);
-			rank = ROMAN_NUM_RANK.get(baseR);
-			if (rank == null) 
+			if (system.rankOfChar(romanNum.charAt(i)) < 0) 
 				throw new IllegalArgumentException("Roman numeral to intergal"
-						+ " numeral translation failed: '" + baseR + " is not"
-						+ " a base Roman numeral");
-			intergalNum += rankToIntergalNum[rank];
+						+ " numeral translation failed: '" + romanNum.charAt(i) 
+						+ "' is not a base Roman numeral");
 		}
 		
+		String intergalNum = joinIntergalNum(system, romanNum, 
+				rankToIntergalNum);
+		if (intergalNum == null)
+			throw new IllegalArgumentException("Roman numeral to intergal"
+					+ " numeral translation failed: not every base roman "
+					+ "numeral in " + romanNum + " has a known intergal "
+					+ "numeral");
+		
 		return intergalNum;
 	}
 	
 	/**
-	 * Convert a roman numeral to an arabic numeral.
+	 * Spell out a roman numeral in intergal numerals.
 	 * 
-	 * Relies on helper method to recursively calculate the value
-	 * of smaller pieces of the numeral.
+	 * WARNING: Assumes each char of the roman numeral is a base roman
+	 * numeral.
 	 * 
-	 * @param romanNumeral is a string: the roman numeral to convert
-	 * @throws IllegalArgumentException if the given string is less than
-	 * length 1 or if each character is not a base roman numeral
-	 * @return an int: the value of the given roman numeral
+	 * @param system is a NumeralSystem: the system of the roman numeral
+	 * @param romanNum is a string: the roman numeral to convert
+	 * @param rankToIntergalNum is a string array: the intergal numeral
+	 * paired with each rank, or null for unpaired ranks
+	 * @return a string: the intergal numeral, with base intergal numerals
+	 * separated by spaces, or null if a rank it needs is unpaired
 	 */
-	public static int romanNumToArabic(String romanNumeral) {
-		if (romanNumeral.length() < 1)
-			throw new IllegalArgumentException("Roman numeral can't be empty");
-		// sanity check each char is a base roman numeral before starting
-		return romanNumToArabicRecurse(romanNumeral,
-				new boolean[RANK_TO_VAL.length], 
-				new boolean[RANK_TO_VAL.length]);
+	private static String joinIntergalNum(NumeralSystem system, 
+			String romanNum, String[] rankToIntergalNum) {
+		
+		StringBuilder intergalNum = new StringBuilder();
+		String base;
+		for (int i = 0; i < romanNum.length(); i++) {
+			base = rankToIntergalNum[system.rankOfChar(romanNum.charAt(i))];
+			if (base == null) return null;
+			if (i > 0) intergalNum.append(' ');
+			intergalNum.append(base);
+		}
+		
+		return intergalNum.toString();
 	}
-
+	
 	/**
-	 * Helper method to recursively convert a roman numeral to 
-	 * an arabic numeral.
+	 * Convert a roman numeral to an arabic numeral.
 	 * 
 	 * @param romanNumeral is a string: the roman numeral to convert
-	 * @param wasInAdd: a boolean where wasInAdd[rank] is true if 
-	 * the roman numeral of that rank has been used in an addition
-	 * @param wasInSubtract: a boolean where wasInSubtract[rank] is true if 
-	 * the roman numeral of that rank has been used in a subtraction
-	 * @throws NullPointerException if the roman numeral is null, and
-	 * IllegalArgumentException if the roman numeral is not well formed
-	 * @return an int: the arabic numeral representing the next legal
-	 * portion of the given roman numeral.
-	 */
-	private static int romanNumToArabicRecurse(String romanNumeral, 
-			boolean[] wasInAdd, boolean[] wasInSubtract) {
+	 * @throws IllegalArgumentException if the given string is less than
+	 * length 1 or is not a well formed roman numeral, and 
+	 * NullPointerException if it is null
+	 * @return an int: the value of the given roman numeral
+	 */
+	public static int romanNumToArabic(String romanNumeral) {
 		
 		if (romanNumeral == null)
 			throw new NullPointerException("Roman numeral can't be null");
 		
-		// base case is empty string
-		if (romanNumeral.length() < 1) return 0;
-		
-		// plan: check if next portion of given romanNumeral satisfies rules
-		// add to total and recurse if so, throw exception if not
-		String initBase = romanNumeral.substring(0, 1);
-		
-		checkBaseRomanNumeral(initBase);
-		
-		// get number of initial numeral in a row
-		int numInRow = 1;
-		while (numInRow < romanNumeral.length() &&
-		       romanNumeral.charAt(numInRow) == initBase.charAt(0))
-			numInRow++;
-		
-		checkRepeatRules(numInRow, initBase);
-		
-		// determine whether a subtraction or addition
-		String minuend = getMinuend(romanNumeral);
+		return romanNumToArabic(romanNumeral, 0, romanNumeral.length());
+	}
+	
+	/**
+	 * Convert a portion of a character sequence holding a roman numeral
+	 * to an arabic numeral, without copying the portion out.
+	 * 
+	 * @param romanNumeral is a CharSequence holding the roman numeral
+	 * @param start is an int: the index of the first char of the numeral
+	 * @param end is an int: the index after the last char of the numeral
+	 * @throws IllegalArgumentException if the portion is less than
+	 * length 1 or is not a well formed roman numeral, and 
+	 * NullPointerException if romanNumeral is null
+	 * @return an int: the value of the given roman numeral
+	 */
+	public static int romanNumToArabic(CharSequence romanNumeral, 
+			int start, int end) {
 		
-		// check against appropriate math operation rules and do the operation
-		String recurseNum = "";
-		int thisValue = 0;
-		int initBaseRank = ROMAN_NUM_RANK.get(initBase);
+		int value = tryRomanNumToArabic(romanNumeral, start, end);
+		if (value < 0)
+			throw new IllegalArgumentException("Roman numeral '" + 
+					romanNumeral.subSequence(start, end) + "' is not well "
+					+ "formed: " + NumeralError.fromResult(value).
+					getDescription());
 		
-		if (minuend != null) {
-			checkSubtractionRules(minuend, initBase, wasInSubtract);
-			int minuendRank = ROMAN_NUM_RANK.get(minuend);
-			thisValue = RANK_TO_VAL[minuendRank] - RANK_TO_VAL[initBaseRank];
-			recurseNum = romanNumeral.substring(numInRow+1);
-			wasInSubtract[initBaseRank] = true;
-			wasInSubtract[minuendRank] = true;
-			wasInAdd[minuendRank] = true;
-		}
-		else {
-			checkAdditionRules(initBase, wasInAdd);
-			recurseNum = romanNumeral.substring(numInRow);	
-			thisValue = numInRow * RANK_TO_VAL[initBaseRank];
-			wasInAdd[initBaseRank] = true;
-		}
-
-		return thisValue+romanNumToArabicRecurse(recurseNum, 
-												 wasInAdd, 
-												 wasInSubtract);
+		return value;
 	}
 	
 	/**
-	 * Throw exception if the given base numeral violates addition rules
-	 * given previous usage in a roman numeral string. 
+	 * Convert a roman numeral to an arabic numeral without throwing
+	 * an exception if the numeral is not well formed.
 	 * 
-	 * @param baseNum is the 
-	 * @param wasInAdd: a boolean where wasInAdd[rank] is true if 
-	 * the roman numeral of that rank has been used in an addition
+	 * @param romanNumeral is a string: the roman numeral to convert
+	 * @throws NullPointerException if romanNumeral is null
+	 * @return an int: the value of the given roman numeral if it is
+	 * well formed, or the negative code of a NumeralError if it is not
 	 */
-	private static void checkAdditionRules(String baseNum, boolean[] wasInAdd){
-		
-		if (wasInAdd[ROMAN_NUM_RANK.get(baseNum)])
-			throw new IllegalArgumentException("Roman numeral is not "
-					+ "well formed: '" + baseNum + "' appears too many times");
+	public static int tryRomanNumToArabic(String romanNumeral) {
+		return tryRomanNumToArabic(romanNumeral, 0, romanNumeral.length());
 	}
 	
 	/**
-	 * Throw exception if the minuend and subtractor violate roman numeral
-	 * subtraction rules given previous usage in a roman numeral string.
+	 * Convert a portion of a character sequence holding a roman numeral
+	 * to an arabic numeral without throwing an exception if the numeral 
+	 * is not well formed.
 	 * 
-	 * @param minuend
-	 * @param subtractor
-	 * @param wasInSubtract: a boolean where wasInSubtract[rank] is true if 
-	 * the roman numeral of that rank has been used in a subtraction
-	 * an addition. 
+	 * @param romanNumeral is a CharSequence holding the roman numeral
+	 * @param start is an int: the index of the first char of the numeral
+	 * @param end is an int: the index after the last char of the numeral
+	 * @throws NullPointerException if romanNumeral is null
+	 * @return an int: the value of the given roman numeral if it is
+	 * well formed, or the negative code of a NumeralError if it is not
 	 */
-	private static void checkSubtractionRules(String minuend, 
-			String subtractor, boolean[] wasInSubtract) {
-		
-		if (wasInSubtract[ROMAN_NUM_RANK.get(subtractor)])
-			throw new IllegalArgumentException("Roman numeral is "
-					+ "not well formed: '" + subtractor + "' was "
-					+ "already used as a subtractor.");
+	public static int tryRomanNumToArabic(CharSequence romanNumeral, 
+			int start, int end) {
 		
-		if (wasInSubtract[ROMAN_NUM_RANK.get(minuend)])
-			throw new IllegalArgumentException("Roman numeral is "
-					+ "not well formed: '" + minuend + "' was "
-					+ "already used as a minuend.");
+		if (romanNumeral == null)
+			throw new NullPointerException("Roman numeral can't be null");
 		
-		if (!MINUENDS.get(subtractor).contains(minuend))
-			throw new IllegalArgumentException("Roman numeral is "
-					+ "not well formed: '" + subtractor + "' can only be"
-					+ " subtracted from " + MINUENDS.get(subtractor));
+		return NumeralSystem.ROMAN.decode(romanNumeral, start, end);
 	}
 	
 	/**
-	 * Return the minuend if the initial two base roman numerals of the given
-	 * numeral string makes a subtraction, null if not.
-
-	 * @param romanNumeralStr
-	 * @return a string: the minuend of the subtraction operation if there is 
-	 * a subtraction operation at the start of the given roman numeral
-	 * string, null otherwise
+	 * Convert an arabic numeral to a roman numeral.
+	 * 
+	 * Looks the numeral up in the table of every canonical roman numeral
+	 * compiled into NumeralSystem.ROMAN, so no strings are built per call.
+	 * 
+	 * @param arabicNumeral is an int: the arabic numeral to convert 
+	 * @throws IllegalArgumentException if the given int is less than 1
+	 * or greater than 3999
+	 * @return a string representing the given arabic numeral 
+	 * as a roman numeral
 	 */
-	private static String getMinuend(String romanNumeralStr) {
-		
-		if (romanNumeralStr.length() < 2) return null;
-		
-		String subtractor = romanNumeralStr.substring(0, 1);
-		
-		if (!SUBTRACTOR_SET.contains(subtractor)) return null;
-				
-		String minuend = romanNumeralStr.substring(1, 2);
-		checkBaseRomanNumeral(minuend);
-
-		if (ROMAN_NUM_RANK.get(minuend) <= ROMAN_NUM_RANK.get(subtractor))
-			return null; // minuend must be greater than subtractor
+	public static String arabicNumToRoman(int arabicNumeral) {
 		
-		return minuend;
+		checkArabicRange(arabicNumeral);
+		return NumeralSystem.ROMAN.encode(arabicNumeral);
 	}
 	
 	/**
-	 * Throw exception if the given numeral is a base Roman numeral.
+	 * Append the roman numeral for an arabic numeral to the given builder.
 	 * 
-	 * @param numeral
-	 * @throws an IllegalArgumentException if the given string is not
-	 * a base Roman numeral
+	 * @param arabicNumeral is an int: the arabic numeral to convert
+	 * @param dest is a StringBuilder: where to write the roman numeral
+	 * @throws IllegalArgumentException if the given int is less than 1
+	 * or greater than 3999, and NullPointerException if dest is null
+	 * @return the given StringBuilder, for chaining
 	 */
-	private static void checkBaseRomanNumeral(String numeral) {
-		if (!ROMAN_NUM_RANK.containsKey(numeral)) {
-			throw new IllegalArgumentException("Roman numeral is not "
-					+ "well formed: '" + numeral + "' is not a "
-					+ "base roman numeral.");			
-		}
+	public static StringBuilder arabicNumToRoman(int arabicNumeral, 
+			StringBuilder dest) {
+		
+		if (dest == null)
+			throw new NullPointerException("Destination can't be null");
+		
+		return dest.append(arabicNumToRoman(arabicNumeral));
 	}
 	
 	/**
-	 * Throw exception if the given roman numeral repeats 
-	 * too many times in a row.
+	 * Write the roman numeral for an arabic numeral into the given
+	 * char array, starting at the given offset.
+	 * 
+	 * No roman numeral in the strict range is longer than
+	 * MAX_ROMAN_LENGTH chars, so a buffer of that size always suffices.
 	 * 
-	 * @param numInRow is an int: the number of times the given numeral repeats
-	 * @param numeral is a String: the base roman numeral to check
-	 * @throws IllegalArgumentException if the roman numeral repeats too
-	 * many times
+	 * @param arabicNumeral is an int: the arabic numeral to convert
+	 * @param dest is a char array: where to write the roman numeral
+	 * @param offset is an int: the index in dest of the first char to write
+	 * @throws IllegalArgumentException if the given int is less than 1
+	 * or greater than 3999, and IndexOutOfBoundsException if the roman 
+	 * numeral does not fit in dest from the given offset
+	 * @return an int: the number of chars written
 	 */
-	private static void checkRepeatRules(int numInRow, String numeral) {
-		
-		if (NO_REPEAT_SET.contains(numeral)) {
-			if (numInRow > 1)
-				throw new IllegalArgumentException("Roman numeral is not "
-						+ "well formed: '" + numeral + "' appears "
-						+ "more than once.");
-		}
+	public static int arabicNumToRoman(int arabicNumeral, char[] dest, 
+			int offset) {
 		
-		if (numInRow > 3)
-			throw new IllegalArgumentException("Roman numeral is not well "
-					+ "formed: '" + numeral + "' appears more than three"
-					+ " times in succession.");
+		String romanNum = arabicNumToRoman(arabicNumeral);
+		romanNum.getChars(0, romanNum.length(), dest, offset);
+		return romanNum.length();
 	}
 	
 	/**
-	 * Convert an arabic numeral to a roman numeral.
+	 * Throw exception if the given arabic numeral cannot be written
+	 * as a strict roman numeral.
 	 * 
-	 * @param arabicNumeral is an int: the arabic numeral to convert 
+	 * @param arabicNumeral is an int: the arabic numeral to check
 	 * @throws IllegalArgumentException if the given int is less than 1
 	 * or greater than 3999
-	 * @return a string representing the given arabic numeral 
-	 * as a roman numeral
 	 */
-	public static String arabicNumToRoman(int arabicNumeral) {
+	private static void checkArabicRange(int arabicNumeral) {
 		
-		if (arabicNumeral < 1 || arabicNumeral > 3999)
+		if (arabicNumeral < MIN_ARABIC || arabicNumeral > MAX_ARABIC)
 			throw new IllegalArgumentException("Given int '" + arabicNumeral
 					+ " is outside valid range. Under strict interpretation, "
 					+ "Roman numerals cannot represent arabic numerals less "
 					+ "than 1 or greater than 3999.");
-		
-		String romanNum = "";
-		int thousands = arabicNumeral / 1000;
-		int hundreds = (arabicNumeral % 1000) / 100;
-		int tens = (arabicNumeral % 100) / 10;
-		int ones = arabicNumeral % 10;
-		
-		for (int i = 0; i < thousands; i++)
-			romanNum += "M";
-		if (hundreds > 0) 
-			romanNum += addRomanPortion(hundreds, 3);
-		if (tens > 0)
-			romanNum += addRomanPortion(tens, 2);
-		if (ones > 0)
-			romanNum += addRomanPortion(ones, 1);
-		
-		return romanNum;
+	}
+	
+	public String[] getRankToIntergalNum() {
+		return rankToIntergalNum;
 	}
 	
 	/**
-	 * Helper method for converting an arabic numeral to roman
-	 * numeral by digit.
+	 * Get the rank of each intergal numeral the translator knows of.
 	 * 
-	 * @param value is a positive int between 1 and 9, inclusive
-	 * @param place is an int: a power of ten, either 1, 2, or 3
-	 * @return the roman numeral that matches value and place
+	 * @return a map of string to Integer: a copy of the ranks of known 
+	 * intergal numerals, with null for those not paired with a roman numeral
 	 */
-	private static String addRomanPortion(int arabicNum, int place) {
-
-		String portion = "";
-		String low = "", mid = "", high = "";
-		
-		// get the right set of numerals
-		if (place == 3) {
-			low = "C";
-			mid = "D";
-			high = "M";
-		}
-		else if (place == 2) {
-			low = "X";
-			mid = "L";
-			high = "C";
-		}
-		else {
-			low = "I";
-			mid = "V";
-			high = "X";
-		}
+	public Map<String, Integer> getIntergalNumRank() {
 		
-		// attach 
-		if (arabicNum < 4) {
-			for (int i = 0; i < arabicNum; i++)
-				portion += low;
-		}
-		else if (arabicNum == 4) {
-			portion += low;
-			portion += mid;
-		}
-		else if (arabicNum == 5) {
-			portion += mid;
-		}
-		else if (arabicNum < 9) {
-			portion += mid;
-			for (int i = 5; i < arabicNum; i++)
-				portion += low;	
-		}
-		else {
-			portion += low;
-			portion += high;
+		Map<String, Integer> intergalNumRank = new HashMap<String, Integer>();
+		IdRanks ranks = idRanks;
+		for (int i = 0; i < ranks.ids.length; i++) {
+			if (ranks.ids[i] == IdRanks.EMPTY) continue;
+			intergalNumRank.put(symbols.symbolOf(ranks.ids[i]), 
+					ranks.ranks[i] >= 0 ? ranks.ranks[i] : null);
 		}
 		
-		return portion;
+		return intergalNumRank;
 	}
 	
-	public String[] getRankToIntergalNum() {
-		return rankToIntergalNum;
+	/**
+	 * Get the number of slots the translator holds for the ids of the 
+	 * intergal numerals it knows. Grows with the intergal numerals the 
+	 * translator knows, not with the ids of its symbol table.
+	 * 
+	 * @return an int: the number of id slots
+	 */
+	public int getIdCapacity() {
+		return idRanks.ids.length;
 	}
 	
-	public Map<String, Integer> getIntergalNumRank() {
-		return intergalNumRank;
+	public SymbolTable getSymbols() {
+		return symbols;
 	}
 	
 	public String[] getRankToRomanNum() {
 		return rankToRomanNum;
 	}
 	
+	public NumeralSystem getSystem() {
+		return system;
+	}
+	
 	public int getNumPairs() {
 		return numPairs;
 	}
+	
+	/**
+	 * Get the generation of the pairings, which goes up by one on every
+	 * change to an intergalNum-romanNum pairing.
+	 * 
+	 * @return a long: the generation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+	
+	public boolean isUseNumeralIndex() {
+		return useNumeralIndex;
+	}
+	
+	/**
+	 * Turn the index of canonical intergal numerals on or off.
+	 * 
+	 * When on, and every roman numeral has a pairing, translating an 
+	 * intergal numeral string first probes an index of every canonical 
+	 * numeral for the current pairings. Costs one map of 3999 entries.
+	 * 
+	 * @param useNumeralIndex is a boolean: true to use the index
+	 */
+	public void setUseNumeralIndex(boolean useNumeralIndex) {
+		this.useNumeralIndex = useNumeralIndex;
+		if (!useNumeralIndex) numeralIndex = null;
+	}
+	
+	public boolean isUseMappingDecoder() {
+		return useMappingDecoder;
+	}
+	
+	/**
+	 * Turn the decoder specialised to the current pairings on or off.
+	 * 
+	 * When on, translating an intergal numeral string matches each word
+	 * in place against the paired intergal numerals instead of copying 
+	 * and hashing it. The decoder is a MethodHandle chain rebuilt on 
+	 * every pairing change, which costs microseconds rather than the 
+	 * nanoseconds of a change without it, so it suits translators whose
+	 * pairings rarely change.
+	 * 
+	 * @param useMappingDecoder is a boolean: true to use the decoder
+	 */
+	public void setUseMappingDecoder(boolean useMappingDecoder) {
+		this.useMappingDecoder = useMappingDecoder;
+		this.mappingDecoder = useMappingDecoder ? 
+				new MappingDecoder(system, rankToIntergalNum) : null;
+	}
+	
+	/**
+	 * The rank of each intergal numeral id a translator knows of, in an
+	 * open addressing table keyed by id and at most half full, so a 
+	 * translator holds slots only for the ids it has learned, however 
+	 * high the ids of a shared symbol table go. Replaced by a bigger copy
+	 * when it grows.
+	 */
+	private static final class IdRanks {
+		
+		private static final int EMPTY = -1;
+		
+		private final int[] ids;
+		private final int[] ranks;
+		private int size;
+		
+		/**
+		 * Create an empty table.
+		 * 
+		 * @param capacity is an int: the number of slots, a power of 2
+		 */
+		IdRanks(int capacity) {
+			this.ids = new int[capacity];
+			Arrays.fill(ids, EMPTY);
+			this.ranks = new int[capacity];
+			this.size = 0;
+		}
+		
+		/**
+		 * Get the rank of an id.
+		 * 
+		 * @param id is an int: the intergal numeral id
+		 * @return an int: the rank, UNPAIRED, or UNKNOWN if the id is not
+		 * in the table
+		 */
+		int get(int id) {
+			
+			if (id < 0) return UNKNOWN;
+			
+			int mask = ids.length - 1;
+			for (int i = slotOf(id, mask); ids[i] != EMPTY; i = (i + 1) & mask)
+				if (ids[i] == id) return ranks[i];
+			return UNKNOWN;
+		}
+		
+		/**
+		 * Set the rank of an id, adding the id if it is new.
+		 * 
+		 * @param id is an int: the intergal numeral id, not negative
+		 * @param rank is an int: the rank, or UNPAIRED
+		 * @return an IdRanks: this table, or a bigger copy holding the id
+		 * if it did not fit
+		 */
+		IdRanks put(int id, int rank) {
+			
+			int mask = ids.length - 1;
+			int i = slotOf(id, mask);
+			for (; ids[i] != EMPTY; i = (i + 1) & mask) {
+				if (ids[i] == id) {
+					ranks[i] = rank;
+					return this;
+				}
+			}
+			
+			if (2*(size + 1) > ids.length) return grow().put(id, rank);
+			
+			ranks[i] = rank;
+			ids[i] = id;
+			size++;
+			return this;
+		}
+		
+		private IdRanks grow() {
+			
+			IdRanks grown = new IdRanks(2*ids.length);
+			for (int i = 0; i < ids.length; i++)
+				if (ids[i] != EMPTY) grown.put(ids[i], ranks[i]);
+			
+			return grown;
+		}
+		
+		private static int slotOf(int id, int mask) {
+			int h = id * 0x9E3779B9;
+			return (h ^ (h >>> 16)) & mask;
+		}
+	}
+	
+	/**
+	 * Arabic to intergal numeral translations for one generation of 
+	 * intergalNum-romanNum pairings, filled in as they are asked for.
+	 * 
+	 * Holds its own copy of the pairings, and a translator replaces
+	 * (never modifies) its cache when the pairings change, so a reader 
+	 * holding a cache always gets translations from one generation. 
+	 * Two readers filling the same entry at once may each build the 
+	 * string; either result is correct.
+	 */
+	private static final class ReverseCache {
+		
+		private final NumeralSystem system;
+		private final String[] rankToIntergalNum;
+		private volatile String[] arabicToIntergalNum;
+		
+		/**
+		 * Create an empty cache for the given pairings.
+		 * 
+		 * @param system is a NumeralSystem: the system of the pairings
+		 * @param rankToIntergalNum is a string array: the intergal numeral
+		 * paired with each rank, or null for unpaired ranks
+		 */
+		ReverseCache(NumeralSystem system, String[] rankToIntergalNum) {
+			this.system = system;
+			this.rankToIntergalNum = rankToIntergalNum.clone();
+			this.arabicToIntergalNum = null;
+		}
+		
+		/**
+		 * Get the intergal numeral for an arabic numeral.
+		 * 
+		 * WARNING: Assumes the arabic numeral is between 1 and the max
+		 * value of the numeral system.
+		 * 
+		 * @param arabicNum is an int: the arabic numeral to convert
+		 * @return a string: the intergal numeral, or null if a base roman
+		 * numeral it needs is unpaired
+		 */
+		String get(int arabicNum) {
+			
+			// allocate on first use; racing readers may each allocate
+			String[] table = arabicToIntergalNum;
+			if (table == null) {
+				table = new String[system.getMaxValue()+1];
+				arabicToIntergalNum = table;
+			}
+			
+			String intergalNum = table[arabicNum];
+			if (intergalNum == null) {
+				intergalNum = joinIntergalNum(system, 
+						system.encode(arabicNum), rankToIntergalNum);
+				table[arabicNum] = intergalNum;
+			}
+			
+			return intergalNum;
+		}
+	}
+	
+	/**
+	 * An immutable decoder for intergal numeral strings, specialised to
+	 * one set of intergalNum-romanNum pairings.
+	 * 
+	 * Holds a MethodHandle chain that matches a word in place against the
+	 * paired intergal numeral of each rank in turn (seven, for roman 
+	 * numerals), with those words bound in as constants, and decodes a 
+	 * string in one pass: groups are applied to the state as soon as the
+	 * next word shows where they end.
+	 */
+	private static final class MappingDecoder {
+		
+		// (String, int, int, String)boolean: whether a word of a string 
+		// is the given intergal numeral
+		private static final MethodHandle MATCHES;
+		static {
+			try {
+				MATCHES = MethodHandles.lookup().findStatic(
+						MappingDecoder.class, "matches",
+						MethodType.methodType(boolean.class, String.class,
+								int.class, int.class, String.class));
+			}
+			catch (ReflectiveOperationException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+		
+		private final NumeralSystem system;
+		// (String, int, int)int: the rank of a word of a string, or -1
+		private final MethodHandle rankOfWord;
+		
+		/**
+		 * Create a decoder for the given pairings.
+		 * 
+		 * @param system is a NumeralSystem: the system of the pairings
+		 * @param rankToIntergalNum is a string array: the intergal numeral
+		 * paired with each rank, or null for unpaired ranks
+		 */
+		MappingDecoder(NumeralSystem system, String[] rankToIntergalNum) {
+			this.system = system;
+			
+			Class<?>[] wordArgs = {String.class, int.class, int.class};
+			MethodHandle chain = MethodHandles.dropArguments(
+					MethodHandles.constant(int.class, -1), 0, wordArgs);
+			for (int i = rankToIntergalNum.length-1; i >= 0; i--) {
+				if (rankToIntergalNum[i] == null) continue;
+				chain = MethodHandles.guardWithTest(
+						MethodHandles.insertArguments(MATCHES, 3, 
+								rankToIntergalNum[i]),
+						MethodHandles.dropArguments(
+								MethodHandles.constant(int.class, i), 0, 
+								wordArgs),
+						chain);
+			}
+			this.rankOfWord = chain;
+		}
+		
+		/**
+		 * Convert an intergal numeral to an arabic numeral, with the same
+		 * results as Translator.tryIntergalNumToArabic.
+		 * 
+		 * Like the generic decoder, an unmapped word is reported only after
+		 * the group before it is checked, so a numeral that breaks a rule 
+		 * before its first unmapped word gives the error of that rule.
+		 * 
+		 * @param intergalNum is a string: the intergal numeral to convert
+		 * @return an int: the arabic numeral, or the negative code of a
+		 * NumeralError if the intergal numeral can't be translated
+		 */
+		int tryDecode(String intergalNum) {
+			
+			// like split(" "), ignore trailing separators
+			int end = intergalNum.length();
+			while (end > 0 && intergalNum.charAt(end-1) == ' ') end--;
+			if (end == 0) return NumeralError.EMPTY.getCode();
+			
+			int state = 0;
+			int total = 0;
+			int pending = -1, numInRow = 0, nextRank;
+			int wordStart = 0, wordEnd, rank;
+			
+			while (wordStart <= end) {
+				wordEnd = intergalNum.indexOf(' ', wordStart);
+				if (wordEnd < 0 || wordEnd > end) wordEnd = end;
+				rank = rankOfWord(intergalNum, wordStart, wordEnd);
+				wordStart = wordEnd+1;
+				
+				// the unmapped word ends the pending group, but can't be 
+				// its minuend
+				if (rank < 0) {
+					if (pending >= 0) {
+						state = system.applyGroup(state, pending, numInRow, -1);
+						if (state < 0) return state;
+					}
+					return NumeralError.UNMAPPED_WORD.getCode();
+				}
+				
+				if (rank == pending) {
+					numInRow++;
+					continue;
+				}
+				
+				// this word ends the pending group, and may be its minuend
+				if (pending >= 0) {
+					nextRank = numInRow == 1 ? rank : -1;
+					state = system.applyGroup(state, pending, numInRow, 
+							nextRank);
+					if (state < 0) return state;
+					
+					if (system.isSubtraction(pending, numInRow, nextRank)) {
+						total += system.getValue(rank) - 
+								system.getValue(pending);
+						pending = -1;
+						continue;
+					}
+					total += numInRow * system.getValue(pending);
+				}
+				
+				pending = rank;
+				numInRow = 1;
+			}
+			
+			if (pending >= 0) {
+				state = system.applyGroup(state, pending, numInRow, -1);
+				if (state < 0) return state;
+				total += numInRow * system.getValue(pending);
+			}
+			
+			return total;
+		}
+		
+		/**
+		 * Get the rank paired with a word of a string.
+		 * 
+		 * @param str is a string holding the word
+		 * @param start is an int: the index of the first char of the word
+		 * @param end is an int: the index after the last char of the word
+		 * @return an int: the rank, or -1 if the word is not paired
+		 */
+		private int rankOfWord(String str, int start, int end) {
+			try {
+				return (int)rankOfWord.invokeExact(str, start, end);
+			}
+			catch (Throwable t) {
+				// the chain only calls matches, which throws nothing
+				throw new IllegalStateException(t);
+			}
+		}
+		
+		/**
+		 * Check whether a word of a string is the given intergal numeral,
+		 * by length, first char, then the rest in place.
+		 * 
+		 * @param str is a string holding the word
+		 * @param start is an int: the index of the first char of the word
+		 * @param end is an int: the index after the last char of the word
+		 * @param intergalNum is a string: a paired intergal numeral
+		 * @return a boolean: true if the word is intergalNum
+		 */
+		private static boolean matches(String str, int start, int end, 
+				String intergalNum) {
+			
+			int len = end - start;
+			return len > 0 && len == intergalNum.length() &&
+					str.charAt(start) == intergalNum.charAt(0) &&
+					str.regionMatches(start+1, intergalNum, 1, len-1);
+		}
+	}
 }
@@ -0,0 +1,92 @@
+package utility;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keep one Translator per intergalactic dialect.
+ * 
+ * Merchants trade with planets that use different words for the same
+ * numerals. Each dialect gets its own Translator, keyed by a dialect id
+ * of the caller's choosing (e.g., a planet name).
+ * 
+ * The roman numeral tables are static in Translator, so every dialect 
+ * shares them and a dialect only costs its own intergalactic pairings,
+ * plus a few slots for each intergal numeral it knows. So the memory of
+ * the registry grows with the dialects and the words each knows, not 
+ * with the words all of them know. The optional numeral index holds 
+ * 3999 entries per translator, so it is best left off when keeping many
+ * dialects.
+ * 
+ * @author ryanwilliamconnor
+ *
+ */
+public class TranslatorRegistry {
+
+	private Map<String, Translator> dialects;
+	
+	/**
+	 * Create a new TranslatorRegistry with no dialects.
+	 */
+	public TranslatorRegistry() {
+		this.dialects = new HashMap<String, Translator>();
+	}
+	
+	/**
+	 * Get the translator for a dialect, creating a translator with no 
+	 * knowledge of any intergalactic numerals if the dialect is new.
+	 * 
+	 * @param dialect is a string: the id of the dialect
+	 * @throws NullPointerException if dialect is null
+	 * @return the Translator for the dialect
+	 */
+	public Translator getOrCreateTranslator(String dialect) {
+		
+		if (dialect == null)
+			throw new NullPointerException("Dialect can't be null");
+		
+		Translator translator = dialects.get(dialect);
+		if (translator == null) {
+			translator = new Translator();
+			dialects.put(dialect, translator);
+		}
+		
+		return translator;
+	}
+	
+	/**
+	 * Get the translator for a dialect.
+	 * 
+	 * @param dialect is a string: the id of the dialect
+	 * @return the Translator for the dialect, or null if the registry
+	 * has no such dialect
+	 */
+	public Translator getTranslator(String dialect) {
+		return dialects.get(dialect);
+	}
+	
+	/**
+	 * Remove a dialect from the registry.
+	 * 
+	 * @param dialect is a string: the id of the dialect
+	 * @return the Translator the dialect had, or null if the registry
+	 * had no such dialect
+	 */
+	public Translator removeTranslator(String dialect) {
+		return dialects.remove(dialect);
+	}
+	
+	public boolean hasDialect(String dialect) {
+		return dialects.containsKey(dialect);
+	}
+	
+	public Set<String> getDialects() {
+		return Collections.unmodifiableSet(dialects.keySet());
+	}
+	
+	public int getNumDialects() {
+		return dialects.size();
+	}
+}